@@ -0,0 +1,188 @@
+package com.veritas.nlp.benchmarks;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Generated text of various shapes, so benchmarks cover the kinds of content we see in practice rather than just
+ * well-formed prose.  Generation is seeded, so a given corpus and size always produces the same text.
+ */
+public enum SyntheticCorpus {
+    /** Ordinary paragraphs of short to medium sentences, with names scattered through them. */
+    PROSE {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            int sentences = 3 + random.nextInt(5);
+            for (int i = 0; i < sentences; i++) {
+                appendSentence(sb, random, 8 + random.nextInt(18));
+                sb.append(' ');
+            }
+            sb.append("\n\n");
+        }
+    },
+
+    /** Comma separated rows with no sentence structure at all - the 'unnatural' text that is hard to chunk. */
+    TABULAR {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            sb.append("id,name,city,company,amount,reference\n");
+            int rows = 20 + random.nextInt(30);
+            for (int i = 0; i < rows; i++) {
+                sb.append(random.nextInt(1000000)).append(',')
+                        .append(pick(random, FIRST_NAMES)).append(' ').append(pick(random, LAST_NAMES)).append(',')
+                        .append(pick(random, CITIES)).append(',')
+                        .append(pick(random, ORGANIZATIONS)).append(',')
+                        .append(random.nextInt(100000)).append('.').append(random.nextInt(100)).append(',')
+                        .append(Long.toHexString(random.nextLong())).append('\n');
+            }
+            sb.append('\n');
+        }
+    },
+
+    /** Sentences of hundreds of words, which the sentence splitter can't break up. */
+    LONG_SENTENCES {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            appendSentence(sb, random, 300 + random.nextInt(700));
+            sb.append("\n\n");
+        }
+    },
+
+    /** Email threads: headers, replies quoting earlier messages, and signatures. */
+    EMAIL_THREAD {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            String subject = pick(random, WORDS) + " " + pick(random, WORDS) + " for " + pick(random, ORGANIZATIONS);
+            StringBuilder quoted = new StringBuilder();
+            int messages = 2 + random.nextInt(4);
+            for (int i = 0; i < messages; i++) {
+                String firstName = pick(random, FIRST_NAMES);
+                String lastName = pick(random, LAST_NAMES);
+                StringBuilder message = new StringBuilder();
+                message.append("From: ").append(firstName).append(' ').append(lastName).append(" <")
+                        .append(firstName.toLowerCase()).append('.').append(lastName.toLowerCase()).append("@example.com>\n")
+                        .append("To: ").append(pick(random, FIRST_NAMES)).append(' ').append(pick(random, LAST_NAMES)).append('\n')
+                        .append("Subject: ").append(i == 0 ? "" : "Re: ").append(subject).append('\n')
+                        .append("Date: ").append(1 + random.nextInt(28)).append(" March 2024 ")
+                        .append(10 + random.nextInt(10)).append(':').append(10 + random.nextInt(50)).append("\n\n")
+                        .append("Hi ").append(pick(random, FIRST_NAMES)).append(",\n\n");
+                int sentences = 1 + random.nextInt(4);
+                for (int j = 0; j < sentences; j++) {
+                    appendSentence(message, random, 6 + random.nextInt(15));
+                    message.append('\n');
+                }
+                message.append("\nThanks,\n").append(firstName).append("\n--\n")
+                        .append(firstName).append(' ').append(lastName).append(" | ").append(pick(random, ORGANIZATIONS))
+                        .append(" | ").append(pick(random, CITIES)).append('\n');
+                if (quoted.length() > 0) {
+                    message.append('\n');
+                    for (String line : quoted.toString().split("\n")) {
+                        message.append("> ").append(line).append('\n');
+                    }
+                }
+                quoted = message;
+            }
+            sb.append(quoted).append("\n\n");
+        }
+    },
+
+    /** Log lines, numeric tables and base64 attachments, with only the odd name - what a file share scan turns up. */
+    MACHINE_TEXT {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            int lines = 10 + random.nextInt(20);
+            switch (random.nextInt(3)) {
+                case 0:
+                    for (int i = 0; i < lines; i++) {
+                        sb.append(String.format("2024-03-%02d %02d:%02d:%02d.%03d %s [worker-%d] 0x%08x %s %dms%n",
+                                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                                random.nextInt(1000), random.nextBoolean() ? "info" : "warn", random.nextInt(16),
+                                random.nextInt(), pick(random, WORDS), random.nextInt(5000)));
+                    }
+                    break;
+                case 1:
+                    for (int i = 0; i < lines; i++) {
+                        sb.append(random.nextInt(1000000)).append('\t').append(random.nextInt(100000)).append('.')
+                                .append(random.nextInt(100)).append('\t').append(random.nextInt(100)).append("%\n");
+                    }
+                    break;
+                default:
+                    byte[] bytes = new byte[57];
+                    for (int i = 0; i < lines; i++) {
+                        random.nextBytes(bytes);
+                        sb.append(Base64.getEncoder().encodeToString(bytes)).append('\n');
+                    }
+                    break;
+            }
+            if (random.nextInt(10) == 0) {
+                appendSentence(sb, random, 8 + random.nextInt(10));
+                sb.append('\n');
+            }
+            sb.append('\n');
+        }
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "Mohammed", "Priya", "Wei", "Olga", "Carlos", "Aisha", "Kenji", "Ingrid", "Sean", "Fatima"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Wilson", "Anderson",
+            "Khan", "Patel", "Chen", "Ivanova", "Rodriguez", "Okafor", "Tanaka", "Larsen", "Murphy", "Haddad"};
+    private static final String[] CITIES = {
+            "London", "Paris", "New York", "Tokyo", "Berlin", "Madrid", "Chicago", "Sydney", "Toronto", "Mumbai",
+            "Reading", "Minneapolis", "Pune", "Dublin", "Singapore"};
+    private static final String[] ORGANIZATIONS = {
+            "Acme Corporation", "Globex", "Initech", "United Nations", "the World Bank", "Microsoft", "Siemens",
+            "the European Commission", "Barclays", "Toyota", "the BBC", "Oxfam"};
+    private static final String[] WORDS = {
+            "the", "a", "report", "meeting", "quarterly", "budget", "project", "review", "of", "and", "to", "with",
+            "agreed", "discussed", "proposal", "contract", "deadline", "next", "week", "team", "results", "customer",
+            "in", "for", "on", "update", "schedule", "invoice", "was", "will", "should", "plan", "risk", "data",
+            "migration", "approval", "draft", "final", "we", "they", "confirmed", "delayed", "shipment", "account"};
+
+    /**
+     * @return Text of exactly {@code sizeChars} characters.
+     */
+    public String generate(int sizeChars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(sizeChars + 8192);
+        while (sb.length() < sizeChars) {
+            append(sb, random);
+        }
+        sb.setLength(sizeChars);
+        return sb.toString();
+    }
+
+    public String generate(int sizeChars) {
+        return generate(sizeChars, 0);
+    }
+
+    abstract void append(StringBuilder sb, Random random);
+
+    private static void appendSentence(StringBuilder sb, Random random, int words) {
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(random.nextInt(12) == 0 ? ", " : " ");
+            }
+            switch (random.nextInt(10)) {
+                case 0:
+                    sb.append(pick(random, FIRST_NAMES)).append(' ').append(pick(random, LAST_NAMES));
+                    break;
+                case 1:
+                    sb.append(random.nextBoolean() ? "in " : "from ").append(pick(random, CITIES));
+                    break;
+                case 2:
+                    sb.append("at ").append(pick(random, ORGANIZATIONS));
+                    break;
+                default:
+                    String word = pick(random, WORDS);
+                    sb.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            }
+        }
+        sb.append('.');
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
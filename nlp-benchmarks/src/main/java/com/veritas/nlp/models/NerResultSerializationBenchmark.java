@@ -0,0 +1,65 @@
+package com.veritas.nlp.models;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.veritas.nlp.benchmarks.SyntheticCorpus;
+import com.veritas.nlp.ner.NerSettings;
+import com.veritas.nlp.ner.StreamingNerRecognizer;
+import com.veritas.nlp.resources.NlpRequestParams;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of serializing a {@link NerResult} to JSON, using the object mapper configuration the service uses.
+ * The results are real extraction results from the synthetic corpora, with and without content matches.  The score
+ * is results per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NerResultSerializationBenchmark {
+    private static final int CORPUS_CHARS = 100000;
+
+    @Param({"PROSE", "TABULAR", "LONG_SENTENCES", "EMAIL_THREAD"})
+    public SyntheticCorpus corpus;
+
+    /** Zero means content matches are not included. */
+    @Param({"0", "100", "10000"})
+    public int maxContentMatches;
+
+    private NerResult result;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setup() throws Exception {
+        NlpRequestParams params = new NlpRequestParams()
+                .setIncludeMatches(maxContentMatches > 0)
+                .setMaxContentMatches(maxContentMatches)
+                .setTimeout(Duration.ofHours(1));
+        byte[] content = corpus.generate(CORPUS_CHARS).getBytes(StandardCharsets.UTF_8);
+        result = new NerResult(new StreamingNerRecognizer(new NerSettings()).extractEntities(new ByteArrayInputStream(content), params));
+        writer = Jackson.newObjectMapper().writerFor(NerResult.class);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(result);
+    }
+}
@@ -0,0 +1,87 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.benchmarks.SyntheticCorpus;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of chunking and classifying text that is already in memory.  Each operation is one character, so the
+ * score is characters per second.  Use this to judge changes to the chunk size or a CoreNLP upgrade.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ChunkedNerRecognizerBenchmark {
+    static final int CORPUS_CHARS = 100000;
+    private static final int MAX_QUEUED_CHUNKS = 8;
+
+    @Param({"PROSE", "TABULAR", "LONG_SENTENCES", "EMAIL_THREAD", "MACHINE_TEXT"})
+    public SyntheticCorpus corpus;
+
+    @Param({"16384", "65536"})
+    public int chunkSize;
+
+    @Param({"0", "4"})
+    public int chunkWorkerThreads;
+
+    @Param({"false", "true"})
+    public boolean includeMatches;
+
+    @Param({"OFF", "STRICT", "AGGRESSIVE"})
+    public NerPreFilter.Mode preFilterMode;
+
+    private String text;
+    private NlpRequestParams params;
+    private ExecutorService chunkExecutor;
+    private NerPreFilter preFilter;
+
+    @Setup
+    public void setup() {
+        StanfordEntityRecogniser.loadClassifier();
+        text = corpus.generate(CORPUS_CHARS);
+        params = new NlpRequestParams()
+                .setIncludeMatches(includeMatches)
+                .setTimeout(Duration.ofHours(1));
+        chunkExecutor = chunkWorkerThreads > 0 ? Executors.newFixedThreadPool(chunkWorkerThreads) : null;
+        preFilter = preFilterMode != NerPreFilter.Mode.OFF ? new NerPreFilter(preFilterMode) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (chunkExecutor != null) {
+            chunkExecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_CHARS)
+    public Map<NlpTagType, NlpTagSet> extractEntities() throws Exception {
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(chunkSize, params, chunkExecutor, MAX_QUEUED_CHUNKS);
+        recognizer.setPreFilter(preFilter);
+        recognizer.addContent(text);
+        return recognizer.getEntities();
+    }
+}
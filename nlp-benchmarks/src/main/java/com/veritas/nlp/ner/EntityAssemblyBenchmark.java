@@ -0,0 +1,113 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning classified tokens into entities - the per-word work done after the CRF has labelled a sentence.
+ * Classification itself happens once, in setup, so it doesn't swamp the result.
+ * <p>
+ * Each operation is one token, so with {@code -prof gc} the {@code gc.alloc.rate.norm} figure is bytes allocated per
+ * token (multiply by a million for bytes per million tokens).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityAssemblyBenchmark {
+    private static final int TOKENS = 20000;
+    private static final String CORPUS_RESOURCE = "/nlp-warmup-corpus.txt";
+
+    @Param({"false", "true"})
+    public boolean includeMatches;
+
+    @Param({"0", "80"})
+    public int minConfidencePercentage;
+
+    private String text;
+    private List<List<CoreLabel>> sentences;
+    private NlpRequestParams params;
+
+    @Setup
+    public void setup() throws IOException {
+        String corpus = readCorpus();
+        StringBuilder sb = new StringBuilder();
+        CRFClassifier<CoreLabel> crf = StanfordEntityRecogniser.loadClassifier();
+
+        // Repeat the corpus until we have enough tokens, then cut the last sentence short so each invocation
+        // processes exactly TOKENS tokens.
+        sentences = new ArrayList<>();
+        int tokens = 0;
+        while (tokens < TOKENS) {
+            int baseOffset = sb.length();
+            sb.append(corpus).append('\n');
+            for (List<CoreLabel> sentence : crf.makeObjectBankFromString(corpus, crf.plainTextReaderAndWriter())) {
+                if (tokens == TOKENS) {
+                    break;
+                }
+                crf.classify(sentence);
+                sentence.forEach(token -> {
+                    token.setBeginPosition(token.beginPosition() + baseOffset);
+                    token.setEndPosition(token.endPosition() + baseOffset);
+                });
+                List<CoreLabel> tokensToUse = sentence.subList(0, Math.min(sentence.size(), TOKENS - tokens));
+                sentences.add(tokensToUse);
+                tokens += tokensToUse.size();
+            }
+        }
+        text = sb.toString();
+
+        params = new NlpRequestParams()
+                .setIncludeMatches(includeMatches)
+                .setMinConfidencePercentage(minConfidencePercentage);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public Map<NlpTagType, NlpTagSet> assembleEntities() throws NerException {
+        Map<NlpTagType, NlpTagSet> entities = new HashMap<>();
+        StanfordEntityRecogniser recogniser = new StanfordEntityRecogniser(
+                entities, text, params, 0, new NerCancellationToken(Duration.ofHours(1)));
+        for (List<CoreLabel> sentence : sentences) {
+            recogniser.getEntitiesForSentence(sentence);
+        }
+        return entities;
+    }
+
+    private static String readCorpus() throws IOException {
+        try (InputStream corpus = EntityAssemblyBenchmark.class.getResourceAsStream(CORPUS_RESOURCE)) {
+            if (corpus == null) {
+                throw new IOException("Corpus not found: " + CORPUS_RESOURCE);
+            }
+            return IOUtils.toString(corpus, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.benchmarks.SyntheticCorpus;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of the NER pipeline as used by the service: decoding a UTF-8 stream, chunking, classifying
+ * and merging results, configured through {@link NerSettings}.  Each operation is one character, so the score is
+ * characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StreamingNerRecognizerBenchmark {
+    private static final int CORPUS_CHARS = ChunkedNerRecognizerBenchmark.CORPUS_CHARS;
+
+    @Param({"PROSE", "TABULAR", "LONG_SENTENCES", "EMAIL_THREAD"})
+    public SyntheticCorpus corpus;
+
+    @Param({"16384", "65536"})
+    public int nerChunkSizeChars;
+
+    @Param({"0", "4"})
+    public int nerChunkWorkerThreads;
+
+    private byte[] content;
+    private NlpRequestParams params;
+    private NerRuntime runtime;
+
+    @Setup
+    public void setup() {
+        StreamingNerRecognizer.loadModels();
+        content = corpus.generate(CORPUS_CHARS).getBytes(StandardCharsets.UTF_8);
+        params = new NlpRequestParams()
+                .setIncludeMatches(true)
+                .setTimeout(Duration.ofHours(1));
+
+        NerSettings settings = new NerSettings();
+        settings.setNerChunkSizeChars(nerChunkSizeChars);
+        settings.setNerChunkWorkerThreads(nerChunkWorkerThreads);
+        settings.setMaxNerContentSizeChars(Integer.MAX_VALUE);
+        runtime = new NerRuntime(settings, new MetricRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_CHARS)
+    public Map<NlpTagType, NlpTagSet> extractEntities() throws Exception {
+        return new StreamingNerRecognizer(runtime).extractEntities(new ByteArrayInputStream(content), params);
+    }
+}
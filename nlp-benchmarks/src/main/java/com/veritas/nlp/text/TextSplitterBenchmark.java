@@ -0,0 +1,53 @@
+package com.veritas.nlp.text;
+
+import com.veritas.nlp.benchmarks.SyntheticCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of splitting text into chunks on sentence boundaries.  Each operation is one character, so the score
+ * is characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSplitterBenchmark {
+    private static final int CORPUS_CHARS = 1000000;
+    private static final int MAX_CHUNK_ADJUSTMENT = 200;
+
+    @Param({"PROSE", "TABULAR", "LONG_SENTENCES", "EMAIL_THREAD"})
+    public SyntheticCorpus corpus;
+
+    @Param({"16384", "65536"})
+    public int chunkSize;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = corpus.generate(CORPUS_CHARS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_CHARS)
+    public List<CharSequence> splitOnSentenceBoundaries() {
+        return SmartTextSplitter.splitOnSentenceBoundaries(text, Locale.ENGLISH, chunkSize, MAX_CHUNK_ADJUSTMENT);
+    }
+}
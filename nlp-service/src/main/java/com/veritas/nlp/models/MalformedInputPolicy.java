@@ -0,0 +1,19 @@
+package com.veritas.nlp.models;
+
+/**
+ * What to do with bytes in a document that aren't valid in its encoding.
+ */
+public enum MalformedInputPolicy {
+    /**
+     * Replace each malformed sequence with U+FFFD.
+     */
+    REPLACE,
+    /**
+     * Drop malformed sequences.
+     */
+    IGNORE,
+    /**
+     * Reject the document.
+     */
+    REJECT
+}
@@ -7,4 +7,32 @@ interface ModelStrings {
     String NLP_MATCHES_TOTAL =
             "The total number of matches, where available. This may be greater than the number of matches returned " +
             "if the list of returned matches is capped.";
+
+    String BATCH_DOCUMENT_DESCRIPTION =
+            "A document to extract entities from, as part of a batch.";
+
+    String BATCH_DOCUMENT_ID =
+            "Caller supplied identifier for the document, which is returned with the document's result.";
+
+    String DOCUMENT_RESULT_DESCRIPTION =
+            "The entities extracted from one document in a batch, or the error that prevented extraction.";
+
+    String DOCUMENT_RESULT_ERROR =
+            "Set if entity extraction failed for this document.  Other documents in the batch are unaffected.";
+
+    String RESULT_FRAGMENT_DESCRIPTION =
+            "One line of an incremental result.  Either a set of content matches of one type, or (on the last line) " +
+            "the complete tag sets and match totals, or the error that stopped processing.";
+
+    String RESULT_FRAGMENT_TYPE =
+            "The entity type of the matches on this line.";
+
+    String RESULT_FRAGMENT_MATCHES =
+            "Content matches found since the previous line, in document order.";
+
+    String RESULT_FRAGMENT_TAG_SETS =
+            "The de-duplicated entities found in the whole document, with match totals.  Only set on the last line.";
+
+    String RESULT_FRAGMENT_ERROR =
+            "Set on the last line if processing failed part way through.  Matches already sent remain valid.";
 }
@@ -0,0 +1,34 @@
+package com.veritas.nlp.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = ModelStrings.BATCH_DOCUMENT_DESCRIPTION)
+public class NerBatchDocument {
+    private String id;
+    private String text;
+
+    public NerBatchDocument() {
+    }
+
+    public NerBatchDocument(String id, String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    @Schema(description = ModelStrings.BATCH_DOCUMENT_ID)
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
@@ -0,0 +1,23 @@
+package com.veritas.nlp.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NerBatchRequest {
+    private List<NerBatchDocument> documents = new ArrayList<>();
+
+    public NerBatchRequest() {
+    }
+
+    public NerBatchRequest(List<NerBatchDocument> documents) {
+        this.documents = documents;
+    }
+
+    public List<NerBatchDocument> getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(List<NerBatchDocument> documents) {
+        this.documents = documents;
+    }
+}
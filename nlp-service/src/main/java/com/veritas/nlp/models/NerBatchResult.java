@@ -0,0 +1,23 @@
+package com.veritas.nlp.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NerBatchResult {
+    private List<NerDocumentResult> documents = new ArrayList<>();
+
+    public NerBatchResult() {
+    }
+
+    public NerBatchResult(List<NerDocumentResult> documents) {
+        this.documents = documents;
+    }
+
+    public List<NerDocumentResult> getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(List<NerDocumentResult> documents) {
+        this.documents = documents;
+    }
+}
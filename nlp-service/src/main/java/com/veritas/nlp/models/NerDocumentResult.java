@@ -0,0 +1,54 @@
+package com.veritas.nlp.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = ModelStrings.DOCUMENT_RESULT_DESCRIPTION)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NerDocumentResult {
+    private String id;
+    private List<NlpTagSet> nlpTagSets;
+    private ErrorResponse error;
+
+    public NerDocumentResult() {
+    }
+
+    public NerDocumentResult(String id, Map<NlpTagType, NlpTagSet> tagSetsMap) {
+        this.id = id;
+        this.nlpTagSets = new ArrayList<>(tagSetsMap.values());
+    }
+
+    public NerDocumentResult(String id, ErrorResponse error) {
+        this.id = id;
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<NlpTagSet> getNlpTagSets() {
+        return nlpTagSets;
+    }
+
+    public void setNlpTagSets(List<NlpTagSet> nlpTagSets) {
+        this.nlpTagSets = nlpTagSets;
+    }
+
+    @Schema(description = ModelStrings.DOCUMENT_RESULT_ERROR)
+    public ErrorResponse getError() {
+        return error;
+    }
+
+    public void setError(ErrorResponse error) {
+        this.error = error;
+    }
+}
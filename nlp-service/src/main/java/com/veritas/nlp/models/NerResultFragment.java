@@ -0,0 +1,69 @@
+package com.veritas.nlp.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = ModelStrings.RESULT_FRAGMENT_DESCRIPTION)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NerResultFragment {
+    private NlpTagType type;
+    private List<NlpMatch> matches;
+    private List<NlpTagSet> nlpTagSets;
+    private ErrorResponse error;
+
+    public NerResultFragment() {
+    }
+
+    public NerResultFragment(NlpTagType type, List<NlpMatch> matches) {
+        this.type = type;
+        this.matches = matches;
+    }
+
+    public NerResultFragment(Map<NlpTagType, NlpTagSet> tagSetsMap) {
+        this.nlpTagSets = new ArrayList<>(tagSetsMap.values());
+    }
+
+    public NerResultFragment(ErrorResponse error) {
+        this.error = error;
+    }
+
+    @Schema(description = ModelStrings.RESULT_FRAGMENT_TYPE)
+    public NlpTagType getType() {
+        return type;
+    }
+
+    public void setType(NlpTagType type) {
+        this.type = type;
+    }
+
+    @Schema(description = ModelStrings.RESULT_FRAGMENT_MATCHES)
+    public List<NlpMatch> getMatches() {
+        return matches;
+    }
+
+    public void setMatches(List<NlpMatch> matches) {
+        this.matches = matches;
+    }
+
+    @Schema(description = ModelStrings.RESULT_FRAGMENT_TAG_SETS)
+    public List<NlpTagSet> getNlpTagSets() {
+        return nlpTagSets;
+    }
+
+    public void setNlpTagSets(List<NlpTagSet> nlpTagSets) {
+        this.nlpTagSets = nlpTagSets;
+    }
+
+    @Schema(description = ModelStrings.RESULT_FRAGMENT_ERROR)
+    public ErrorResponse getError() {
+        return error;
+    }
+
+    public void setError(ErrorResponse error) {
+        this.error = error;
+    }
+}
@@ -3,5 +3,10 @@ package com.veritas.nlp.models;
 public enum NlpTagType {
     PERSON,
     ORGANIZATION,
-    LOCATION
-}
\ No newline at end of file
+    LOCATION,
+    MISC,
+    MONEY,
+    PERCENT,
+    DATE,
+    TIME
+}
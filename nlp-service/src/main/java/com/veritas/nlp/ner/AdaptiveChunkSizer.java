@@ -0,0 +1,84 @@
+package com.veritas.nlp.ner;
+
+/**
+ * Chooses the size of the next chunk of a document from the cost of classifying the chunks before it.
+ * <p>
+ * Text that the sentence splitter can't break up ('unnatural' text such as tables or long run-on lists) produces
+ * very long sentences, which are expensive to classify.  Smaller chunks cap their length.  Clean prose, on the
+ * other hand, is classified a little faster in larger chunks, because the fixed cost per chunk is spread further.
+ * <p>
+ * So if a chunk contains a sentence longer than {@code maxSentenceTokens}, the chunk size is halved straight away.
+ * Otherwise we hill-climb on classification time per character: keep doubling (or halving) the chunk size while
+ * that makes things no more than {@code costTolerancePercent} more expensive.  Once a step makes things worse we
+ * step back, stay at that size for a few chunks, then probe in the other direction.  The size always stays within
+ * the configured bounds, and stays at a bound for as long as the cost there doesn't get worse.
+ * <p>
+ * Not thread safe - chunk results should be recorded in document order by one thread.
+ */
+class AdaptiveChunkSizer {
+    private static final int SETTLE_CHUNKS = 8;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final int maxSentenceTokens;
+    private final double costTolerance;
+    private int chunkSize;
+    private boolean growing = true;
+    private double lastCostPerChar = Double.NaN;
+    private int settleChunksRemaining;
+
+    AdaptiveChunkSizer(int initialChunkSize, NerAdaptiveChunkSizeSettings settings) {
+        this.minChunkSize = Math.max(1, settings.getMinChunkSizeChars());
+        this.maxChunkSize = Math.max(minChunkSize, settings.getMaxChunkSizeChars());
+        this.maxSentenceTokens = settings.getMaxSentenceTokens();
+        this.costTolerance = settings.getCostTolerancePercent() / 100.0;
+        this.chunkSize = clamp(initialChunkSize);
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param targetChunkSize The chunk size that was in force when the chunk was split off.  Chunks are classified
+     *                        asynchronously, so this may be out of date by the time the result is recorded.
+     */
+    void recordChunk(int targetChunkSize, int chars, long classifyNanos, int longestSentenceTokens) {
+        if (longestSentenceTokens > maxSentenceTokens) {
+            if (chunkSize > minChunkSize) {
+                resize(false);
+            }
+            growing = false;
+            return;
+        }
+
+        // Costs are only comparable for full chunks split off at the current size.
+        if (targetChunkSize != chunkSize || chars < chunkSize / 2) {
+            return;
+        }
+
+        double costPerChar = (double)classifyNanos / chars;
+        if (settleChunksRemaining > 0) {
+            settleChunksRemaining--;
+            lastCostPerChar = costPerChar;
+            return;
+        }
+        if (!Double.isNaN(lastCostPerChar) && costPerChar > lastCostPerChar * (1 + costTolerance)) {
+            // The last step made things worse - go back, and probe the other way once we've settled.
+            growing = !growing;
+            resize(growing);
+            settleChunksRemaining = SETTLE_CHUNKS;
+            lastCostPerChar = Double.NaN;
+            return;
+        }
+        lastCostPerChar = costPerChar;
+        resize(growing);
+    }
+
+    private void resize(boolean grow) {
+        chunkSize = clamp(grow ? chunkSize * 2 : chunkSize / 2);
+    }
+
+    private int clamp(int size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+}
@@ -1,90 +1,359 @@
 package com.veritas.nlp.ner;
 
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpMatchCollection;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
 import com.veritas.nlp.resources.NlpRequestParams;
-import com.veritas.nlp.text.SmartTextSplitter;
+import com.veritas.nlp.text.IncrementalTextSplitter;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
 
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Performs named entity recognition by splitting content into chunks.  This helps performance, especially with
  * very large documents and those with 'unnatural' text.
+ * <p>
+ * If a chunk executor is supplied, completed chunks are handed to it for classification while the caller carries on
+ * adding content.  At most {@code maxQueuedChunks} chunks are queued or running at once - once that limit is hit,
+ * adding content blocks until the oldest chunk has been classified.  Per-chunk results are merged back in document
+ * order, so the results are identical to sequential processing.
+ * <p>
+ * If a match listener is set, content matches are passed to it as each chunk is merged rather than being kept, so
+ * the final tag sets hold just the tags and match totals.  Memory use then no longer grows with the number of
+ * matches, and the caller can pass matches on before the whole document has been processed.
+ * <p>
+ * If an {@link AdaptiveChunkSizer} is set, the size of each chunk is chosen from the cost of classifying the chunks
+ * before it, rather than being fixed.  If a {@link NerPreFilter} is set, chunks and sentences that can't contain
+ * entities are skipped rather than classified, unless the filter can't be used with the requested model.
+ * <p>
+ * The requested model's classifier is looked up once, when the first content is added, and every chunk is
+ * classified with it - so the whole document is classified by the same model instance, even if the registry
+ * unloads the model part way through.
  */
 class ChunkedNerRecognizer {
     private static final int SEARCH_SENTENCE_BOUNDARY_MAX_CHARS = 200;
-    private final StringBuilder toBeProcessed = new StringBuilder();
-    private final Map<NlpTagType, NlpTagSet> entitiesMap = new HashMap<>();
     private final int chunkSize;
+    private final Map<NlpTagType, NlpTagSet> entitiesMap = new HashMap<>();
+    private final Deque<Future<ChunkResult>> queuedChunks = new ArrayDeque<>();
     private final NlpRequestParams params;
-    private final Instant startTime = Instant.now();
-    private Duration timeout;
+    private final ExecutorService chunkExecutor;
+    private final int maxQueuedChunks;
+    private final NerSentenceCache sentenceCache;
+    private final Map<NlpTagType, Integer> notifiedMatchCounts = new EnumMap<>(NlpTagType.class);
+    private NerMatchListener matchListener;
+    private AdaptiveChunkSizer chunkSizer;
+    private NerPreFilter preFilter;
+    private CRFClassifier<CoreLabel> crf;
+    private NerPreFilter modelPreFilter;
+    private boolean modelResolved;
+    private NerMetrics metrics;
+    private NerBufferPool bufferPool;
+    private IncrementalTextSplitter textSplitter;
+    private final NerCancellationToken cancellationToken;
     private long matchBaseOffset;
+    private boolean completed;
 
     ChunkedNerRecognizer(int chunkSize, NlpRequestParams params) {
+        this(chunkSize, params, null, 0);
+    }
+
+    ChunkedNerRecognizer(int chunkSize, NlpRequestParams params, ExecutorService chunkExecutor, int maxQueuedChunks) {
+        this(chunkSize, params, chunkExecutor, maxQueuedChunks, new NerCancellationToken(params.getTimeout()));
+    }
+
+    ChunkedNerRecognizer(NlpRequestParams params, NerRuntime runtime, NerCancellationToken cancellationToken) {
+        this(runtime.getSettings().getNerChunkSizeChars(), params, runtime.getChunkExecutor(),
+                runtime.getSettings().getNerMaxQueuedChunks(), cancellationToken, runtime.getSentenceCache());
+        this.metrics = runtime.getMetrics();
+        this.preFilter = runtime.getPreFilter();
+        this.bufferPool = runtime.getBufferPool();
+        NerAdaptiveChunkSizeSettings adaptiveSettings = runtime.getSettings().getNerAdaptiveChunkSize();
+        if (adaptiveSettings.isEnabled()) {
+            setChunkSizer(new AdaptiveChunkSizer(runtime.getSettings().getNerChunkSizeChars(), adaptiveSettings));
+        }
+    }
+
+    ChunkedNerRecognizer(int chunkSize, NlpRequestParams params, ExecutorService chunkExecutor, int maxQueuedChunks,
+                         NerCancellationToken cancellationToken) {
+        this(chunkSize, params, chunkExecutor, maxQueuedChunks, cancellationToken, null);
+    }
+
+    ChunkedNerRecognizer(int chunkSize, NlpRequestParams params, ExecutorService chunkExecutor, int maxQueuedChunks,
+                         NerCancellationToken cancellationToken, NerSentenceCache sentenceCache) {
         this.chunkSize = chunkSize;
         this.params = params;
-        this.timeout = params.getTimeout();
+        this.chunkExecutor = chunkExecutor;
+        this.maxQueuedChunks = Math.max(1, maxQueuedChunks);
+        this.cancellationToken = cancellationToken;
+        this.sentenceCache = sentenceCache;
     }
 
+    /**
+     * Change the timeout on the existing token, rather than replacing it, so the token's stats and its links to
+     * whoever else can cancel the request are kept.
+     */
     void setTimeout(Duration timeout) {
-        this.timeout = timeout;
+        cancellationToken.setTimeout(timeout);
+    }
+
+    void setMatchListener(NerMatchListener matchListener) {
+        this.matchListener = matchListener;
+    }
+
+    void setChunkSizer(AdaptiveChunkSizer chunkSizer) {
+        this.chunkSizer = chunkSizer;
+    }
+
+    void setPreFilter(NerPreFilter preFilter) {
+        this.preFilter = preFilter;
+    }
+
+    /**
+     * Classify with the given classifier rather than looking up the requested model, so that several documents in
+     * a request can share one.  Must be set before any content is added.
+     */
+    void setClassifier(CRFClassifier<CoreLabel> crf) {
+        this.crf = crf;
+    }
+
+    /**
+     * Lease the text splitter from the pool rather than creating one.  Must be set before any content is added, and
+     * the splitter given back with {@link #release()}.
+     */
+    void setBufferPool(NerBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
 
     void addContent(char[] text, int offset, int len) throws Exception {
-        toBeProcessed.append(text, offset, len);
-        if (toBeProcessed.length() < chunkSize) {
-            return;
-        }
+        getTextSplitter().append(text, offset, len);
+        processText(false);
+    }
+
+    void addContent(CharSequence text) throws Exception {
+        getTextSplitter().append(text);
         processText(false);
     }
 
     Map<NlpTagType, NlpTagSet> getEntities() throws Exception {
         processText(true);
+        mergeQueuedChunks(0);
+        completed = true;
         return entitiesMap;
     }
 
+    /**
+     * Abandon any work still outstanding after a failure.  Queued chunks see the cancelled token and stop before
+     * (or part way through) classification.  Safe to call at any time - it does nothing once
+     * {@link #getEntities()} has completed.
+     */
+    void cancel() {
+        if (completed) {
+            return;
+        }
+        cancellationToken.cancel(NerCancellationToken.Reason.REQUEST_FAILED);
+        cancellationToken.recordAbandoned(textSplitter != null ? textSplitter.getPendingLength() : 0);
+        queuedChunks.clear();
+    }
+
+    /**
+     * Give the text splitter back to the buffer pool, if it came from one.  Chunks are split off as copies, so this
+     * is safe even if chunks are still being classified, but no more content can be added.
+     */
+    void release() {
+        if (bufferPool != null && textSplitter != null) {
+            bufferPool.releaseSplitter(textSplitter);
+            textSplitter = null;
+        }
+    }
+
+    static IncrementalTextSplitter createTextSplitter(int chunkSize) {
+        return new IncrementalTextSplitter(Locale.ENGLISH, chunkSize, SEARCH_SENTENCE_BOUNDARY_MAX_CHARS);
+    }
+
+    private IncrementalTextSplitter getTextSplitter() {
+        if (textSplitter == null) {
+            textSplitter = bufferPool != null ? bufferPool.acquireSplitter(chunkSize) : createTextSplitter(chunkSize);
+        }
+        return textSplitter;
+    }
+
     private void processText(boolean finalize) throws Exception {
-        List<CharSequence> chunks = SmartTextSplitter.splitOnSentenceBoundaries(
-                toBeProcessed, Locale.ENGLISH, chunkSize, SEARCH_SENTENCE_BOUNDARY_MAX_CHARS);
+        // Unless we're finalizing, the splitter holds back the last chunk because it might not be complete.
+        resolveModel();
+        NerRequestStats stats = cancellationToken.getStats();
+        while (true) {
+            int targetChunkSize = 0;
+            if (chunkSizer != null) {
+                targetChunkSize = chunkSizer.getChunkSize();
+                getTextSplitter().setChunkSize(targetChunkSize);
+            }
+            String chunk = nextChunk(finalize, stats);
+            if (chunk == null) {
+                break;
+            }
+            stats.addChunk();
+            if (metrics != null) {
+                metrics.recordChunkSize(chunk.length());
+            }
+            if (modelPreFilter != null && modelPreFilter.canSkip(chunk)) {
+                stats.addSkipped(chunk.length());
+            } else if (chunkExecutor != null) {
+                queueChunk(chunk, matchBaseOffset, targetChunkSize);
+            } else if (matchListener != null || chunkSizer != null) {
+                mergeChunk(extractChunkEntities(chunk, matchBaseOffset, targetChunkSize));
+            } else {
+                extractEntities(chunk, matchBaseOffset);
+            }
+            matchBaseOffset += chunk.length();
+        }
+    }
 
-        // Don't extract entities from the last chunk because it might not be complete (unless we're finalizing, in
-        // which case we know we won't get any more text to fill out the chunk)
-        int chunksToProcess = finalize ? chunks.size() : chunks.size() - 1;
+    /**
+     * Look up the requested model's classifier, if one wasn't given, and check whether the pre-filter can be used
+     * with it.  Done just once, so later chunks don't go back to the registry.
+     */
+    private void resolveModel() throws NerException {
+        if (modelResolved) {
+            return;
+        }
+        if (crf == null) {
+            crf = NerModelRegistry.getInstance().getClassifier(params.getModel());
+        }
+        modelPreFilter = preFilter != null ? preFilter.forClassifier(crf) : null;
+        modelResolved = true;
+    }
+
+    private String nextChunk(boolean finalize, NerRequestStats stats) {
+        long start = System.nanoTime();
+        String chunk = getTextSplitter().nextChunk(finalize);
+        stats.addStageNanos(NerRequestStats.Stage.SPLIT, System.nanoTime() - start);
+        return chunk;
+    }
+
+    private void extractEntities(String text, long matchBaseOffsetForChunk) throws Exception {
+        StanfordEntityRecogniser recogniser = new StanfordEntityRecogniser(
+                entitiesMap, text, params, matchBaseOffsetForChunk, cancellationToken, sentenceCache, crf);
+        recogniser.setPreFilter(modelPreFilter);
+        recogniser.extractEntities();
+    }
 
-        long matchBaseOffsetForChunk = matchBaseOffset;
-        for (int i=0; i < chunksToProcess; i++) {
-            extractEntities(chunks.get(i), matchBaseOffsetForChunk);
-            matchBaseOffsetForChunk += chunks.get(i).length();
+    private void queueChunk(String text, long matchBaseOffsetForChunk, int targetChunkSize) throws Exception {
+        // Merge anything that has already finished, then apply backpressure if the queue is full.
+        while (!queuedChunks.isEmpty() && queuedChunks.peekFirst().isDone()) {
+            mergeQueuedChunks(queuedChunks.size() - 1);
         }
+        mergeQueuedChunks(maxQueuedChunks - 1);
 
-        if (!finalize && chunks.size() >= 2) {
-            // The last chunk wasn't processed - it will be the start of the first chunk next time.
-            long processedLength = toBeProcessed.length();
-            toBeProcessed.setLength(0);
-            toBeProcessed.append(chunks.get(chunks.size() - 1));
-            processedLength -= toBeProcessed.length();
+        cancellationToken.throwIfCancelled();
+        queuedChunks.addLast(chunkExecutor.submit(() -> extractChunkEntities(text, matchBaseOffsetForChunk, targetChunkSize)));
+    }
 
-            matchBaseOffset += processedLength;
+    /**
+     * Wait for the oldest queued chunks to be classified, merging their results in document order, until no more
+     * than {@code maxRemaining} chunks are left in the queue.  Merging in document order means match offsets,
+     * de-duplication and the match cap behave exactly as they would if the chunks had been processed one after
+     * another.
+     */
+    private void mergeQueuedChunks(int maxRemaining) throws Exception {
+        while (queuedChunks.size() > maxRemaining) {
+            mergeChunk(getChunkResult(queuedChunks.peekFirst()));
+            queuedChunks.removeFirst();
         }
     }
 
-    private void extractEntities(CharSequence text, long matchBaseOffsetForChunk) throws Exception {
-        checkTimeout();
+    private ChunkResult extractChunkEntities(String text, long matchBaseOffsetForChunk, int targetChunkSize) throws Exception {
+        Map<NlpTagType, NlpTagSet> chunkEntities = new HashMap<>();
         StanfordEntityRecogniser recogniser = new StanfordEntityRecogniser(
-                entitiesMap, text.toString(), params, matchBaseOffsetForChunk);
+                chunkEntities, text, params, matchBaseOffsetForChunk, cancellationToken, sentenceCache, crf);
+        recogniser.setPreFilter(modelPreFilter);
+        long start = System.nanoTime();
         recogniser.extractEntities();
+        return new ChunkResult(chunkEntities, targetChunkSize, text.length(), System.nanoTime() - start,
+                recogniser.getLongestSentenceTokens());
     }
 
-    private void checkTimeout() throws TimeoutException {
-        if (startTime.plus(timeout).isBefore(Instant.now())) {
-            throw new TimeoutException();
+    private ChunkResult getChunkResult(Future<ChunkResult> chunkResult) throws Exception {
+        try {
+            return chunkResult.get(cancellationToken.getRemainingTime().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            cancellationToken.cancel(NerCancellationToken.Reason.TIMEOUT);
+            throw e;
+        }
+    }
+
+    private void mergeChunk(ChunkResult chunkResult) throws Exception {
+        if (chunkSizer != null) {
+            chunkSizer.recordChunk(chunkResult.targetChunkSize, chunkResult.chars, chunkResult.classifyNanos,
+                    chunkResult.longestSentenceTokens);
+        }
+        mergeEntities(chunkResult.entities);
+    }
+
+    private void mergeEntities(Map<NlpTagType, NlpTagSet> chunkEntities) throws Exception {
+        for (NlpTagSet chunkTagSet : chunkEntities.values()) {
+            NlpTagSet tagSet = entitiesMap.computeIfAbsent(chunkTagSet.getType(), StanfordEntityRecogniser::createTagSet);
+            tagSet.getTags().addAll(chunkTagSet.getTags());
+
+            NlpMatchCollection chunkMatches = chunkTagSet.getMatchCollection();
+            if (chunkMatches != null) {
+                if (tagSet.getMatchCollection() == null) {
+                    tagSet.setMatchCollection(new NlpMatchCollection());
+                }
+                NlpMatchCollection matches = tagSet.getMatchCollection();
+                matches.setTotal(matches.getTotal() + chunkMatches.getTotal());
+                mergeMatches(chunkTagSet.getType(), matches, chunkMatches.getMatches());
+            }
+        }
+    }
+
+    private void mergeMatches(NlpTagType type, NlpMatchCollection matches, List<NlpMatch> chunkMatches) throws Exception {
+        int matchesSoFar = matchListener != null ? notifiedMatchCounts.getOrDefault(type, 0) : matches.getMatches().size();
+        int matchesToAdd = Math.min(chunkMatches.size(), Math.max(0, params.getMaxContentMatches() - matchesSoFar));
+        if (matchesToAdd == 0) {
+            return;
+        }
+        List<NlpMatch> newMatches = chunkMatches.subList(0, matchesToAdd);
+        if (matchListener != null) {
+            matchListener.onMatches(type, newMatches);
+            notifiedMatchCounts.put(type, matchesSoFar + matchesToAdd);
+        } else {
+            matches.getMatches().addAll(newMatches);
+        }
+    }
+
+    private static class ChunkResult {
+        private final Map<NlpTagType, NlpTagSet> entities;
+        private final int targetChunkSize;
+        private final int chars;
+        private final long classifyNanos;
+        private final int longestSentenceTokens;
+
+        ChunkResult(Map<NlpTagType, NlpTagSet> entities, int targetChunkSize, int chars, long classifyNanos,
+                    int longestSentenceTokens) {
+            this.entities = entities;
+            this.targetChunkSize = targetChunkSize;
+            this.chars = chars;
+            this.classifyNanos = classifyNanos;
+            this.longestSentenceTokens = longestSentenceTokens;
         }
     }
 }
@@ -0,0 +1,74 @@
+package com.veritas.nlp.ner;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails, rather than reading on, once more than a given number of bytes have been read from the underlying stream.
+ * Unlike commons-io's BoundedInputStream, which quietly reports the end of the stream at the limit, a document that
+ * is too large is never mistaken for a complete one.
+ */
+class LimitedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    LimitedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            addCount(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            addCount(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        addCount(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported, as a reset would throw the count out.
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void addCount(long bytes) throws LimitExceededException {
+        count += bytes;
+        if (count > maxBytes) {
+            throw new LimitExceededException(maxBytes);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class LimitExceededException extends IOException {
+        LimitExceededException(long maxBytes) {
+            super("More than " + maxBytes + " bytes");
+        }
+    }
+}
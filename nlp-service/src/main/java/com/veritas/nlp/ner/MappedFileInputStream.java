@@ -0,0 +1,67 @@
+package com.veritas.nlp.ner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file through a series of memory-mapped windows, so that it is read straight from the page cache, without
+ * a system call (and copy) per read.
+ * <p>
+ * A window can't be unmapped explicitly, so its mapping lasts until the window is garbage collected.  The mapping
+ * only takes address space, not heap, so this is fine even for very large files.  The caller owns the channel.
+ */
+class MappedFileInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSizeBytes;
+    private MappedByteBuffer window;
+    private long windowEnd;
+
+    MappedFileInputStream(FileChannel channel, int windowSizeBytes) throws IOException {
+        if (windowSizeBytes <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSizeBytes = windowSizeBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextWindowIfNeeded() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextWindowIfNeeded()) {
+            return -1;
+        }
+        int read = Math.min(len, window.remaining());
+        window.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        long remaining = (window != null ? window.remaining() : 0) + (size - windowEnd);
+        return (int)Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    private boolean nextWindowIfNeeded() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (windowEnd >= size) {
+            return false;
+        }
+        long windowStart = windowEnd;
+        windowEnd = Math.min(size, windowStart + windowSizeBytes);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+        return true;
+    }
+}
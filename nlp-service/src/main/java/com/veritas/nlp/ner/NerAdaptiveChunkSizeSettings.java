@@ -0,0 +1,49 @@
+package com.veritas.nlp.ner;
+
+public class NerAdaptiveChunkSizeSettings {
+    private boolean enabled;
+    private int minChunkSizeChars = 4096;
+    private int maxChunkSizeChars = 262144;
+    private int maxSentenceTokens = 250;
+    private int costTolerancePercent = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMinChunkSizeChars() {
+        return minChunkSizeChars;
+    }
+
+    public void setMinChunkSizeChars(int minChunkSizeChars) {
+        this.minChunkSizeChars = minChunkSizeChars;
+    }
+
+    public int getMaxChunkSizeChars() {
+        return maxChunkSizeChars;
+    }
+
+    public void setMaxChunkSizeChars(int maxChunkSizeChars) {
+        this.maxChunkSizeChars = maxChunkSizeChars;
+    }
+
+    public int getMaxSentenceTokens() {
+        return maxSentenceTokens;
+    }
+
+    public void setMaxSentenceTokens(int maxSentenceTokens) {
+        this.maxSentenceTokens = maxSentenceTokens;
+    }
+
+    public int getCostTolerancePercent() {
+        return costTolerancePercent;
+    }
+
+    public void setCostTolerancePercent(int costTolerancePercent) {
+        this.costTolerancePercent = costTolerancePercent;
+    }
+}
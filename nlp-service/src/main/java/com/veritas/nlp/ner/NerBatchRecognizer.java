@@ -0,0 +1,165 @@
+package com.veritas.nlp.ner;
+
+import com.google.common.hash.HashCode;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.ErrorCode;
+import com.veritas.nlp.resources.NlpRequestParams;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Extracts named entities from a batch of (typically small) documents.
+ * <p>
+ * For short texts the fixed cost of a request - reading a stream through a large char buffer, setting up the
+ * recognizer, and so on - can outweigh the cost of classification.  Here the documents have already been decoded,
+ * so they are passed straight to the chunked recognizer, and when there is a chunk worker pool the documents are
+ * classified on it in parallel.  A batch is a single request, so like the chunks of a single document, no more than
+ * {@code nerMaxQueuedChunks} of its documents are queued or running on the pool at once.  That keeps a large batch
+ * from queueing ahead of every other request's chunks.
+ * <p>
+ * Each document succeeds or fails independently.  The cancellation token covers the whole batch.
+ */
+public class NerBatchRecognizer {
+    private final NerRuntime runtime;
+
+    public NerBatchRecognizer(NerRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    /**
+     * @return One (completed) future per text, in the same order as the texts.
+     * @throws TimeoutException if the batch is not complete within the token's timeout.
+     */
+    public List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> extractEntities(
+            List<String> texts, NlpRequestParams params, NerCancellationToken cancellationToken) throws Exception {
+
+        // Every document is classified by the same model instance, even if the registry unloads it part way through.
+        CRFClassifier<CoreLabel> crf = NerModelRegistry.getInstance().getClassifier(params.getModel());
+        ExecutorService executor = runtime.getChunkExecutor();
+        Semaphore inFlightPermits = new Semaphore(Math.max(1, runtime.getSettings().getNerMaxQueuedChunks()));
+        List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            CompletableFuture<Map<NlpTagType, NlpTagSet>> result = new CompletableFuture<>();
+            if (executor != null) {
+                acquire(inFlightPermits, cancellationToken);
+                try {
+                    executor.execute(() -> {
+                        try {
+                            extractEntities(text, params, crf, cancellationToken, result);
+                        } finally {
+                            inFlightPermits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlightPermits.release();
+                    throw e;
+                }
+            } else {
+                extractEntities(text, params, crf, cancellationToken, result);
+            }
+            results.add(result);
+        }
+
+        for (CompletableFuture<Map<NlpTagType, NlpTagSet>> result : results) {
+            try {
+                result.get(cancellationToken.getRemainingTime().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // Reported against the individual document.
+            } catch (TimeoutException e) {
+                cancellationToken.cancel(NerCancellationToken.Reason.TIMEOUT);
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Wait for one of the batch's documents to finish, if it already has as many in flight as it's allowed.
+     *
+     * @throws TimeoutException if none finishes within the token's timeout.
+     */
+    private static void acquire(Semaphore inFlightPermits, NerCancellationToken cancellationToken) throws Exception {
+        cancellationToken.throwIfCancelled();
+        if (!inFlightPermits.tryAcquire(cancellationToken.getRemainingTime().toMillis(), TimeUnit.MILLISECONDS)) {
+            cancellationToken.cancel(NerCancellationToken.Reason.TIMEOUT);
+            throw new TimeoutException("Timed out waiting for the batch's earlier documents to be processed");
+        }
+    }
+
+    private void extractEntities(String text, NlpRequestParams params, CRFClassifier<CoreLabel> crf,
+                                 NerCancellationToken cancellationToken, CompletableFuture<Map<NlpTagType, NlpTagSet>> result) {
+        try {
+            result.complete(extractEntities(text, params, crf, cancellationToken));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Extract entities from a single (already decoded) document.
+     */
+    public Map<NlpTagType, NlpTagSet> extractEntities(
+            String text, NlpRequestParams params, NerCancellationToken cancellationToken) throws Exception {
+        return extractEntities(text, params, null, cancellationToken);
+    }
+
+    /**
+     * @param crf The classifier to use, or null to look up the requested model.
+     */
+    private Map<NlpTagType, NlpTagSet> extractEntities(
+            String text, NlpRequestParams params, CRFClassifier<CoreLabel> crf, NerCancellationToken cancellationToken)
+            throws Exception {
+
+        if (text == null) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "Document has no text");
+        }
+        if (text.length() > runtime.getSettings().getMaxNerContentSizeChars()) {
+            throw new NerException(ErrorCode.CONTENT_TOO_LARGE);
+        }
+        cancellationToken.throwIfCancelled();
+        cancellationToken.getStats().addChars(text.length());
+
+        NerResultCache resultCache = runtime.getResultCache();
+        HashCode cacheKey = resultCache != null && text.length() <= resultCache.getMaxDocumentSizeChars()
+                ? resultCache.createKey(text, params)
+                : null;
+        if (cacheKey != null) {
+            Map<NlpTagType, NlpTagSet> cachedEntities = resultCache.get(cacheKey);
+            if (cachedEntities != null) {
+                return cachedEntities;
+            }
+        }
+
+        // No chunk executor - the documents themselves are what we run in parallel.  That also means there is
+        // nothing queued to clean up if classification fails, so we don't cancel the (shared) token.
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(
+                runtime.getSettings().getNerChunkSizeChars(), params, null, 0, cancellationToken,
+                runtime.getSentenceCache());
+        recognizer.setPreFilter(runtime.getPreFilter());
+        recognizer.setClassifier(crf);
+        recognizer.setBufferPool(runtime.getBufferPool());
+        Map<NlpTagType, NlpTagSet> entities;
+        try {
+            recognizer.addContent(text);
+            entities = recognizer.getEntities();
+        } finally {
+            recognizer.release();
+        }
+
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, entities);
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,123 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.text.IncrementalTextSplitter;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded pool of the working state that NER requests need but don't return: the buffers documents are read and
+ * decoded into, and the text splitters that chunk them.  Allocating these afresh for every request churns the young
+ * generation for no benefit - a full size decode buffer alone is 2MB.
+ * <p>
+ * Buffers are sized to the document when its length is known in advance, rounded up to a power of two (and no
+ * smaller than minBufferSizeChars) so that documents of similar size share buffers.  Up to maxPooled buffers of each
+ * type and size, and maxPooled splitters, are kept.  If the pool is empty a lease just allocates, and the pool's
+ * exhaustion is recorded in the metrics, so requests never wait for the pool.
+ */
+class NerBufferPool {
+    private final int maxPooled;
+    private final int minBufferSizeChars;
+    private final int maxRetainedSplitterChars;
+    private final NerMetrics metrics;
+    private final Map<Integer, BlockingQueue<char[]>> buffers = new ConcurrentHashMap<>();
+    private final Map<Integer, BlockingQueue<byte[]>> byteBuffers = new ConcurrentHashMap<>();
+    private final BlockingQueue<IncrementalTextSplitter> splitters;
+
+    NerBufferPool(NerSettings settings, NerMetrics metrics) {
+        NerBufferPoolSettings poolSettings = settings.getNerBufferPool();
+        this.maxPooled = Math.max(1, poolSettings.getMaxPooled());
+        this.minBufferSizeChars = poolSettings.getMinBufferSizeChars();
+        // A splitter's buffer holds a chunk or two, plus whatever was last read.  Anything much bigger than that
+        // came from an unusual document, so isn't worth keeping.
+        this.maxRetainedSplitterChars = 2 * settings.getNerChunkSizeChars() + minBufferSizeChars;
+        this.metrics = metrics;
+        this.splitters = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @param metrics Null if metrics are not being recorded.
+     * @return Null if the settings do not enable the pool.
+     */
+    static NerBufferPool create(NerSettings settings, NerMetrics metrics) {
+        return settings.getNerBufferPool().isEnabled() ? new NerBufferPool(settings, metrics) : null;
+    }
+
+    /**
+     * Lease a buffer to decode a document into.  Return it with {@link #releaseBuffer} once the document has been
+     * read.
+     *
+     * @param maxSizeChars The size of buffer to use if the document's length is unknown, or isn't small.
+     * @param expectedLength An upper bound on the document's length in chars, or -1 if unknown.
+     */
+    char[] acquireBuffer(int maxSizeChars, long expectedLength) {
+        int sizeChars = getBufferSize(maxSizeChars, expectedLength, minBufferSizeChars);
+        char[] buffer = getBuffers(sizeChars).poll();
+        recordLease(buffer == null);
+        return buffer != null ? buffer : new char[sizeChars];
+    }
+
+    void releaseBuffer(char[] buffer) {
+        getBuffers(buffer.length).offer(buffer);
+    }
+
+    /**
+     * Lease a buffer to read a document's bytes into, before they are decoded.  Return it with
+     * {@link #releaseByteBuffer} once the document has been read.
+     *
+     * @param maxSizeBytes The size of buffer to use if the document's length is unknown, or isn't small.
+     * @param expectedLength An upper bound on the document's length in bytes, or -1 if unknown.
+     */
+    byte[] acquireByteBuffer(int maxSizeBytes, long expectedLength) {
+        int sizeBytes = getBufferSize(maxSizeBytes, expectedLength, minBufferSizeChars);
+        byte[] buffer = getByteBuffers(sizeBytes).poll();
+        recordLease(buffer == null);
+        return buffer != null ? buffer : new byte[sizeBytes];
+    }
+
+    void releaseByteBuffer(byte[] buffer) {
+        getByteBuffers(buffer.length).offer(buffer);
+    }
+
+    /**
+     * Lease a text splitter.  Return it with {@link #releaseSplitter} once the document has been split.
+     */
+    IncrementalTextSplitter acquireSplitter(int chunkSize) {
+        IncrementalTextSplitter splitter = splitters.poll();
+        recordLease(splitter == null);
+        if (splitter == null) {
+            return ChunkedNerRecognizer.createTextSplitter(chunkSize);
+        }
+        splitter.setChunkSize(chunkSize);
+        return splitter;
+    }
+
+    void releaseSplitter(IncrementalTextSplitter splitter) {
+        splitter.reset(maxRetainedSplitterChars);
+        splitters.offer(splitter);
+    }
+
+    static int getBufferSize(int maxSizeChars, long expectedLength, int minBufferSizeChars) {
+        if (expectedLength < 0 || expectedLength >= maxSizeChars) {
+            return maxSizeChars;
+        }
+        long sizeChars = Math.max(minBufferSizeChars, expectedLength <= 1 ? 1 : Long.highestOneBit(expectedLength - 1) << 1);
+        return (int)Math.min(maxSizeChars, sizeChars);
+    }
+
+    private BlockingQueue<char[]> getBuffers(int sizeChars) {
+        return buffers.computeIfAbsent(sizeChars, size -> new ArrayBlockingQueue<>(maxPooled));
+    }
+
+    private BlockingQueue<byte[]> getByteBuffers(int sizeBytes) {
+        return byteBuffers.computeIfAbsent(sizeBytes, size -> new ArrayBlockingQueue<>(maxPooled));
+    }
+
+    private void recordLease(boolean exhausted) {
+        if (metrics != null) {
+            metrics.recordPoolLease(exhausted);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.veritas.nlp.ner;
+
+public class NerBufferPoolSettings {
+    private boolean enabled = true;
+    private int maxPooled = 16;
+    private int minBufferSizeChars = 4096;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    public void setMaxPooled(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    public int getMinBufferSizeChars() {
+        return minBufferSizeChars;
+    }
+
+    public void setMinBufferSizeChars(int minBufferSizeChars) {
+        this.minBufferSizeChars = minBufferSizeChars;
+    }
+}
@@ -0,0 +1,134 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.resources.ErrorCode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Allows a NER request to be abandoned part way through.  The token is checked before each sentence is classified,
+ * so a request stops using CPU soon after its timeout expires, its client disconnects or the service shuts down,
+ * rather than carrying on to the end of the document.
+ * <p>
+ * The token also keeps a tally of the text processed and abandoned, from which we estimate how much CPU time was
+ * saved by cancelling, and the request's {@link NerRequestStats}.
+ */
+public class NerCancellationToken {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    public enum Reason {
+        TIMEOUT,
+        CLIENT_DISCONNECTED,
+        SHUTDOWN,
+        REQUEST_FAILED
+    }
+
+    private final long startNanos = System.nanoTime();
+    private volatile long timeoutNanos;
+    private final BooleanSupplier clientConnected;
+    private final LongAdder processedChars = new LongAdder();
+    private final LongAdder processingCpuNanos = new LongAdder();
+    private final LongAdder abandonedChars = new LongAdder();
+    private final NerRequestStats stats = new NerRequestStats();
+    private volatile Reason reason;
+
+    public NerCancellationToken(Duration timeout) {
+        this(timeout, () -> true);
+    }
+
+    /**
+     * @param clientConnected Polled whenever the token is checked, so must be cheap.  Should return false once the
+     *                        client has gone away.
+     */
+    public NerCancellationToken(Duration timeout, BooleanSupplier clientConnected) {
+        this.timeoutNanos = timeout.toNanos();
+        this.clientConnected = clientConnected;
+    }
+
+    /**
+     * Change the timeout.  It still runs from when the token was created.
+     */
+    void setTimeout(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Cancel the request.  Only the first reason given is kept.
+     */
+    public synchronized void cancel(Reason reason) {
+        if (this.reason == null) {
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Check whether the request should stop, tripping the token if the timeout has expired or the client has gone.
+     */
+    public boolean isCancelled() {
+        if (reason == null) {
+            if (getRemainingTime().isZero()) {
+                cancel(Reason.TIMEOUT);
+            } else if (!clientConnected.getAsBoolean()) {
+                cancel(Reason.CLIENT_DISCONNECTED);
+            }
+        }
+        return reason != null;
+    }
+
+    public void throwIfCancelled() throws TimeoutException, NerException {
+        if (!isCancelled()) {
+            return;
+        }
+        if (reason == Reason.TIMEOUT) {
+            throw new TimeoutException();
+        }
+        throw new NerException(ErrorCode.CANCELLED, "Request cancelled (" + reason + ")");
+    }
+
+    /**
+     * @return Why the request was cancelled, or null if it has not been cancelled (yet).  Unlike
+     * {@link #isCancelled()} this does not check the timeout or client connection.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    public Duration getRemainingTime() {
+        long remainingNanos = timeoutNanos - (System.nanoTime() - startNanos);
+        return remainingNanos > 0 ? Duration.ofNanos(remainingNanos) : Duration.ZERO;
+    }
+
+    public NerRequestStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Estimate the CPU time saved by cancelling, based on the CPU cost per character of the text we did process.
+     */
+    public Duration getEstimatedCpuReclaimed() {
+        long processed = processedChars.sum();
+        if (processed == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long)((double)processingCpuNanos.sum() / processed * abandonedChars.sum()));
+    }
+
+    void recordProcessed(long chars, long cpuNanos) {
+        processedChars.add(chars);
+        processingCpuNanos.add(cpuNanos);
+    }
+
+    void recordAbandoned(long chars) {
+        abandonedChars.add(chars);
+    }
+
+    static long getCurrentThreadCpuNanos() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()
+                ? THREAD_MX_BEAN.getCurrentThreadCpuTime()
+                : System.nanoTime();
+    }
+}
@@ -0,0 +1,27 @@
+package com.veritas.nlp.ner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NerLocalFileSettings {
+    private List<String> allowedRoots = new ArrayList<>();
+    private int windowSizeBytes = 64 * 1024 * 1024;
+
+    public List<String> getAllowedRoots() {
+        return allowedRoots;
+    }
+
+    public void setAllowedRoots(List<String> allowedRoots) {
+        if (allowedRoots != null) {
+            this.allowedRoots = allowedRoots;
+        }
+    }
+
+    public int getWindowSizeBytes() {
+        return windowSizeBytes;
+    }
+
+    public void setWindowSizeBytes(int windowSizeBytes) {
+        this.windowSizeBytes = windowSizeBytes;
+    }
+}
@@ -0,0 +1,15 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpTagType;
+
+import java.util.List;
+
+/**
+ * Receives content matches as soon as the chunk they were found in has been classified, instead of them being
+ * collected into the final result.  Matches are delivered in document order, on the thread that is adding content
+ * to the recognizer, and only up to the request's match cap.
+ */
+public interface NerMatchListener {
+    void onMatches(NlpTagType type, List<NlpMatch> matches) throws Exception;
+}
@@ -0,0 +1,88 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service-wide NER metrics, built up from the {@link NerRequestStats} of each completed request: a timer per
+ * processing stage, histograms of request and chunk size, and counters of the work done and of buffer pool use.
+ */
+public class NerMetrics {
+    private final Map<NerRequestStats.Stage, Timer> stageTimers = new EnumMap<>(NerRequestStats.Stage.class);
+    private final Histogram requestCharsHistogram;
+    private final Histogram requestEntitiesHistogram;
+    private final Histogram chunkSizeHistogram;
+    private final Counter charsCounter;
+    private final Counter chunksCounter;
+    private final Counter sentencesCounter;
+    private final Counter entitiesCounter;
+    private final Counter cliqueTreesCounter;
+    private final Counter skippedRegionsCounter;
+    private final Counter skippedCharsCounter;
+    private final Counter estimatedSavedCounter;
+    private final Counter poolLeasesCounter;
+    private final Counter poolExhaustedCounter;
+
+    public NerMetrics(MetricRegistry metrics) {
+        for (NerRequestStats.Stage stage : NerRequestStats.Stage.values()) {
+            if (stage == NerRequestStats.Stage.QUEUE) {
+                // Already covered by the request executor's queue-time timer.
+                continue;
+            }
+            stageTimers.put(stage, metrics.timer(MetricRegistry.name(NerMetrics.class, "stage", stage.name().toLowerCase(Locale.ENGLISH))));
+        }
+        this.requestCharsHistogram = metrics.histogram(MetricRegistry.name(NerMetrics.class, "request-chars"));
+        this.requestEntitiesHistogram = metrics.histogram(MetricRegistry.name(NerMetrics.class, "request-entities"));
+        this.chunkSizeHistogram = metrics.histogram(MetricRegistry.name(NerMetrics.class, "chunk-size"));
+        this.charsCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "chars"));
+        this.chunksCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "chunks"));
+        this.sentencesCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "sentences"));
+        this.entitiesCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "entities"));
+        this.cliqueTreesCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "clique-trees"));
+        this.skippedRegionsCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "prefilter", "skipped-regions"));
+        this.skippedCharsCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "prefilter", "skipped-chars"));
+        this.estimatedSavedCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "prefilter", "estimated-saved-ms"));
+        this.poolLeasesCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "buffer-pool", "leases"));
+        this.poolExhaustedCounter = metrics.counter(MetricRegistry.name(NerMetrics.class, "buffer-pool", "exhausted"));
+    }
+
+    public void record(NerRequestStats stats) {
+        for (Map.Entry<NerRequestStats.Stage, Timer> stageTimer : stageTimers.entrySet()) {
+            stageTimer.getValue().update(stats.getStageNanos(stageTimer.getKey()), TimeUnit.NANOSECONDS);
+        }
+        requestCharsHistogram.update(stats.getChars());
+        requestEntitiesHistogram.update(stats.getEntities());
+        charsCounter.inc(stats.getChars());
+        chunksCounter.inc(stats.getChunks());
+        sentencesCounter.inc(stats.getSentences());
+        entitiesCounter.inc(stats.getEntities());
+        cliqueTreesCounter.inc(stats.getCliqueTrees());
+        skippedRegionsCounter.inc(stats.getSkippedRegions());
+        skippedCharsCounter.inc(stats.getSkippedChars());
+        estimatedSavedCounter.inc(TimeUnit.NANOSECONDS.toMillis(stats.getEstimatedSkippedNanos()));
+    }
+
+    /**
+     * Record the length of a chunk split off a document, so the effect of adaptive chunk sizing can be seen.
+     */
+    public void recordChunkSize(int chars) {
+        chunkSizeHistogram.update(chars);
+    }
+
+    /**
+     * Record a lease from the {@link NerBufferPool}, and whether the pool was empty so had to allocate.
+     */
+    public void recordPoolLease(boolean exhausted) {
+        poolLeasesCounter.inc();
+        if (exhausted) {
+            poolExhaustedCounter.inc();
+        }
+    }
+}
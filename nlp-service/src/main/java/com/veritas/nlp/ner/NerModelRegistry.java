@@ -0,0 +1,213 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.resources.ErrorCode;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The NER models the service can use.  Requests choose a model by name, or get the default model.
+ * <p>
+ * Models are loaded on first use, or at startup if configured to be.  Each model takes tens of megabytes once
+ * loaded, so if a memory budget is set, the least recently used models are unloaded to keep the estimated total
+ * within it.  Models loaded at startup are never unloaded.  Unloading a model only drops the registry's reference
+ * to it, so requests already using the model carry on, and its memory is freed once they finish.
+ */
+public class NerModelRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(NerModelRegistry.class);
+    private static volatile NerModelRegistry instance = new NerModelRegistry(new NerSettings());
+
+    private final Map<String, NerModelSettings> models = new LinkedHashMap<>();
+    private final Map<String, Object> loadLocks = new HashMap<>();
+    private final String defaultModel;
+    private final long memoryBudgetBytes;
+    private final String snapshotPath;
+    private final Function<NerModelSettings, CRFClassifier<CoreLabel>> loader;
+    // In access order, so least recently used first.
+    private final LinkedHashMap<String, LoadedModel> loadedModels = new LinkedHashMap<>(16, 0.75f, true);
+
+    NerModelRegistry(NerSettings settings) {
+        this(settings, null);
+    }
+
+    /**
+     * @param loader Loads a model's classifier, or null to load it from the model's path.
+     */
+    NerModelRegistry(NerSettings settings, Function<NerModelSettings, CRFClassifier<CoreLabel>> loader) {
+        NerModelRegistrySettings registrySettings = settings.getNerModels();
+        for (NerModelSettings model : registrySettings.getModels()) {
+            if (StringUtils.isBlank(model.getName()) || StringUtils.isBlank(model.getPath())) {
+                throw new IllegalArgumentException("NER models must have a name and a path");
+            }
+            if (models.put(model.getName(), model) != null) {
+                throw new IllegalArgumentException("NER model " + model.getName() + " is configured more than once");
+            }
+            loadLocks.put(model.getName(), new Object());
+        }
+        if (!models.containsKey(registrySettings.getDefaultModel())) {
+            throw new IllegalArgumentException("Default NER model " + registrySettings.getDefaultModel() + " is not configured");
+        }
+        this.defaultModel = registrySettings.getDefaultModel();
+        this.memoryBudgetBytes = registrySettings.getMemoryBudgetBytes();
+        this.snapshotPath = settings.getNerModelSnapshotPath();
+        this.loader = loader != null ? loader : this::loadClassifier;
+    }
+
+    /**
+     * The registry used by NER requests.
+     */
+    public static NerModelRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replace the registry with one for the given settings.  Must be called before the models are loaded.
+     */
+    static void configure(NerSettings settings) {
+        instance = new NerModelRegistry(settings);
+    }
+
+    /**
+     * Check that a model exists, without loading it.
+     *
+     * @param name The model name, or null for the default model.
+     * @throws NerException with {@link ErrorCode#CLIENT_ERROR} if there is no such model.
+     */
+    public void checkModel(String name) throws NerException {
+        getModelSettings(name);
+    }
+
+    String getDefaultModel() {
+        return defaultModel;
+    }
+
+    /**
+     * Get a model's classifier, loading the model if necessary.  Loading takes several seconds.
+     *
+     * @param name The model name, or null for the default model.
+     * @throws NerException with {@link ErrorCode#CLIENT_ERROR} if there is no such model.
+     */
+    CRFClassifier<CoreLabel> getClassifier(String name) throws NerException {
+        return getClassifier(getModelSettings(name));
+    }
+
+    /**
+     * Load the models that are configured to load at startup.
+     */
+    void loadStartupModels() {
+        for (NerModelSettings model : models.values()) {
+            if (model.isLoadOnStartup()) {
+                getClassifier(model);
+            }
+        }
+    }
+
+    synchronized boolean isLoaded(String name) {
+        return loadedModels.containsKey(name);
+    }
+
+    private CRFClassifier<CoreLabel> getClassifier(NerModelSettings model) {
+        LoadedModel loaded = getLoadedModel(model.getName());
+        if (loaded != null) {
+            return loaded.classifier;
+        }
+
+        // Only one thread loads each model, but other models can be used (and loaded) in the meantime.
+        synchronized (loadLocks.get(model.getName())) {
+            loaded = getLoadedModel(model.getName());
+            if (loaded == null) {
+                loaded = load(model);
+                synchronized (this) {
+                    loadedModels.put(model.getName(), loaded);
+                    unloadLeastRecentlyUsed(model.getName());
+                }
+            }
+            return loaded.classifier;
+        }
+    }
+
+    private NerModelSettings getModelSettings(String name) throws NerException {
+        NerModelSettings model = models.get(name != null ? name : defaultModel);
+        if (model == null) {
+            throw new NerException(ErrorCode.CLIENT_ERROR,
+                    "Unknown NER model " + name + ".  Available models are: " + String.join(", ", models.keySet()));
+        }
+        return model;
+    }
+
+    private synchronized LoadedModel getLoadedModel(String name) {
+        return loadedModels.get(name);
+    }
+
+    private LoadedModel load(NerModelSettings model) {
+        Runtime runtime = Runtime.getRuntime();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        CRFClassifier<CoreLabel> classifier = loader.apply(model);
+
+        // Without a configured estimate, the growth in the heap is a rough (and generous) stand-in.
+        long estimatedMemoryBytes = model.getEstimatedMemoryBytes() > 0
+                ? model.getEstimatedMemoryBytes()
+                : Math.max(0, runtime.totalMemory() - runtime.freeMemory() - usedBefore);
+        LOG.info("Loaded NER model {} in {}ms, estimated size {}MB", model.getName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), estimatedMemoryBytes / (1024 * 1024));
+        return new LoadedModel(classifier, estimatedMemoryBytes, model.isLoadOnStartup());
+    }
+
+    /**
+     * Unload models, least recently used first, until the loaded models fit the memory budget.  The model just
+     * loaded is kept even if it doesn't fit on its own.
+     */
+    private void unloadLeastRecentlyUsed(String justLoaded) {
+        if (memoryBudgetBytes <= 0) {
+            return;
+        }
+        long totalBytes = loadedModels.values().stream().mapToLong(model -> model.estimatedMemoryBytes).sum();
+        Iterator<Map.Entry<String, LoadedModel>> iterator = loadedModels.entrySet().iterator();
+        while (totalBytes > memoryBudgetBytes && iterator.hasNext()) {
+            Map.Entry<String, LoadedModel> entry = iterator.next();
+            if (entry.getValue().pinned || entry.getKey().equals(justLoaded)) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.getValue().estimatedMemoryBytes;
+            LOG.info("Unloaded NER model {} to stay within the memory budget", entry.getKey());
+        }
+    }
+
+    private CRFClassifier<CoreLabel> loadClassifier(NerModelSettings model) {
+        // Snapshots are written from the bundled model, so only stand in for that.
+        if (NerModelRegistrySettings.BUNDLED_MODEL_PATH.equals(model.getPath()) && StringUtils.isNotBlank(snapshotPath)) {
+            try {
+                CRFClassifier<CoreLabel> snapshot = NerModelSnapshot.read(Paths.get(snapshotPath));
+                LOG.info("Loaded NER model snapshot {}", snapshotPath);
+                return snapshot;
+            } catch (Exception e) {
+                LOG.warn("Failed to load NER model snapshot {}, falling back to bundled model", snapshotPath, e);
+            }
+        }
+        return CRFClassifier.getClassifierNoExceptions(model.getPath());
+    }
+
+    private static class LoadedModel {
+        final CRFClassifier<CoreLabel> classifier;
+        final long estimatedMemoryBytes;
+        final boolean pinned;
+
+        LoadedModel(CRFClassifier<CoreLabel> classifier, long estimatedMemoryBytes, boolean pinned) {
+            this.classifier = classifier;
+            this.estimatedMemoryBytes = estimatedMemoryBytes;
+            this.pinned = pinned;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.veritas.nlp.ner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NerModelRegistrySettings {
+    static final String BUNDLED_MODEL_PATH = "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz";
+    private String defaultModel = "english.all.3class";
+    private long memoryBudgetBytes;
+    private List<NerModelSettings> models = new ArrayList<>(Arrays.asList(
+            new NerModelSettings("english.all.3class", BUNDLED_MODEL_PATH, true, 120L * 1024 * 1024),
+            new NerModelSettings("english.conll.4class",
+                    "edu/stanford/nlp/models/ner/english.conll.4class.distsim.crf.ser.gz", false, 80L * 1024 * 1024),
+            new NerModelSettings("english.muc.7class",
+                    "edu/stanford/nlp/models/ner/english.muc.7class.distsim.crf.ser.gz", false, 60L * 1024 * 1024)));
+
+    public String getDefaultModel() {
+        return defaultModel;
+    }
+
+    public void setDefaultModel(String defaultModel) {
+        this.defaultModel = defaultModel;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public List<NerModelSettings> getModels() {
+        return models;
+    }
+
+    public void setModels(List<NerModelSettings> models) {
+        if (models != null) {
+            this.models = models;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.veritas.nlp.ner;
+
+public class NerModelSettings {
+    private String name;
+    private String path;
+    private boolean loadOnStartup;
+    private long estimatedMemoryBytes;
+
+    public NerModelSettings() {
+    }
+
+    NerModelSettings(String name, String path, boolean loadOnStartup, long estimatedMemoryBytes) {
+        this.name = name;
+        this.path = path;
+        this.loadOnStartup = loadOnStartup;
+        this.estimatedMemoryBytes = estimatedMemoryBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public boolean isLoadOnStartup() {
+        return loadOnStartup;
+    }
+
+    public void setLoadOnStartup(boolean loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+    }
+
+    public long getEstimatedMemoryBytes() {
+        return estimatedMemoryBytes;
+    }
+
+    public void setEstimatedMemoryBytes(long estimatedMemoryBytes) {
+        this.estimatedMemoryBytes = estimatedMemoryBytes;
+    }
+}
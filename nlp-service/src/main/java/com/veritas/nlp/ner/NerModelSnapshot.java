@@ -0,0 +1,85 @@
+package com.veritas.nlp.ner;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes and reads uncompressed snapshots of the NER classifier, for faster startup.
+ * <p>
+ * The bundled model is gzipped, so loading it means inflating around 40MB before it can be deserialized.  A snapshot
+ * is the same serialized classifier without the compression, so loading it skips the inflation.  The file is memory
+ * mapped and deserialized straight from the mapping, rather than through a chain of stream buffers.  The classifier
+ * is still deserialized into the heap, so each service process has its own copy of the model.
+ * <p>
+ * Snapshots use Java serialization, so must be regenerated whenever the CoreNLP version changes.  Create one with:
+ * <pre>
+ *     java -cp nlp-service.jar com.veritas.nlp.ner.NerModelSnapshot &lt;snapshot file&gt;
+ * </pre>
+ */
+public class NerModelSnapshot {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: NerModelSnapshot <snapshot file>");
+            return;
+        }
+        Path snapshotPath = Paths.get(args[0]);
+        write(StanfordEntityRecogniser.loadBundledClassifier(), snapshotPath);
+        System.out.printf("Wrote NER model snapshot to %s (%d bytes)%n", snapshotPath, Files.size(snapshotPath));
+    }
+
+    static void write(CRFClassifier<CoreLabel> classifier, Path snapshotPath) throws IOException {
+        try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotPath)))) {
+            classifier.serializeClassifier(output);
+        }
+    }
+
+    static CRFClassifier<CoreLabel> read(Path snapshotPath) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(snapshotPath)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return CRFClassifier.getClassifier(new ByteBufferInputStream(buffer));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.veritas.nlp.ner;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A cheap check, made before classification, for text that can't contain any entities - numeric tables, base64
+ * blobs, hex dumps and so on.  The CRF is by far the most expensive part of NER, and it processes every token
+ * whether or not it could be part of an entity.
+ * <p>
+ * Whole chunks are checked with a single scan of their characters before they are tokenized, then each sentence
+ * is checked by token shape before it is classified.  In aggressive mode, lines of machine-generated text are also
+ * blanked out before tokenization, since the sentence splitter would otherwise run them together with any prose
+ * around them.
+ * <ul>
+ * <li>{@link Mode#STRICT} only skips text with no letters at all.  The classifier never labels such text, so results
+ * are identical to not filtering.</li>
+ * <li>{@link Mode#AGGRESSIVE} also skips text with no capitalized, word-shaped tokens, ignoring those surrounded
+ * mostly by tokens that mix letters with digits or symbols (typical of machine-generated text such as base64 or hex
+ * dumps).  This skips far more, but can miss entities in text that has been written entirely in lower case.</li>
+ * </ul>
+ * Both modes assume that text with no letters has no entities, which isn't true of models that label amounts of
+ * money, percentages, dates or times (such as english.muc.7class): "$1,000,000", "50%", "2024-01-01" and "12:30"
+ * are all entities to them.  So no filtering is done for those models - see {@link #forClassifier}.
+ */
+public class NerPreFilter {
+    public enum Mode {
+        OFF,
+        STRICT,
+        AGGRESSIVE
+    }
+
+    // Labels for entities that can be written without letters.
+    private static final Set<String> NUMERIC_LABELS = Set.of("MONEY", "PERCENT", "DATE", "TIME");
+    private static final int MAX_NAME_TOKEN_CHARS = 40;
+    private static final int NEIGHBOURING_TOKENS = 4;
+    private final Mode mode;
+
+    NerPreFilter(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return This filter, or null if it mustn't be used with the classifier because the classifier labels entities
+     * that can be written without letters.
+     */
+    NerPreFilter forClassifier(CRFClassifier<CoreLabel> crf) {
+        return labelsNumericEntities(crf) ? null : this;
+    }
+
+    static boolean labelsNumericEntities(CRFClassifier<CoreLabel> crf) {
+        for (String label : crf.labels()) {
+            // Allow for labels with a B-/I- prefix.
+            if (NUMERIC_LABELS.contains(label.substring(label.indexOf('-') + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check a chunk of text before it is tokenized.
+     */
+    boolean canSkip(CharSequence text) {
+        if (mode == Mode.OFF) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (mode == Mode.STRICT ? Character.isLetter(c) || Character.isSurrogate(c) : isCapital(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check a tokenized sentence before it is classified.
+     */
+    boolean canSkip(List<CoreLabel> sentence) {
+        if (mode == Mode.OFF) {
+            return false;
+        }
+        TokenShape[] shapes = new TokenShape[sentence.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = getShape(sentence.get(i).word(), 0, sentence.get(i).word().length());
+        }
+        return mode == Mode.STRICT ? !hasLetters(shapes) : !hasName(shapes);
+    }
+
+    /**
+     * In aggressive mode, blank out lines of machine-generated text before the text is tokenized, i.e. numeric lines
+     * with no letters, or lines with words mixing letters and digits and no names.  The lines are replaced with
+     * spaces, rather than removed, so that offsets into the text are unchanged.
+     *
+     * @return The text to tokenize - the same text if nothing was blanked.
+     */
+    String blankMachineLines(String text, NerRequestStats stats) {
+        if (mode != Mode.AGGRESSIVE) {
+            return text;
+        }
+        char[] blanked = null;
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            if (isMachineLine(text, lineStart, lineEnd)) {
+                if (blanked == null) {
+                    blanked = text.toCharArray();
+                }
+                Arrays.fill(blanked, lineStart, lineEnd, ' ');
+                stats.addSkipped(lineEnd - lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return blanked != null ? new String(blanked) : text;
+    }
+
+    private static boolean isMachineLine(String text, int start, int end) {
+        List<TokenShape> shapes = new ArrayList<>();
+        boolean hasMachineToken = false;
+        boolean hasDigits = false;
+        int i = start;
+        while (i < end) {
+            // Split on whitespace and punctuation, except the punctuation found in names.
+            while (i < end && !isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            int tokenStart = i;
+            while (i < end && isTokenChar(text.charAt(i))) {
+                hasDigits |= Character.isDigit(text.charAt(i));
+                i++;
+            }
+            if (i > tokenStart) {
+                TokenShape shape = getShape(text, tokenStart, i);
+                hasMachineToken |= shape == TokenShape.MACHINE;
+                shapes.add(shape);
+            }
+        }
+        TokenShape[] shapeArray = shapes.toArray(new TokenShape[0]);
+        if (!hasLetters(shapeArray)) {
+            // Numeric rows, but not separators such as "--", which help the sentence splitter.
+            return hasDigits;
+        }
+        return hasMachineToken && !hasName(shapeArray);
+    }
+
+    private static boolean hasLetters(TokenShape[] shapes) {
+        for (TokenShape shape : shapes) {
+            if (shape != TokenShape.NO_LETTERS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasName(TokenShape[] shapes) {
+        for (int i = 0; i < shapes.length; i++) {
+            if (shapes[i] == TokenShape.NAME && !isAmongMachineTokens(shapes, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The sentence splitter doesn't split on line breaks, so machine-generated text often ends up in the same
+     * sentence as prose.  Rather than judging the sentence as a whole, we look at the tokens either side of each
+     * capitalized word - a capital letter in a base64 blob is surrounded by more base64.
+     */
+    private static boolean isAmongMachineTokens(TokenShape[] shapes, int position) {
+        int machineTokens = 0;
+        int wordTokens = 0;
+        for (int direction : new int[] {-1, 1}) {
+            int seen = 0;
+            for (int i = position + direction; i >= 0 && i < shapes.length && seen < NEIGHBOURING_TOKENS; i += direction) {
+                if (shapes[i] == TokenShape.MACHINE) {
+                    machineTokens++;
+                    seen++;
+                } else if (shapes[i] != TokenShape.NO_LETTERS) {
+                    wordTokens++;
+                    seen++;
+                }
+            }
+        }
+        return machineTokens > wordTokens;
+    }
+
+    private enum TokenShape {
+        // No letters, e.g. numbers and punctuation.
+        NO_LETTERS,
+        // Capitalized, and otherwise just letters and the punctuation found in names, e.g. "O'Connor" or "AT&T".
+        NAME,
+        // Any other token made of letters and name punctuation, e.g. "the".
+        WORD,
+        // Letters mixed with digits or other symbols, e.g. "0x7ffe" or a fragment of base64.
+        MACHINE
+    }
+
+    private static TokenShape getShape(String word, int start, int end) {
+        boolean hasLetter = false;
+        boolean wordShaped = true;
+        for (int i = start; i < end; ) {
+            int codePoint = word.codePointAt(i);
+            if (Character.isLetter(codePoint)) {
+                hasLetter = true;
+            } else if (!isNamePunctuation(codePoint)) {
+                wordShaped = false;
+            }
+            i += Character.charCount(codePoint);
+        }
+
+        if (!hasLetter) {
+            return TokenShape.NO_LETTERS;
+        }
+        if (!wordShaped) {
+            return TokenShape.MACHINE;
+        }
+        return isCapital(word.codePointAt(start)) && end - start <= MAX_NAME_TOKEN_CHARS ? TokenShape.NAME : TokenShape.WORD;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || Character.isSurrogate(c) || isNamePunctuation(c);
+    }
+
+    private static boolean isCapital(int codePoint) {
+        return Character.isUpperCase(codePoint) || Character.isTitleCase(codePoint);
+    }
+
+    private static boolean isNamePunctuation(int codePoint) {
+        return codePoint == '.' || codePoint == '-' || codePoint == '\'' || codePoint == '&';
+    }
+}
@@ -0,0 +1,213 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.veritas.nlp.resources.ErrorCode;
+import com.veritas.nlp.service.NlpThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs NER requests on a dedicated, bounded pool of worker threads.
+ * <p>
+ * Requests beyond the concurrency limit wait in a bounded queue.  If the queue is full, or the estimated wait for a
+ * worker is longer than the request's timeout, the request is rejected immediately with
+ * {@link ErrorCode#SERVICE_BUSY} rather than being left to time out.  Under overload this keeps latency predictable
+ * for the requests we do accept, instead of every request slowing down together.
+ * <p>
+ * Each request carries a {@link NerCancellationToken}.  The token is tripped if the caller gives up waiting, and
+ * the tokens of all running requests are tripped on shutdown, so abandoned requests stop using CPU promptly.  A
+ * caller that gives up waits briefly for the request to stop, so that it isn't still reading the request body
+ * after the response has been sent.
+ */
+public class NerRequestExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(NerRequestExecutor.class);
+    private static final int RUN_TIME_SMOOTHING_FACTOR = 8;
+    // How long to wait for a cancelled task to stop before giving up on it.
+    private static final Duration STOP_WAIT = Duration.ofSeconds(2);
+    private final ThreadPoolExecutor executor;
+    private final int maxConcurrentRequests;
+    private final AtomicLong averageRunTimeNanos = new AtomicLong();
+    private final Timer queueTimer;
+    private final Timer runTimer;
+    private final Meter rejectedMeter;
+    private final MetricRegistry metrics;
+    private final Counter cpuReclaimedCounter;
+    private final NerMetrics nerMetrics;
+    private final Set<NerCancellationToken> runningRequests = ConcurrentHashMap.newKeySet();
+    private volatile boolean shuttingDown;
+
+    public NerRequestExecutor(NerSettings nerSettings, MetricRegistry metrics) {
+        this.maxConcurrentRequests = nerSettings.getNerMaxConcurrentRequests() > 0
+                ? nerSettings.getNerMaxConcurrentRequests()
+                : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrentRequests, maxConcurrentRequests, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, nerSettings.getNerMaxQueuedRequests())),
+                new NlpThreadFactory("NER Worker"));
+
+        this.queueTimer = metrics.timer(MetricRegistry.name(NerRequestExecutor.class, "queue-time"));
+        this.runTimer = metrics.timer(MetricRegistry.name(NerRequestExecutor.class, "run-time"));
+        this.rejectedMeter = metrics.meter(MetricRegistry.name(NerRequestExecutor.class, "rejected"));
+        this.cpuReclaimedCounter = metrics.counter(MetricRegistry.name(NerRequestExecutor.class, "cancelled", "cpu-reclaimed-ms"));
+        this.metrics = metrics;
+        this.nerMetrics = new NerMetrics(metrics);
+        metrics.gauge(MetricRegistry.name(NerRequestExecutor.class, "active"), () -> (Gauge<Integer>)executor::getActiveCount);
+        metrics.gauge(MetricRegistry.name(NerRequestExecutor.class, "queued"), () -> (Gauge<Integer>)() -> executor.getQueue().size());
+    }
+
+    /**
+     * Run the task on a NER worker thread and wait for the result.  The task should check the cancellation token
+     * regularly.
+     *
+     * @throws NerException with {@link ErrorCode#SERVICE_BUSY} if the request cannot be started in time.
+     * @throws TimeoutException if the task does not complete within the token's timeout (including time spent
+     * queued).
+     */
+    public <T> T execute(Callable<T> task, NerCancellationToken cancellationToken) throws Exception {
+        return getResult(submit(task, cancellationToken), cancellationToken);
+    }
+
+    /**
+     * Queue the task to run on a NER worker thread, without waiting for the result.  The result should be collected
+     * with {@link #getResult}, so that the task is cancelled if it takes too long.
+     *
+     * @throws NerException with {@link ErrorCode#SERVICE_BUSY} if the request cannot be started in time.
+     */
+    public <T> Future<T> submit(Callable<T> task, NerCancellationToken cancellationToken) throws NerException {
+        Duration estimatedWait = getEstimatedWait();
+        if (estimatedWait.compareTo(cancellationToken.getRemainingTime()) > 0) {
+            rejectedMeter.mark();
+            throw new NerException(ErrorCode.SERVICE_BUSY,
+                    "Estimated wait of " + estimatedWait.toMillis() + "ms exceeds the request timeout");
+        }
+
+        long queuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueTimer.update(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                cancellationToken.getStats().addStageNanos(NerRequestStats.Stage.QUEUE, startedAt - queuedAt);
+                runningRequests.add(cancellationToken);
+                if (shuttingDown) {
+                    // Started just as we began shutting down, so might have been missed by shutdown().
+                    cancellationToken.cancel(NerCancellationToken.Reason.SHUTDOWN);
+                }
+                try {
+                    return task.call();
+                } finally {
+                    runningRequests.remove(cancellationToken);
+                    recordRunTime(System.nanoTime() - startedAt);
+                    recordCancellation(cancellationToken);
+                    nerMetrics.record(cancellationToken.getStats());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedMeter.mark();
+            throw new NerException(ErrorCode.SERVICE_BUSY, "Too many requests are waiting to be processed");
+        }
+    }
+
+    /**
+     * Wait for the result of a submitted task, for no longer than the token's remaining time.
+     *
+     * @throws TimeoutException if the task does not complete in time, in which case the task is cancelled.
+     */
+    public <T> T getResult(Future<T> future, NerCancellationToken cancellationToken) throws Exception {
+        try {
+            return future.get(cancellationToken.getRemainingTime().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            stop(future, cancellationToken, NerCancellationToken.Reason.TIMEOUT);
+            throw e;
+        } catch (InterruptedException e) {
+            stop(future, cancellationToken, NerCancellationToken.Reason.REQUEST_FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Cancel a task, and if it has already started, wait (briefly) for it to stop.  The task may be reading the
+     * request body, which mustn't happen once the response has been sent and the request recycled.  Tasks see
+     * the tripped token between sentences, so normally stop well within the wait; one stuck on a read from a
+     * stalled client may not.
+     */
+    private void stop(Future<?> future, NerCancellationToken cancellationToken, NerCancellationToken.Reason reason) {
+        cancellationToken.cancel(reason);
+        boolean started = !(future instanceof Runnable && executor.remove((Runnable)future));
+        if (started) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                future.get(STOP_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (TimeoutException e) {
+                LOG.warn("NER request still running {}ms after it was cancelled ({})", STOP_WAIT.toMillis(), reason);
+            } catch (Exception e) {
+                // Only the waiting matters here - the task has stopped, one way or another.
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        future.cancel(false);
+    }
+
+    public void shutdown() {
+        shuttingDown = true;
+        runningRequests.forEach(cancellationToken -> cancellationToken.cancel(NerCancellationToken.Reason.SHUTDOWN));
+        executor.shutdownNow();
+    }
+
+    /**
+     * Estimate how long a newly submitted request would wait for a worker.  Queued requests drain at roughly
+     * {@code maxConcurrentRequests} per average run time.
+     */
+    Duration getEstimatedWait() {
+        int queued = executor.getQueue().size();
+        if (executor.getActiveCount() + queued < maxConcurrentRequests) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(averageRunTimeNanos.get() * (queued + 1) / maxConcurrentRequests);
+    }
+
+    private void recordCancellation(NerCancellationToken cancellationToken) {
+        NerCancellationToken.Reason reason = cancellationToken.getReason();
+        if (reason == null) {
+            return;
+        }
+        long cpuReclaimedMillis = cancellationToken.getEstimatedCpuReclaimed().toMillis();
+        metrics.meter(MetricRegistry.name(NerRequestExecutor.class, "cancelled", reason.name().toLowerCase(Locale.ENGLISH))).mark();
+        cpuReclaimedCounter.inc(cpuReclaimedMillis);
+        LOG.info("NER request cancelled ({}).  Estimated CPU reclaimed: {}ms", reason, cpuReclaimedMillis);
+    }
+
+    private void recordRunTime(long runTimeNanos) {
+        runTimer.update(runTimeNanos, TimeUnit.NANOSECONDS);
+        averageRunTimeNanos.updateAndGet(average -> average == 0
+                ? runTimeNanos
+                : average + (runTimeNanos - average) / RUN_TIME_SMOOTHING_FACTOR);
+    }
+}
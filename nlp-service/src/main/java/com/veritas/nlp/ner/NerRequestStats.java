@@ -0,0 +1,120 @@
+package com.veritas.nlp.ner;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time went for a single NER request, and how much work it involved.  Chunks may be classified on
+ * several threads at once, so stage times are totals across threads and can add up to more than the elapsed time.
+ */
+public class NerRequestStats {
+    public enum Stage {
+        QUEUE,
+        READ,
+        SPLIT,
+        TOKENIZE,
+        CLASSIFY,
+        CONFIDENCE
+    }
+
+    private final Map<Stage, LongAdder> stageNanos = new EnumMap<>(Stage.class);
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder sentences = new LongAdder();
+    private final LongAdder entities = new LongAdder();
+    private final LongAdder cliqueTrees = new LongAdder();
+    private final LongAdder classifiedChars = new LongAdder();
+    private final LongAdder skippedRegions = new LongAdder();
+    private final LongAdder skippedChars = new LongAdder();
+
+    public NerRequestStats() {
+        for (Stage stage : Stage.values()) {
+            stageNanos.put(stage, new LongAdder());
+        }
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos.get(stage).sum();
+    }
+
+    public long getChars() {
+        return chars.sum();
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    public long getSentences() {
+        return sentences.sum();
+    }
+
+    public long getEntities() {
+        return entities.sum();
+    }
+
+    /**
+     * @return The number of clique trees built just to assess confidence, rather than reused from classification.
+     */
+    public long getCliqueTrees() {
+        return cliqueTrees.sum();
+    }
+
+    /**
+     * @return The number of chunks and sentences skipped by the {@link NerPreFilter}.
+     */
+    public long getSkippedRegions() {
+        return skippedRegions.sum();
+    }
+
+    public long getSkippedChars() {
+        return skippedChars.sum();
+    }
+
+    /**
+     * Estimate the classification time saved by the {@link NerPreFilter}, based on the classification cost per
+     * character of the text that wasn't skipped.
+     */
+    public long getEstimatedSkippedNanos() {
+        long classified = classifiedChars.sum();
+        if (classified == 0) {
+            return 0;
+        }
+        long classifyNanos = getStageNanos(Stage.CLASSIFY) + getStageNanos(Stage.CONFIDENCE);
+        return (long)((double)classifyNanos / classified * skippedChars.sum());
+    }
+
+    void addStageNanos(Stage stage, long nanos) {
+        stageNanos.get(stage).add(nanos);
+    }
+
+    void addChars(long count) {
+        chars.add(count);
+    }
+
+    void addChunk() {
+        chunks.increment();
+    }
+
+    void addSentence() {
+        sentences.increment();
+    }
+
+    void addEntity() {
+        entities.increment();
+    }
+
+    void addCliqueTree() {
+        cliqueTrees.increment();
+    }
+
+    void addClassifiedChars(long count) {
+        classifiedChars.add(count);
+    }
+
+    void addSkipped(long chars) {
+        skippedRegions.increment();
+        skippedChars.add(chars);
+    }
+}
@@ -0,0 +1,121 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpMatchCollection;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches NER results for small documents, so documents that are submitted over and over (disclaimers, boilerplate
+ * contracts and the like) are only classified once.
+ * <p>
+ * Results are keyed by a hash of the decoded text together with the request parameters that affect the result.
+ * The cache is bounded by the estimated memory used by the cached results, and only documents up to a configured
+ * size are cached.  Results are copied in and out of the cache, so callers are free to modify them.
+ */
+public class NerResultCache {
+    private static final int OBJECT_OVERHEAD_BYTES = 64;
+    private final Cache<HashCode, Map<NlpTagType, NlpTagSet>> cache;
+    private final int maxDocumentSizeChars;
+
+    public NerResultCache(NerResultCacheSettings settings, MetricRegistry metrics) {
+        this.maxDocumentSizeChars = settings.getMaxDocumentSizeChars();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(settings.getMaxWeightBytes())
+                .weigher((HashCode key, Map<NlpTagType, NlpTagSet> entities) -> estimateSizeBytes(entities))
+                .expireAfterAccess(settings.getExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+
+        metrics.gauge(MetricRegistry.name(NerResultCache.class, "hits"), () -> (Gauge<Long>)() -> cache.stats().hitCount());
+        metrics.gauge(MetricRegistry.name(NerResultCache.class, "misses"), () -> (Gauge<Long>)() -> cache.stats().missCount());
+        metrics.gauge(MetricRegistry.name(NerResultCache.class, "hit-ratio"), () -> (Gauge<Double>)() -> cache.stats().hitRate());
+        metrics.gauge(MetricRegistry.name(NerResultCache.class, "evictions"), () -> (Gauge<Long>)() -> cache.stats().evictionCount());
+        metrics.gauge(MetricRegistry.name(NerResultCache.class, "size"), () -> (Gauge<Long>)cache::size);
+    }
+
+    /**
+     * @return Null if the settings do not enable the cache.
+     */
+    public static NerResultCache create(NerResultCacheSettings settings, MetricRegistry metrics) {
+        return settings.isEnabled() ? new NerResultCache(settings, metrics) : null;
+    }
+
+    int getMaxDocumentSizeChars() {
+        return maxDocumentSizeChars;
+    }
+
+    HashCode createKey(CharSequence text, NlpRequestParams params) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putInt(text.length())
+                .putUnencodedChars(text)
+                .putInt(params.getMinConfidencePercentage())
+                .putBoolean(params.includeMatches())
+                .putInt(params.getMaxContentMatches())
+                .putUnencodedChars(StringUtils.defaultString(params.getModel()));
+        for (NlpTagType tagType : params.getTagTypes()) {
+            hasher.putInt(tagType.ordinal());
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * @return A copy of the cached result, or null if there isn't one.
+     */
+    Map<NlpTagType, NlpTagSet> get(HashCode key) {
+        Map<NlpTagType, NlpTagSet> entities = cache.getIfPresent(key);
+        return entities != null ? copy(entities) : null;
+    }
+
+    void put(HashCode key, Map<NlpTagType, NlpTagSet> entities) {
+        cache.put(key, copy(entities));
+    }
+
+    private static Map<NlpTagType, NlpTagSet> copy(Map<NlpTagType, NlpTagSet> entities) {
+        Map<NlpTagType, NlpTagSet> copy = new HashMap<>();
+        for (NlpTagSet tagSet : entities.values()) {
+            NlpTagSet tagSetCopy = StanfordEntityRecogniser.createTagSet(tagSet.getType());
+            tagSetCopy.getTags().addAll(tagSet.getTags());
+            if (tagSet.getMatchCollection() != null) {
+                NlpMatchCollection matchesCopy = new NlpMatchCollection();
+                matchesCopy.setTotal(tagSet.getMatchCollection().getTotal());
+                for (NlpMatch match : tagSet.getMatchCollection().getMatches()) {
+                    matchesCopy.getMatches().add(new NlpMatch(match.getOffset(), match.getLength(), match.getContent(),
+                            match.getContext(), match.getContextOffset()));
+                }
+                tagSetCopy.setMatchCollection(matchesCopy);
+            }
+            copy.put(tagSet.getType(), tagSetCopy);
+        }
+        return copy;
+    }
+
+    private static int estimateSizeBytes(Map<NlpTagType, NlpTagSet> entities) {
+        long size = OBJECT_OVERHEAD_BYTES;
+        for (NlpTagSet tagSet : entities.values()) {
+            size += OBJECT_OVERHEAD_BYTES;
+            for (String tag : tagSet.getTags()) {
+                size += OBJECT_OVERHEAD_BYTES + 2L * tag.length();
+            }
+            if (tagSet.getMatchCollection() != null) {
+                for (NlpMatch match : tagSet.getMatchCollection().getMatches()) {
+                    size += 3 * OBJECT_OVERHEAD_BYTES + 2L * (StringUtils.length(match.getContent()) + StringUtils.length(match.getContext()));
+                }
+            }
+        }
+        return (int)Math.min(size, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,40 @@
+package com.veritas.nlp.ner;
+
+public class NerResultCacheSettings {
+    private boolean enabled;
+    private int maxDocumentSizeChars = 65536;
+    private long maxWeightBytes = 64L * 1024 * 1024;
+    private int expireAfterAccessMinutes = 60;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxDocumentSizeChars() {
+        return maxDocumentSizeChars;
+    }
+
+    public void setMaxDocumentSizeChars(int maxDocumentSizeChars) {
+        this.maxDocumentSizeChars = maxDocumentSizeChars;
+    }
+
+    public long getMaxWeightBytes() {
+        return maxWeightBytes;
+    }
+
+    public void setMaxWeightBytes(long maxWeightBytes) {
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    public int getExpireAfterAccessMinutes() {
+        return expireAfterAccessMinutes;
+    }
+
+    public void setExpireAfterAccessMinutes(int expireAfterAccessMinutes) {
+        this.expireAfterAccessMinutes = expireAfterAccessMinutes;
+    }
+}
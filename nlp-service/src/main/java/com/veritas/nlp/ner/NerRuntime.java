@@ -0,0 +1,103 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.service.NlpThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The long-lived parts of the NER pipeline that are shared by all requests: worker pools, caches, buffer pools and
+ * the like.
+ */
+public class NerRuntime {
+    private final NerSettings settings;
+    private final ExecutorService chunkExecutor;
+    private final NerResultCache resultCache;
+    private final NerSentenceCache sentenceCache;
+    private final NerMetrics metrics;
+    private final NerPreFilter preFilter;
+    private final NerBufferPool bufferPool;
+
+    public NerRuntime(NerSettings settings, MetricRegistry metrics) {
+        this(settings,
+             createChunkExecutor(settings),
+             NerResultCache.create(settings.getNerResultCache(), metrics),
+             NerSentenceCache.create(settings.getNerSentenceCache(), metrics),
+             new NerMetrics(metrics));
+    }
+
+    NerRuntime(NerSettings settings, ExecutorService chunkExecutor, NerResultCache resultCache, NerSentenceCache sentenceCache) {
+        this(settings, chunkExecutor, resultCache, sentenceCache, null);
+    }
+
+    NerRuntime(NerSettings settings, ExecutorService chunkExecutor, NerResultCache resultCache, NerSentenceCache sentenceCache,
+               NerMetrics metrics) {
+        this.settings = settings;
+        this.chunkExecutor = chunkExecutor;
+        this.resultCache = resultCache;
+        this.sentenceCache = sentenceCache;
+        this.metrics = metrics;
+        this.preFilter = settings.getNerPreFilter() != NerPreFilter.Mode.OFF ? new NerPreFilter(settings.getNerPreFilter()) : null;
+        this.bufferPool = NerBufferPool.create(settings, metrics);
+    }
+
+    /**
+     * A runtime that shares this one's workers, but has no result or sentence cache, for work that must really be
+     * classified (and whose results mustn't be cached), such as warming up.
+     */
+    public NerRuntime withoutCaches() {
+        return new NerRuntime(settings, chunkExecutor, null, null, metrics);
+    }
+
+    public void shutdown() {
+        if (chunkExecutor != null) {
+            chunkExecutor.shutdownNow();
+        }
+    }
+
+    NerSettings getSettings() {
+        return settings;
+    }
+
+    ExecutorService getChunkExecutor() {
+        return chunkExecutor;
+    }
+
+    NerResultCache getResultCache() {
+        return resultCache;
+    }
+
+    NerSentenceCache getSentenceCache() {
+        return sentenceCache;
+    }
+
+    /**
+     * @return The service metrics, or null if they are not being recorded.
+     */
+    NerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The pre-filter, or null if it is turned off.
+     */
+    NerPreFilter getPreFilter() {
+        return preFilter;
+    }
+
+    /**
+     * @return The buffer pool, or null if it is turned off.
+     */
+    NerBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    private static ExecutorService createChunkExecutor(NerSettings settings) {
+        int threads = settings.getNerChunkWorkerThreads();
+        if (threads <= 0) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(threads, new NlpThreadFactory("NER Chunk Worker"));
+    }
+}
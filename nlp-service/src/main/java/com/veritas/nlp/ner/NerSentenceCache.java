@@ -0,0 +1,96 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.veritas.nlp.models.NlpTagType;
+import edu.stanford.nlp.ling.CoreLabel;
+
+import java.util.List;
+
+/**
+ * Caches the entities found in individual sentences.  Much of a typical email corpus is the same sentences over and
+ * over (signatures, legal footers, quoted replies), so even when documents differ we can often skip classifying a
+ * sentence.
+ * <p>
+ * Sentences are keyed by their tokens (and the model), so differences in whitespace don't matter.  The classifier only
+ * looks at a sentence's tokens, so the same tokens always give the same entities.  Entities are stored as token positions,
+ * along with their confidence, so a cached sentence can be replayed for any tag types, confidence threshold and
+ * position in the document.
+ */
+public class NerSentenceCache {
+    private final Cache<String, List<SentenceEntity>> cache;
+    private final int maxSentenceTokens;
+
+    public NerSentenceCache(NerSentenceCacheSettings settings, MetricRegistry metrics) {
+        this.maxSentenceTokens = settings.getMaxSentenceTokens();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(settings.getMaxEntries())
+                .recordStats()
+                .build();
+
+        metrics.gauge(MetricRegistry.name(NerSentenceCache.class, "hits"), () -> (Gauge<Long>)() -> cache.stats().hitCount());
+        metrics.gauge(MetricRegistry.name(NerSentenceCache.class, "misses"), () -> (Gauge<Long>)() -> cache.stats().missCount());
+        metrics.gauge(MetricRegistry.name(NerSentenceCache.class, "hit-ratio"), () -> (Gauge<Double>)() -> cache.stats().hitRate());
+        metrics.gauge(MetricRegistry.name(NerSentenceCache.class, "size"), () -> (Gauge<Long>)cache::size);
+    }
+
+    /**
+     * @return Null if the settings do not enable the cache.
+     */
+    public static NerSentenceCache create(NerSentenceCacheSettings settings, MetricRegistry metrics) {
+        return settings.isEnabled() ? new NerSentenceCache(settings, metrics) : null;
+    }
+
+    /**
+     * @return The key for the sentence, or null if the sentence shouldn't be cached (because long sentences are
+     * unlikely to be repeated).
+     */
+    String createKey(String model, List<CoreLabel> sentence) {
+        if (sentence.isEmpty() || sentence.size() > maxSentenceTokens) {
+            return null;
+        }
+        // Different models find different entities in the same sentence.
+        StringBuilder key = new StringBuilder(model).append('\n');
+        for (int i = 0; i < sentence.size(); i++) {
+            if (i > 0) {
+                key.append(' ');
+            }
+            key.append(sentence.get(i).word());
+        }
+        return key.toString();
+    }
+
+    List<SentenceEntity> get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(String key, List<SentenceEntity> entities) {
+        cache.put(key, entities);
+    }
+
+    /**
+     * An entity found in a sentence, as a range of token positions.
+     */
+    static class SentenceEntity {
+        final NlpTagType type;
+        final int firstToken;
+        final int lastToken;
+        final double confidencePercentage;
+
+        /**
+         * @param confidencePercentage NaN if the confidence wasn't calculated.
+         */
+        SentenceEntity(NlpTagType type, int firstToken, int lastToken, double confidencePercentage) {
+            this.type = type;
+            this.firstToken = firstToken;
+            this.lastToken = lastToken;
+            this.confidencePercentage = confidencePercentage;
+        }
+
+        boolean hasConfidence() {
+            return !Double.isNaN(confidencePercentage);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.veritas.nlp.ner;
+
+public class NerSentenceCacheSettings {
+    private boolean enabled;
+    private int maxEntries = 100000;
+    private int maxSentenceTokens = 200;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxSentenceTokens() {
+        return maxSentenceTokens;
+    }
+
+    public void setMaxSentenceTokens(int maxSentenceTokens) {
+        this.maxSentenceTokens = maxSentenceTokens;
+    }
+}
@@ -3,6 +3,23 @@ package com.veritas.nlp.ner;
 public class NerSettings {
     private int maxNerContentSizeChars = 10485760;
     private int nerChunkSizeChars = 65536;
+    private int nerChunkWorkerThreads;
+    private int nerMaxQueuedChunks = 4;
+    private int nerMaxConcurrentRequests;
+    private int nerMaxQueuedRequests = 100;
+    private int nerMaxBatchDocuments = 1000;
+    private int nerMaxBatchSizeBytes = 67108864;
+    private int nerStreamMaxInFlightDocuments = 4;
+    private int nerMaxOpenStreams = 16;
+    private NerPreFilter.Mode nerPreFilter = NerPreFilter.Mode.OFF;
+    private String nerModelSnapshotPath;
+    private NerModelRegistrySettings nerModels = new NerModelRegistrySettings();
+    private NerWarmupSettings nerWarmup = new NerWarmupSettings();
+    private NerResultCacheSettings nerResultCache = new NerResultCacheSettings();
+    private NerSentenceCacheSettings nerSentenceCache = new NerSentenceCacheSettings();
+    private NerAdaptiveChunkSizeSettings nerAdaptiveChunkSize = new NerAdaptiveChunkSizeSettings();
+    private NerBufferPoolSettings nerBufferPool = new NerBufferPoolSettings();
+    private NerLocalFileSettings nerLocalFiles = new NerLocalFileSettings();
 
     public int getMaxNerContentSizeChars() {
         return maxNerContentSizeChars;
@@ -19,4 +36,156 @@ public class NerSettings {
     public void setNerChunkSizeChars(int nerChunkSizeChars) {
         this.nerChunkSizeChars = nerChunkSizeChars;
     }
+
+    public int getNerChunkWorkerThreads() {
+        return nerChunkWorkerThreads;
+    }
+
+    public void setNerChunkWorkerThreads(int nerChunkWorkerThreads) {
+        this.nerChunkWorkerThreads = nerChunkWorkerThreads;
+    }
+
+    public int getNerMaxQueuedChunks() {
+        return nerMaxQueuedChunks;
+    }
+
+    public void setNerMaxQueuedChunks(int nerMaxQueuedChunks) {
+        this.nerMaxQueuedChunks = nerMaxQueuedChunks;
+    }
+
+    public int getNerMaxConcurrentRequests() {
+        return nerMaxConcurrentRequests;
+    }
+
+    public void setNerMaxConcurrentRequests(int nerMaxConcurrentRequests) {
+        this.nerMaxConcurrentRequests = nerMaxConcurrentRequests;
+    }
+
+    public int getNerMaxQueuedRequests() {
+        return nerMaxQueuedRequests;
+    }
+
+    public void setNerMaxQueuedRequests(int nerMaxQueuedRequests) {
+        this.nerMaxQueuedRequests = nerMaxQueuedRequests;
+    }
+
+    public int getNerMaxBatchDocuments() {
+        return nerMaxBatchDocuments;
+    }
+
+    public void setNerMaxBatchDocuments(int nerMaxBatchDocuments) {
+        this.nerMaxBatchDocuments = nerMaxBatchDocuments;
+    }
+
+    public int getNerMaxBatchSizeBytes() {
+        return nerMaxBatchSizeBytes;
+    }
+
+    public void setNerMaxBatchSizeBytes(int nerMaxBatchSizeBytes) {
+        this.nerMaxBatchSizeBytes = nerMaxBatchSizeBytes;
+    }
+
+    public int getNerStreamMaxInFlightDocuments() {
+        return nerStreamMaxInFlightDocuments;
+    }
+
+    public void setNerStreamMaxInFlightDocuments(int nerStreamMaxInFlightDocuments) {
+        this.nerStreamMaxInFlightDocuments = nerStreamMaxInFlightDocuments;
+    }
+
+    public int getNerMaxOpenStreams() {
+        return nerMaxOpenStreams;
+    }
+
+    public void setNerMaxOpenStreams(int nerMaxOpenStreams) {
+        this.nerMaxOpenStreams = nerMaxOpenStreams;
+    }
+
+    public NerPreFilter.Mode getNerPreFilter() {
+        return nerPreFilter;
+    }
+
+    public void setNerPreFilter(NerPreFilter.Mode nerPreFilter) {
+        if (nerPreFilter != null) {
+            this.nerPreFilter = nerPreFilter;
+        }
+    }
+
+    public String getNerModelSnapshotPath() {
+        return nerModelSnapshotPath;
+    }
+
+    public void setNerModelSnapshotPath(String nerModelSnapshotPath) {
+        this.nerModelSnapshotPath = nerModelSnapshotPath;
+    }
+
+    public NerModelRegistrySettings getNerModels() {
+        return nerModels;
+    }
+
+    public void setNerModels(NerModelRegistrySettings nerModels) {
+        if (nerModels != null) {
+            this.nerModels = nerModels;
+        }
+    }
+
+    public NerWarmupSettings getNerWarmup() {
+        return nerWarmup;
+    }
+
+    public void setNerWarmup(NerWarmupSettings nerWarmup) {
+        if (nerWarmup != null) {
+            this.nerWarmup = nerWarmup;
+        }
+    }
+
+    public NerResultCacheSettings getNerResultCache() {
+        return nerResultCache;
+    }
+
+    public void setNerResultCache(NerResultCacheSettings nerResultCache) {
+        if (nerResultCache != null) {
+            this.nerResultCache = nerResultCache;
+        }
+    }
+
+    public NerSentenceCacheSettings getNerSentenceCache() {
+        return nerSentenceCache;
+    }
+
+    public void setNerSentenceCache(NerSentenceCacheSettings nerSentenceCache) {
+        if (nerSentenceCache != null) {
+            this.nerSentenceCache = nerSentenceCache;
+        }
+    }
+
+    public NerAdaptiveChunkSizeSettings getNerAdaptiveChunkSize() {
+        return nerAdaptiveChunkSize;
+    }
+
+    public void setNerAdaptiveChunkSize(NerAdaptiveChunkSizeSettings nerAdaptiveChunkSize) {
+        if (nerAdaptiveChunkSize != null) {
+            this.nerAdaptiveChunkSize = nerAdaptiveChunkSize;
+        }
+    }
+
+    public NerBufferPoolSettings getNerBufferPool() {
+        return nerBufferPool;
+    }
+
+    public void setNerBufferPool(NerBufferPoolSettings nerBufferPool) {
+        if (nerBufferPool != null) {
+            this.nerBufferPool = nerBufferPool;
+        }
+    }
+
+    public NerLocalFileSettings getNerLocalFiles() {
+        return nerLocalFiles;
+    }
+
+    public void setNerLocalFiles(NerLocalFileSettings nerLocalFiles) {
+        if (nerLocalFiles != null) {
+            this.nerLocalFiles = nerLocalFiles;
+        }
+    }
 }
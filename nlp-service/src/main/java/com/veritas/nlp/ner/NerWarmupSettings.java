@@ -0,0 +1,58 @@
+package com.veritas.nlp.ner;
+
+public class NerWarmupSettings {
+    private boolean enabled = true;
+    private String corpusPath = "nlp-warmup-corpus.txt";
+    private int maxIterations = 20;
+    private int settledIterations = 3;
+    private int settledTolerancePercent = 10;
+    private int maxDurationSeconds = 120;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getCorpusPath() {
+        return corpusPath;
+    }
+
+    public void setCorpusPath(String corpusPath) {
+        this.corpusPath = corpusPath;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public int getSettledIterations() {
+        return settledIterations;
+    }
+
+    public void setSettledIterations(int settledIterations) {
+        this.settledIterations = settledIterations;
+    }
+
+    public int getSettledTolerancePercent() {
+        return settledTolerancePercent;
+    }
+
+    public void setSettledTolerancePercent(int settledTolerancePercent) {
+        this.settledTolerancePercent = settledTolerancePercent;
+    }
+
+    public int getMaxDurationSeconds() {
+        return maxDurationSeconds;
+    }
+
+    public void setMaxDurationSeconds(int maxDurationSeconds) {
+        this.maxDurationSeconds = maxDurationSeconds;
+    }
+}
@@ -1,7 +1,5 @@
 package com.veritas.nlp.ner;
 
-import com.google.common.base.Enums;
-import com.google.common.base.Suppliers;
 import com.veritas.nlp.models.NlpMatch;
 import com.veritas.nlp.models.NlpMatchCollection;
 import com.veritas.nlp.models.NlpTagSet;
@@ -9,42 +7,151 @@ import com.veritas.nlp.models.NlpTagType;
 import com.veritas.nlp.resources.NlpRequestParams;
 import edu.stanford.nlp.ie.crf.CRFClassifier;
 import edu.stanford.nlp.ie.crf.CRFCliqueTree;
+import edu.stanford.nlp.ie.crf.TestSequenceModel;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
+import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 class StanfordEntityRecogniser {
-    private static final String NER_3_CLASSIFIER_PATH = "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz";
-    private static final Supplier<CRFClassifier<CoreLabel>> classifier = Suppliers.memoize(StanfordEntityRecogniser::createClassifier);
     private static final int CONTEXT_BEFORE_CHARS = 150;
     private static final int CONTEXT_AFTER_CHARS = 150;
+    // Looking up the classifier's answer labels directly avoids the Optional that Enums.getIfPresent allocates
+    // for every word.
+    private static final Map<String, NlpTagType> TAG_TYPES_BY_LABEL = Arrays.stream(NlpTagType.values())
+            .collect(Collectors.toUnmodifiableMap(NlpTagType::name, Function.identity()));
 
     private final Map<NlpTagType, NlpTagSet> entities;
     private final String text;
     private final NlpRequestParams params;
     private final long matchBaseOffset;
+    private final NerCancellationToken cancellationToken;
+    private final NerSentenceCache sentenceCache;
+    private final NerRequestStats stats;
+    private final CRFClassifier<CoreLabel> crf;
+    private final String modelName;
+    private NerPreFilter preFilter;
+    private int longestSentenceTokens;
 
-    StanfordEntityRecogniser(Map<NlpTagType, NlpTagSet> entities, String text, NlpRequestParams params, long matchBaseOffset) {
+    StanfordEntityRecogniser(Map<NlpTagType, NlpTagSet> entities, String text, NlpRequestParams params, long matchBaseOffset,
+                             NerCancellationToken cancellationToken) throws NerException {
+        this(entities, text, params, matchBaseOffset, cancellationToken, null);
+    }
+
+    /**
+     * @throws NerException with {@link com.veritas.nlp.resources.ErrorCode#CLIENT_ERROR} if the requested model
+     * doesn't exist.  The model is loaded now if it isn't already.
+     */
+    StanfordEntityRecogniser(Map<NlpTagType, NlpTagSet> entities, String text, NlpRequestParams params, long matchBaseOffset,
+                             NerCancellationToken cancellationToken, NerSentenceCache sentenceCache) throws NerException {
+        this(entities, text, params, matchBaseOffset, cancellationToken, sentenceCache,
+                NerModelRegistry.getInstance().getClassifier(params.getModel()));
+    }
+
+    /**
+     * @param crf The requested model's classifier, already looked up by the caller.
+     */
+    StanfordEntityRecogniser(Map<NlpTagType, NlpTagSet> entities, String text, NlpRequestParams params, long matchBaseOffset,
+                             NerCancellationToken cancellationToken, NerSentenceCache sentenceCache,
+                             CRFClassifier<CoreLabel> crf) {
         this.entities = entities;
         this.text = text;
         this.params = params;
         this.matchBaseOffset = matchBaseOffset;
+        this.cancellationToken = cancellationToken;
+        this.sentenceCache = sentenceCache;
+        this.stats = cancellationToken.getStats();
+        this.crf = crf;
+        this.modelName = params.getModel() != null ? params.getModel() : NerModelRegistry.getInstance().getDefaultModel();
     }
 
-    void extractEntities() {
-        extractEntities(classifier.get().classify(text));
+    /**
+     * @param preFilter A filter that can be used with the classifier - see {@link NerPreFilter#forClassifier} - or
+     *                  null to classify everything.
+     */
+    void setPreFilter(NerPreFilter preFilter) {
+        this.preFilter = preFilter;
     }
 
-    private void extractEntities(List<List<CoreLabel>> sentences) {
-        for (List<CoreLabel> sentence : sentences) {
-            getEntitiesForSentence(sentence);
+    /**
+     * Load the default model's classifier now, rather than on first use.  Loading takes several seconds.
+     */
+    static CRFClassifier<CoreLabel> loadClassifier() {
+        try {
+            return NerModelRegistry.getInstance().getClassifier(null);
+        } catch (NerException e) {
+            // The registry won't have been created without a valid default model.
+            throw new IllegalStateException(e);
         }
     }
 
-    private void getEntitiesForSentence(List<CoreLabel> sentence) {
+    void extractEntities() throws Exception {
+        // Equivalent to classifier.classify(text), but we classify one sentence at a time so that we can stop
+        // part way through the text if the request is cancelled.
+        long startCpuNanos = NerCancellationToken.getCurrentThreadCpuNanos();
+        int processedChars = 0;
+        try {
+            // Tokenization happens lazily as we iterate, so we time the iterator separately from classification.
+            String textToTokenize = preFilter != null ? preFilter.blankMachineLines(text, stats) : text;
+            Iterator<List<CoreLabel>> sentences = crf.makeObjectBankFromString(textToTokenize, crf.plainTextReaderAndWriter()).iterator();
+            while (true) {
+                long start = System.nanoTime();
+                List<CoreLabel> sentence = sentences.hasNext() ? sentences.next() : null;
+                stats.addStageNanos(NerRequestStats.Stage.TOKENIZE, System.nanoTime() - start);
+                if (sentence == null) {
+                    break;
+                }
+                stats.addSentence();
+                longestSentenceTokens = Math.max(longestSentenceTokens, sentence.size());
+
+                cancellationToken.throwIfCancelled();
+                if (sentence.isEmpty()) {
+                    continue;
+                }
+                int sentenceChars = sentence.get(sentence.size()-1).endPosition() - sentence.get(0).beginPosition();
+                if (preFilter != null && preFilter.canSkip(sentence)) {
+                    stats.addSkipped(sentenceChars);
+                } else {
+                    if (sentenceCache != null) {
+                        addSentenceEntities(sentence, getSentenceEntities(crf, sentence));
+                    } else {
+                        getEntitiesForSentence(sentence, classify(crf, sentence));
+                    }
+                    stats.addClassifiedChars(sentenceChars);
+                }
+                processedChars = sentence.get(sentence.size()-1).endPosition();
+            }
+            processedChars = text.length();
+        } finally {
+            cancellationToken.recordProcessed(processedChars, NerCancellationToken.getCurrentThreadCpuNanos() - startCpuNanos);
+            cancellationToken.recordAbandoned(text.length() - processedChars);
+        }
+    }
+
+    /**
+     * @return The number of tokens in the longest sentence seen by {@link #extractEntities()}.
+     */
+    int getLongestSentenceTokens() {
+        return longestSentenceTokens;
+    }
+
+    /**
+     * Add the entities found in a sentence that has already been classified.
+     */
+    void getEntitiesForSentence(List<CoreLabel> sentence) {
+        getEntitiesForSentence(sentence, null);
+    }
+
+    /**
+     * @param cliqueTree The clique tree the sentence was classified with, if available.  Otherwise one is built if
+     *                   confidence needs to be assessed.
+     */
+    private void getEntitiesForSentence(List<CoreLabel> sentence, CRFCliqueTree<String> cliqueTree) {
 
         // The API for extraction of the named entities is a bit strange.  We have to look for sequences of words
         // with particular entity type.  For example a sequence of three words of entity type PERSON is considered a
@@ -54,57 +161,104 @@ class StanfordEntityRecogniser {
         // but it is not ideal because it doesn't normalize whitespace characters.  This way we get the individual
         // words separately so we don't have to deal with whitespace at all.
         //
-        CRFCliqueTree<String> cliqueTree = null;
+        // This runs for every word we classify, so an entity is tracked as a span of token positions rather than
+        // a list of tokens, and its text is extracted just once.
+        //
+        int sentenceLength = sentence.size();
 
-        for (int wordPos = 0; wordPos < sentence.size(); wordPos++) {
-            CoreLabel word = sentence.get(wordPos);
+        for (int firstToken = 0; firstToken < sentenceLength; firstToken++) {
+            NlpTagType entityType = getEntityType(sentence.get(firstToken));
+            if (entityType == null || !params.getTagTypes().contains(entityType)) {
+                continue;
+            }
+            int lastToken = firstToken;
+            while (lastToken + 1 < sentenceLength && entityType == getEntityType(sentence.get(lastToken + 1))) {
+                lastToken++;
+            }
 
-            List<EntityToken> entityTokens = null;
-            NlpTagType entityType = getEntityType(word);
+            NlpTagSet tagSet = entities.computeIfAbsent(entityType, StanfordEntityRecogniser::createTagSet);
+            String entity = getText(sentence, firstToken, lastToken);
 
-            while (params.getTagTypes().contains(entityType)) {
-                if (entityTokens == null) {
-                    entityTokens = new ArrayList<>();
-                }
-                entityTokens.add(new EntityToken(wordPos, word));
-
-                int nextWordPos = wordPos + 1;
-                if (nextWordPos < sentence.size()) {
-                    word = sentence.get(nextWordPos);
-                    if (entityType.equals(getEntityType(word))) {
-                        wordPos = nextWordPos;
-                        continue;
+            // Constructing the clique tree is relatively expensive, so we only want to do it if we absolutely
+            // have to.  Hence the check here to ensure we haven't already added this entity before we
+            // assess the confidence.
+            if (!tagSet.getTags().contains(entity) || params.includeMatches()) {
+                if (params.getMinConfidencePercentage() > 0) {
+                    long start = System.nanoTime();
+                    cliqueTree = cliqueTree == null ? getCliqueTree(crf, sentence) : cliqueTree;
+                    double confidencePercentage = getConfidencePercentage(cliqueTree, sentence, firstToken, lastToken);
+                    stats.addStageNanos(NerRequestStats.Stage.CONFIDENCE, System.nanoTime() - start);
+
+                    if (confidencePercentage > params.getMinConfidencePercentage()) {
+                        addEntity(tagSet, sentence, firstToken, lastToken, entity);
                     }
+                } else {
+                    // If minConfidence is zero, we can bypass the clique tree construction and confidence
+                    // assessment, giving us a performance boost.
+                    addEntity(tagSet, sentence, firstToken, lastToken, entity);
                 }
-                break;
+            }
+            firstToken = lastToken;
+        }
+    }
+
+    /**
+     * Get the entities in the sentence from the sentence cache, or classify the sentence and cache the entities it
+     * contains.  Unlike {@link #getEntitiesForSentence}, all entity types are found (and their confidence assessed
+     * if required) so that the cached result is useful to other requests.
+     */
+    private List<NerSentenceCache.SentenceEntity> getSentenceEntities(CRFClassifier<CoreLabel> crf, List<CoreLabel> sentence) {
+        boolean needConfidence = params.getMinConfidencePercentage() > 0;
+        String key = sentenceCache.createKey(modelName, sentence);
+        List<NerSentenceCache.SentenceEntity> sentenceEntities = key != null ? sentenceCache.get(key) : null;
+        if (sentenceEntities != null && (!needConfidence || sentenceEntities.stream().allMatch(NerSentenceCache.SentenceEntity::hasConfidence))) {
+            return sentenceEntities;
+        }
+
+        CRFCliqueTree<String> cliqueTree = classify(crf, sentence);
+        sentenceEntities = new ArrayList<>();
+        for (int wordPos = 0; wordPos < sentence.size(); wordPos++) {
+            NlpTagType entityType = getEntityType(sentence.get(wordPos));
+            if (entityType == null) {
+                continue;
+            }
+            int firstToken = wordPos;
+            while (wordPos + 1 < sentence.size() && entityType.equals(getEntityType(sentence.get(wordPos + 1)))) {
+                wordPos++;
             }
 
-            if (CollectionUtils.size(entityTokens) > 0) {
-                NlpTagSet tagSet = entities.computeIfAbsent(entityType, tagType -> new NlpTagSet(tagType, new TreeSet<String>(String.CASE_INSENSITIVE_ORDER)));
-                String entity = getText(entityTokens);
+            double confidencePercentage = Double.NaN;
+            if (needConfidence) {
+                long start = System.nanoTime();
+                cliqueTree = cliqueTree == null ? getCliqueTree(crf, sentence) : cliqueTree;
+                confidencePercentage = getConfidencePercentage(cliqueTree, sentence, firstToken, wordPos);
+                stats.addStageNanos(NerRequestStats.Stage.CONFIDENCE, System.nanoTime() - start);
+            }
+            sentenceEntities.add(new NerSentenceCache.SentenceEntity(entityType, firstToken, wordPos, confidencePercentage));
+        }
 
-                // Constructing the clique tree is relatively expensive, so we only want to do it if we absolutely
-                // have to.  Hence the check here to ensure we haven't already added this entity before we
-                // assess the confidence.
-                if (!tagSet.getTags().contains(entity) || params.includeMatches()) {
-                    if (params.getMinConfidencePercentage() > 0) {
-                        cliqueTree = cliqueTree == null ? classifier.get().getCliqueTree(sentence) : cliqueTree;
+        if (key != null) {
+            sentenceCache.put(key, sentenceEntities);
+        }
+        return sentenceEntities;
+    }
 
-                        if (getConfidencePercentage(cliqueTree, entityTokens) > params.getMinConfidencePercentage()) {
-                            addEntity(tagSet, entityTokens);
-                        }
-                    } else {
-                        // If minConfidence is zero, we can bypass the clique tree construction and confidence
-                        // assessment, giving us a performance boost.
-                        addEntity(tagSet, entityTokens);
-                    }
-                }
+    private void addSentenceEntities(List<CoreLabel> sentence, List<NerSentenceCache.SentenceEntity> sentenceEntities) {
+        for (NerSentenceCache.SentenceEntity sentenceEntity : sentenceEntities) {
+            if (!params.getTagTypes().contains(sentenceEntity.type)) {
+                continue;
+            }
+            NlpTagSet tagSet = entities.computeIfAbsent(sentenceEntity.type, StanfordEntityRecogniser::createTagSet);
+            if (params.getMinConfidencePercentage() <= 0
+                    || sentenceEntity.confidencePercentage > params.getMinConfidencePercentage()) {
+                addEntity(tagSet, sentence, sentenceEntity.firstToken, sentenceEntity.lastToken,
+                        getText(sentence, sentenceEntity.firstToken, sentenceEntity.lastToken));
             }
         }
     }
 
-    private void addEntity(NlpTagSet tagSet, List<EntityToken> entityTokens) {
-        String entityText = getText(entityTokens);
+    private void addEntity(NlpTagSet tagSet, List<CoreLabel> sentence, int firstToken, int lastToken, String entityText) {
+        stats.addEntity();
         tagSet.getTags().add(entityText);
 
         if (params.includeMatches()) {
@@ -113,56 +267,104 @@ class StanfordEntityRecogniser {
             }
             tagSet.getMatchCollection().setTotal(tagSet.getMatchCollection().getTotal()+1);
             if (CollectionUtils.size(tagSet.getMatchCollection().getMatches()) < params.getMaxContentMatches()) {
-                tagSet.getMatchCollection().getMatches().add(createMatch(entityTokens, entityText));
+                tagSet.getMatchCollection().getMatches().add(createMatch(sentence, firstToken, lastToken, entityText));
             }
         }
     }
 
-    private NlpMatch createMatch(List<EntityToken> entityTokens, String entityText) {
-        long offset = matchBaseOffset + entityTokens.get(0).coreLabel.beginPosition();
+    /**
+     * Classify the sentence, returning the clique tree the labels were decoded from.
+     * <p>
+     * crf.classify() builds a clique tree (extracting features for every word and running forward-backward) to
+     * find the most likely labels, then throws it away.  Assessing confidence needs the same tree, and building it
+     * again costs as much as classifying in the first place.  So we do what crf.classify() does ourselves and keep
+     * the tree.  For models that decode some other way we fall back to crf.classify(), and return null.
+     */
+    private CRFCliqueTree<String> classify(CRFClassifier<CoreLabel> crf, List<CoreLabel> sentence) {
+        long start = System.nanoTime();
+        CRFCliqueTree<String> cliqueTree = null;
+        if (sentence.isEmpty() || !canReuseCliqueTree(crf.flags)) {
+            crf.classify(sentence);
+        } else {
+            cliqueTree = crf.getCliqueTree(crf.documentToDataAndLabels(sentence));
+            int[] bestSequence = new ExactBestSequenceFinder().bestSequence(new TestSequenceModel(cliqueTree));
+            // The sequence is padded at the start by the window size.
+            for (int i = 0; i < sentence.size(); i++) {
+                sentence.get(i).set(CoreAnnotations.AnswerAnnotation.class, crf.classIndex.get(bestSequence[i + crf.windowSize - 1]));
+            }
+        }
+        stats.addStageNanos(NerRequestStats.Stage.CLASSIFY, System.nanoTime() - start);
+        return cliqueTree;
+    }
+
+    /**
+     * Whether crf.classify() would decode the sentence with Viterbi over an unrestricted clique tree, the only case
+     * {@link #classify} reproduces.  True for the bundled model.
+     */
+    static boolean canReuseCliqueTree(SeqClassifierFlags flags) {
+        return !flags.doGibbs
+                && "maxent".equalsIgnoreCase(flags.crfType)
+                && (flags.inferenceType == null || "viterbi".equalsIgnoreCase(flags.inferenceType))
+                && !flags.useReverse
+                && flags.labelDictionaryCutoff <= 0;
+    }
+
+    private CRFCliqueTree<String> getCliqueTree(CRFClassifier<CoreLabel> crf, List<CoreLabel> sentence) {
+        stats.addCliqueTree();
+        return crf.getCliqueTree(sentence);
+    }
+
+    private NlpMatch createMatch(List<CoreLabel> sentence, int firstToken, int lastToken, String entityText) {
+        int beginPosition = sentence.get(firstToken).beginPosition();
+        long offset = matchBaseOffset + beginPosition;
         long length = entityText.length();
 
-        int contextStart = Math.max(0, entityTokens.get(0).coreLabel.beginPosition() - CONTEXT_BEFORE_CHARS);
-        int contextEnd = Math.min(text.length(), entityTokens.get(entityTokens.size()-1).coreLabel.endPosition() + CONTEXT_AFTER_CHARS);
+        int contextStart = Math.max(0, beginPosition - CONTEXT_BEFORE_CHARS);
+        int contextEnd = Math.min(text.length(), sentence.get(lastToken).endPosition() + CONTEXT_AFTER_CHARS);
         String context = text.substring(contextStart, contextEnd);
-        int contextOffset = entityTokens.get(0).coreLabel.beginPosition() - contextStart;
+        int contextOffset = beginPosition - contextStart;
 
         return new NlpMatch(offset, length, entityText, context, contextOffset);
     }
 
-    private NlpTagType getEntityType(CoreLabel coreLabel) {
+    private static NlpTagType getEntityType(CoreLabel coreLabel) {
         String entityTypeString = coreLabel.get(CoreAnnotations.AnswerAnnotation.class);
-        return Enums.getIfPresent(NlpTagType.class, entityTypeString).orNull();
+        return entityTypeString != null ? TAG_TYPES_BY_LABEL.get(entityTypeString) : null;
     }
 
-    private String getText(List<EntityToken> tokens) {
-        return text.substring(
-                tokens.get(0).coreLabel.beginPosition(),
-                tokens.get(tokens.size()-1).coreLabel.endPosition()).trim();
+    /**
+     * Get the text of an entity, trimmed of whitespace.  Equivalent to substring().trim(), but only creates one
+     * string.
+     */
+    private String getText(List<CoreLabel> sentence, int firstToken, int lastToken) {
+        int begin = sentence.get(firstToken).beginPosition();
+        int end = sentence.get(lastToken).endPosition();
+        while (begin < end && text.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return text.substring(begin, end);
     }
 
-    private double getConfidencePercentage(CRFCliqueTree<String>cliqueTree, List<EntityToken> tokens) {
+    private static double getConfidencePercentage(CRFCliqueTree<String> cliqueTree, List<CoreLabel> sentence,
+                                                  int firstToken, int lastToken) {
         // Each word in the entity has a confidence (which is a little strange).  We'll combine them through a simple
         // mean to get an overall confidence for the entity.
         double totalConfidence = 0.0;
-        for (EntityToken token : tokens) {
-            totalConfidence += cliqueTree.prob(token.pos, token.coreLabel.get(CoreAnnotations.AnswerAnnotation.class));
+        for (int pos = firstToken; pos <= lastToken; pos++) {
+            totalConfidence += cliqueTree.prob(pos, sentence.get(pos).get(CoreAnnotations.AnswerAnnotation.class));
         }
-        return (totalConfidence / (double)tokens.size()) * 100.0;
+        return (totalConfidence / (double)(lastToken - firstToken + 1)) * 100.0;
     }
 
-    private static CRFClassifier<CoreLabel> createClassifier() {
-        return CRFClassifier.getClassifierNoExceptions(NER_3_CLASSIFIER_PATH);
+    static NlpTagSet createTagSet(NlpTagType tagType) {
+        return new NlpTagSet(tagType, new TreeSet<String>(String.CASE_INSENSITIVE_ORDER));
     }
 
-    private static class EntityToken {
-        EntityToken(int pos, CoreLabel coreLabel) {
-            this.pos = pos;
-            this.coreLabel = coreLabel;
-        }
-
-        final int pos;
-        final CoreLabel coreLabel;
+    static CRFClassifier<CoreLabel> loadBundledClassifier() {
+        return CRFClassifier.getClassifierNoExceptions(NerModelRegistrySettings.BUNDLED_MODEL_PATH);
     }
 
 }
@@ -1,45 +1,189 @@
 package com.veritas.nlp.ner;
 
+import com.google.common.hash.HashCode;
+import com.veritas.nlp.models.MalformedInputPolicy;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
 import com.veritas.nlp.resources.ErrorCode;
 import com.veritas.nlp.resources.NlpRequestParams;
+import com.veritas.nlp.text.FastTextReader;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.input.BOMInputStream;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Reads text from a supplied stream and extracts named entities from it.
+ * Reads text from a supplied stream, or a local file, and extracts named entities from it.
+ * <p>
+ * When a chunk executor is supplied, decoding and chunking carry on in the calling thread while completed chunks
+ * are classified by the executor, so reading a slowly uploaded stream overlaps with classification.
+ * <p>
+ * When a result cache is supplied, small documents are read in full before classification so that a cached result
+ * can be returned instead.
  */
 public class StreamingNerRecognizer {
     private static final int DEFAULT_BUFFER_SIZE_CHARS = 1024 * 1024;
+    private static final int DEFAULT_BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+    private static final int MAX_BOM_BYTES = 4;
     private final int bufferSizeChars;
+    private final NerRuntime runtime;
     private final NerSettings nerSettings;
+    private final NerResultCache resultCache;
+    private final NerBufferPool bufferPool;
+    private long contentLengthHint = -1;
 
-    public StreamingNerRecognizer(int bufferSizeChars, NerSettings nerSettings) {
+    public StreamingNerRecognizer(int bufferSizeChars, NerRuntime runtime) {
         this.bufferSizeChars = bufferSizeChars;
-        this.nerSettings = nerSettings;
+        this.runtime = runtime;
+        this.nerSettings = runtime.getSettings();
+        this.resultCache = runtime.getResultCache();
+        this.bufferPool = runtime.getBufferPool();
+    }
+
+    public StreamingNerRecognizer(NerRuntime runtime) {
+        this(DEFAULT_BUFFER_SIZE_CHARS, runtime);
+    }
+
+    public StreamingNerRecognizer(int bufferSizeChars, NerSettings nerSettings) {
+        this(bufferSizeChars, new NerRuntime(nerSettings, null, null, null));
     }
 
     public StreamingNerRecognizer(NerSettings nerSettings) {
         this(DEFAULT_BUFFER_SIZE_CHARS, nerSettings);
     }
 
-    @SuppressFBWarnings(value = "OS_OPEN_STREAM", justification = "Caller owns the stream, so is responsible for closing it.")
+    /**
+     * Apply model settings.  Must be called before the models are loaded.
+     */
+    public static void configureModels(NerSettings nerSettings) {
+        NerModelRegistry.configure(nerSettings);
+    }
+
+    /**
+     * Load the NER models configured to load at startup, so that the first request doesn't have to wait for them.
+     */
+    public static void loadModels() {
+        NerModelRegistry.getInstance().loadStartupModels();
+    }
+
+    /**
+     * Set an upper bound on the length of the content, e.g. from the request's Content-Length header, so that a
+     * small document isn't read into a full size buffer.  The length in bytes will do, as no supported encoding
+     * takes less than a byte per char.
+     */
+    public void setContentLengthHint(long contentLengthHint) {
+        this.contentLengthHint = contentLengthHint;
+    }
+
     public Map<NlpTagType, NlpTagSet> extractEntities(
             InputStream textStream, NlpRequestParams params) throws Exception {
+        return extractEntities(textStream, params, new NerCancellationToken(params.getTimeout()));
+    }
 
-        ChunkedNerRecognizer chunkedNerRecognizer = new ChunkedNerRecognizer(nerSettings.getNerChunkSizeChars(), params);
+    public Map<NlpTagType, NlpTagSet> extractEntities(
+            InputStream textStream, NlpRequestParams params, NerCancellationToken cancellationToken) throws Exception {
+        return extractEntities(textStream, params, cancellationToken, null);
+    }
+
+    /**
+     * Extract entities, passing content matches to the listener as they are found rather than returning them.  The
+     * returned tag sets include the match totals, but no matches.  The result cache is bypassed, because it holds
+     * the matches along with the result.
+     */
+    @SuppressFBWarnings(value = "OS_OPEN_STREAM", justification = "Caller owns the stream, so is responsible for closing it.")
+    public Map<NlpTagType, NlpTagSet> extractEntities(
+            InputStream textStream, NlpRequestParams params, NerCancellationToken cancellationToken,
+            NerMatchListener matchListener) throws Exception {
 
+        BOMInputStream bomInputStream = createBomInputStream(new LimitedInputStream(textStream, getMaxContentSizeBytes()));
+        return extractEntities(bomInputStream, getCharset(bomInputStream), contentLengthHint, params, cancellationToken, matchListener);
+    }
+
+    /**
+     * Extract entities from a file on this host, which must be under one of the allowed roots in the settings.
+     * <p>
+     * The file is read through memory-mapped windows, so it comes straight from the page cache (which repeated scans
+     * of the same file can share), rather than being copied through the heap.  A file too large to be within
+     * maxNerContentSizeChars, whatever its content, is rejected before any of it is read.
+     *
+     * @throws NerException with {@link ErrorCode#FORBIDDEN} if the file is not under an allowed root, or
+     *                      {@link ErrorCode#CLIENT_ERROR} if it doesn't exist.
+     */
+    public Map<NlpTagType, NlpTagSet> extractEntities(
+            Path file, NlpRequestParams params, NerCancellationToken cancellationToken) throws Exception {
+
+        Path realFile = resolveLocalFile(file);
+        try (FileChannel channel = FileChannel.open(realFile, StandardOpenOption.READ)) {
+            long sizeBytes = channel.size();
+            BOMInputStream bomInputStream = createBomInputStream(new LimitedInputStream(
+                    new MappedFileInputStream(channel, nerSettings.getNerLocalFiles().getWindowSizeBytes()),
+                    getMaxContentSizeBytes()));
+            Charset charset = getCharset(bomInputStream);
+            checkContentNotTooLarge(getMinChars(sizeBytes, charset, params.getMalformedInputPolicy()));
+            return extractEntities(bomInputStream, charset, sizeBytes, params, cancellationToken, null);
+        }
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(
+            InputStream textStream, Charset charset, long lengthHint, NlpRequestParams params,
+            NerCancellationToken cancellationToken, NerMatchListener matchListener) throws Exception {
+
+        CodingErrorAction malformedInputAction = getMalformedInputAction(params.getMalformedInputPolicy());
+        char[] buffer = bufferPool != null
+                ? bufferPool.acquireBuffer(bufferSizeChars, lengthHint)
+                : new char[bufferSizeChars];
+        byte[] byteBuffer = null;
+        try {
+            Reader reader;
+            if (FastTextReader.isSupported(charset)) {
+                // UTF-8 and UTF-16 - nearly every document - are decoded straight from the byte buffer, without going
+                // through a general purpose CharsetDecoder.
+                byteBuffer = bufferPool != null
+                        ? bufferPool.acquireByteBuffer(DEFAULT_BYTE_BUFFER_SIZE, lengthHint)
+                        : new byte[DEFAULT_BYTE_BUFFER_SIZE];
+                reader = new FastTextReader(textStream, charset, byteBuffer, malformedInputAction);
+            } else {
+                reader = new InputStreamReader(textStream, charset.newDecoder()
+                        .onMalformedInput(malformedInputAction)
+                        .onUnmappableCharacter(malformedInputAction));
+            }
+            return extractEntities(reader, buffer, params, cancellationToken, matchListener);
+        } catch (CharacterCodingException e) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "Document is not valid " + charset.name(), e);
+        } catch (LimitedInputStream.LimitExceededException e) {
+            throw new NerException(ErrorCode.CONTENT_TOO_LARGE, ErrorCode.CONTENT_TOO_LARGE.getMessage(), e);
+        } finally {
+            if (bufferPool != null) {
+                bufferPool.releaseBuffer(buffer);
+                if (byteBuffer != null) {
+                    bufferPool.releaseByteBuffer(byteBuffer);
+                }
+            }
+        }
+    }
+
+    private static BOMInputStream createBomInputStream(InputStream textStream) throws IOException {
         // NOTE: BOMInputStream will detect the charset from the BOM and then (by default) skip the BOM.
         // WARNING! BOMInputStream sorts the supplied array of BOMs, so DO NOT pass in a static array, or you may
         //          hit a nasty race condition with multiple threads!
-        BOMInputStream bomInputStream = BOMInputStream.builder()
+        return BOMInputStream.builder()
                 .setInputStream(textStream)
                 .setByteOrderMarks(
                         ByteOrderMark.UTF_32LE,
@@ -48,22 +192,157 @@ public class StreamingNerRecognizer {
                         ByteOrderMark.UTF_16BE,
                         ByteOrderMark.UTF_8)
                 .get();
-        String charset = bomInputStream.getBOMCharsetName() != null ? bomInputStream.getBOMCharsetName() : StandardCharsets.UTF_8.name();
+    }
 
-        InputStreamReader inputStreamReader = new InputStreamReader(bomInputStream, charset);
-        char[] buffer = new char[bufferSizeChars];
-        long totalRead = 0;
+    private static Charset getCharset(BOMInputStream bomInputStream) throws IOException {
+        return bomInputStream.getBOMCharsetName() != null ? Charset.forName(bomInputStream.getBOMCharsetName()) : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * The fewest chars that a document of the given size could decode to: a char per 3 bytes in UTF-8 (a 4 byte
+     * sequence decodes to a surrogate pair), or per 4 bytes otherwise (an unpaired surrogate and the char after it
+     * decode to a single replacement char in UTF-16).  Malformed input that is ignored decodes to nothing at all.
+     */
+    private static long getMinChars(long sizeBytes, Charset charset, MalformedInputPolicy malformedInputPolicy) {
+        if (malformedInputPolicy == MalformedInputPolicy.IGNORE) {
+            return 0;
+        }
+        return charset.equals(StandardCharsets.UTF_8) ? sizeBytes / 3 : sizeBytes / 4;
+    }
+
+    /**
+     * The most bytes that a document within maxNerContentSizeChars could take, BOM included.  The limit on chars
+     * alone isn't enough: malformed input that is ignored decodes to nothing, so without this a (perhaps highly
+     * compressed) request body could be read for as long as it goes on.
+     */
+    private long getMaxContentSizeBytes() {
+        return (long)nerSettings.getMaxNerContentSizeChars() * MAX_BYTES_PER_CHAR + MAX_BOM_BYTES;
+    }
+
+    private Path resolveLocalFile(Path file) throws NerException, IOException {
+        List<String> allowedRoots = nerSettings.getNerLocalFiles().getAllowedRoots();
+        if (allowedRoots.isEmpty()) {
+            throw new NerException(ErrorCode.FORBIDDEN, "Local files are not enabled");
+        }
+        if (!file.isAbsolute()) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "File path must be absolute");
+        }
+
+        // Check the path as given before looking at the file system, so that nothing can be learnt about files
+        // outside the allowed roots.  Then check again with links resolved, in case a link leads outside them.
+        Path normalizedFile = file.normalize();
+        if (!isUnderAllowedRoot(normalizedFile, allowedRoots, false)) {
+            throw new NerException(ErrorCode.FORBIDDEN, "File is not under an allowed root");
+        }
+        Path realFile;
+        try {
+            realFile = normalizedFile.toRealPath();
+        } catch (NoSuchFileException e) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "File not found: " + file);
+        }
+        if (!isUnderAllowedRoot(realFile, allowedRoots, true)) {
+            throw new NerException(ErrorCode.FORBIDDEN, "File is not under an allowed root");
+        }
+        if (!Files.isRegularFile(realFile)) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "Not a file: " + file);
+        }
+        return realFile;
+    }
+
+    private static boolean isUnderAllowedRoot(Path file, List<String> allowedRoots, boolean resolveLinks) throws IOException {
+        for (String allowedRoot : allowedRoots) {
+            Path root = Paths.get(allowedRoot).toAbsolutePath().normalize();
+            if (resolveLinks) {
+                if (!Files.exists(root)) {
+                    continue;
+                }
+                root = root.toRealPath();
+            }
+            if (file.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CodingErrorAction getMalformedInputAction(MalformedInputPolicy policy) {
+        switch (policy) {
+            case IGNORE: return CodingErrorAction.IGNORE;
+            case REJECT: return CodingErrorAction.REPORT;
+            default: return CodingErrorAction.REPLACE;
+        }
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(
+            Reader reader, char[] buffer, NlpRequestParams params, NerCancellationToken cancellationToken,
+            NerMatchListener matchListener) throws Exception {
+
+        if (resultCache == null || matchListener != null) {
+            return extractEntities(reader, buffer, "", params, cancellationToken, matchListener);
+        }
+
+        // Read ahead far enough to tell whether the document is small enough to cache.
+        StringBuilder initialContent = new StringBuilder();
+        int read;
+        while (initialContent.length() <= resultCache.getMaxDocumentSizeChars()
+                && (read = read(reader, buffer, cancellationToken.getStats())) != -1) {
+            cancellationToken.throwIfCancelled();
+            initialContent.append(buffer, 0, read);
+            checkContentNotTooLarge(initialContent.length());
+        }
+
+        if (initialContent.length() > resultCache.getMaxDocumentSizeChars()) {
+            return extractEntities(reader, buffer, initialContent, params, cancellationToken, null);
+        }
+
+        HashCode cacheKey = resultCache.createKey(initialContent, params);
+        Map<NlpTagType, NlpTagSet> entities = resultCache.get(cacheKey);
+        if (entities == null) {
+            entities = extractEntities(reader, buffer, initialContent, params, cancellationToken, null);
+            resultCache.put(cacheKey, entities);
+        }
+        return entities;
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(
+            Reader reader, char[] buffer, CharSequence initialContent, NlpRequestParams params,
+            NerCancellationToken cancellationToken, NerMatchListener matchListener) throws Exception {
+
+        ChunkedNerRecognizer chunkedNerRecognizer = new ChunkedNerRecognizer(params, runtime, cancellationToken);
+        chunkedNerRecognizer.setMatchListener(matchListener);
+
+        long totalRead = initialContent.length();
         int read;
 
-        while ((read = inputStreamReader.read(buffer)) != -1) {
-            if (read > 0) {
-                totalRead += read;
-                checkContentNotTooLarge(totalRead);
-                chunkedNerRecognizer.addContent(buffer, 0, read);
+        try {
+            chunkedNerRecognizer.addContent(initialContent);
+            while ((read = read(reader, buffer, cancellationToken.getStats())) != -1) {
+                cancellationToken.throwIfCancelled();
+                if (read > 0) {
+                    totalRead += read;
+                    checkContentNotTooLarge(totalRead);
+                    chunkedNerRecognizer.addContent(buffer, 0, read);
+                }
             }
+
+            return chunkedNerRecognizer.getEntities();
+        } finally {
+            chunkedNerRecognizer.cancel();
+            chunkedNerRecognizer.release();
         }
+    }
 
-        return chunkedNerRecognizer.getEntities();
+    /**
+     * Read and decode the next block of text, timing it.  The time includes waiting for the client to send more.
+     */
+    private static int read(Reader reader, char[] buffer, NerRequestStats stats) throws IOException {
+        long start = System.nanoTime();
+        int read = reader.read(buffer);
+        stats.addStageNanos(NerRequestStats.Stage.READ, System.nanoTime() - start);
+        if (read > 0) {
+            stats.addChars(read);
+        }
+        return read;
     }
 
     private void checkContentNotTooLarge(long sizeChars) throws NerException {
@@ -3,9 +3,12 @@ package com.veritas.nlp.resources;
 public enum ErrorCode {
     SERVER_ERROR("Server error"),
     CLIENT_ERROR("Client error"),
+    FORBIDDEN("Access is forbidden"),
     CONTENT_TOO_LARGE("Content is too large"),
     TIMEOUT("Operation took too long"),
-    ENTITY_RECOGNITION_FAILED("Entity recognition failed");
+    ENTITY_RECOGNITION_FAILED("Entity recognition failed"),
+    SERVICE_BUSY("Service is too busy to process the request"),
+    CANCELLED("Request was cancelled");
 
     private final String message;
 
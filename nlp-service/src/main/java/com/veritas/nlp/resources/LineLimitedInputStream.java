@@ -0,0 +1,95 @@
+package com.veritas.nlp.resources;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails, rather than reading on, once a line of more than a given number of bytes has been read from the underlying
+ * stream.  The stream as a whole can be of any length, so this bounds each document of a newline delimited feed.
+ * A read that takes in the start of an over-long line returns the bytes before it, and only the next read fails, so
+ * a reader that reads ahead still gets the complete lines before it.
+ */
+class LineLimitedInputStream extends FilterInputStream {
+    private final long maxLineBytes;
+    private long lineBytes;
+    private boolean limitExceeded;
+
+    LineLimitedInputStream(InputStream in, long maxLineBytes) {
+        super(in);
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkLimit();
+        int b = in.read();
+        if (b >= 0 && !count((byte)b)) {
+            checkLimit();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkLimit();
+        int read = in.read(b, off, len);
+        for (int i = 0; i < read; i++) {
+            if (!count(b[off + i])) {
+                if (i == 0) {
+                    checkLimit();
+                }
+                return i;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes can't be checked for line ends, so read them instead.
+        byte[] buffer = new byte[(int)Math.min(Math.max(n, 0), 8192)];
+        int read = read(buffer, 0, buffer.length);
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported, as a reset would throw the count out.
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Counts a byte read, returning false if it takes the line over the limit.
+     */
+    private boolean count(byte b) {
+        if (b == '\n') {
+            lineBytes = 0;
+        } else if (++lineBytes > maxLineBytes) {
+            limitExceeded = true;
+        }
+        return !limitExceeded;
+    }
+
+    private void checkLimit() throws LineTooLongException {
+        if (limitExceeded) {
+            throw new LineTooLongException(maxLineBytes);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class LineTooLongException extends IOException {
+        LineTooLongException(long maxLineBytes) {
+            super("Line of more than " + maxLineBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.veritas.nlp.resources;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.veritas.nlp.models.NerBatchDocument;
+import com.veritas.nlp.models.NerDocumentResult;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.ner.NerBatchRecognizer;
+import com.veritas.nlp.ner.NerCancellationToken;
+import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerRequestExecutor;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads a newline delimited JSON feed of documents and writes a newline delimited JSON result for each document as
+ * soon as it is available, while the rest of the feed is still arriving.
+ * <p>
+ * The feed is read on a thread of its own, so that waiting for the next document never holds up the result of the
+ * last one: a client that waits for each result before sending its next document gets it straight away.  Reader
+ * threads come from a bounded pool, and a stream is turned away before the response starts if none is free.  Each
+ * document is submitted to the NER workers as a request in its own right (so is subject to the usual admission
+ * control), and results are written in the same order as the documents were read.  No more than
+ * {@code maxInFlightDocuments} documents are being processed for the feed at once; when that limit is reached we
+ * stop reading until the oldest result has been written, so a client can't feed documents in faster than they can
+ * be processed and collected.  Each document (line) is limited to {@code maxDocumentBytes}, which is checked as it's
+ * read, so a single huge line can't be built up in memory either.
+ */
+class NerDocumentStreamWriter implements StreamingOutput {
+    private static final byte NEWLINE = '\n';
+    // Marks the end of the feed in the queue of pending documents.
+    private static final PendingDocument END_OF_FEED = new PendingDocument(null, null, null);
+    private final InputStream documentStream;
+    private final NerRequestExecutor requestExecutor;
+    private final NerBatchRecognizer recognizer;
+    private final NlpRequestParams params;
+    private final BooleanSupplier clientConnected;
+    private final Semaphore inFlightPermits;
+    private final ObjectReader documentReader;
+    private final ObjectWriter resultWriter;
+    private final BlockingQueue<PendingDocument> pending = new LinkedBlockingQueue<>();
+    private volatile boolean writeFailed;
+
+    NerDocumentStreamWriter(InputStream documentStream, NerRequestExecutor requestExecutor, NerBatchRecognizer recognizer,
+                            NlpRequestParams params, BooleanSupplier clientConnected, int maxInFlightDocuments,
+                            long maxDocumentBytes, ObjectMapper objectMapper) {
+        this.documentStream = new LineLimitedInputStream(documentStream, maxDocumentBytes);
+        this.requestExecutor = requestExecutor;
+        this.recognizer = recognizer;
+        this.params = params;
+        this.clientConnected = clientConnected;
+        this.inFlightPermits = new Semaphore(Math.max(1, maxInFlightDocuments));
+        this.documentReader = objectMapper.readerFor(NerBatchDocument.class);
+        this.resultWriter = objectMapper.writerFor(NerDocumentResult.class);
+    }
+
+    /**
+     * Start reading the feed on one of the reader threads.
+     *
+     * @throws NerException with {@link ErrorCode#SERVICE_BUSY} if all the reader threads are in use.
+     */
+    void start(ExecutorService readerExecutor) throws NerException {
+        try {
+            readerExecutor.execute(this::readFeed);
+        } catch (RejectedExecutionException e) {
+            throw new NerException(ErrorCode.SERVICE_BUSY, "Too many document streams are open");
+        }
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try {
+            PendingDocument document;
+            while ((document = takeNextDocument()) != END_OF_FEED) {
+                writeResult(output, document);
+                inFlightPermits.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Most likely the client has gone away, so there's no-one to write the remaining results to.
+            writeFailed = true;
+            // Interrupting the reader wouldn't unblock a read from the request, but closing the feed does.
+            IOUtils.closeQuietly(documentStream);
+            pending.forEach(NerDocumentStreamWriter::cancel);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs on the reader thread, submitting each document as it arrives, until the end of the feed.  If the feed
+     * can't be parsed, an error is queued after the documents we already have, and the feed is treated as ended.
+     */
+    private void readFeed() {
+        Deque<Future<?>> submitted = new ArrayDeque<>();
+        try (MappingIterator<NerBatchDocument> documents = documentReader.readValues(documentStream)) {
+            while (!writeFailed && documents.hasNextValue()) {
+                NerBatchDocument document = documents.nextValue();
+                inFlightPermits.acquire();
+                queue(submit(document, submitted));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (LineLimitedInputStream.LineTooLongException e) {
+            queueFailure(new NerException(ErrorCode.CONTENT_TOO_LARGE, ErrorCode.CONTENT_TOO_LARGE.getMessage(), e));
+        } catch (Exception e) {
+            queueFailure(e);
+        } finally {
+            pending.add(END_OF_FEED);
+        }
+    }
+
+    private PendingDocument submit(NerBatchDocument document, Deque<Future<?>> submitted) throws InterruptedException {
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout(), clientConnected);
+        while (true) {
+            try {
+                Future<Map<NlpTagType, NlpTagSet>> result = requestExecutor.submit(
+                        () -> recognizer.extractEntities(document.getText(), params, cancellationToken), cancellationToken);
+                submitted.addLast(result);
+                return new PendingDocument(document.getId(), result, cancellationToken);
+            } catch (NerException e) {
+                while (!submitted.isEmpty() && submitted.peekFirst().isDone()) {
+                    submitted.removeFirst();
+                }
+                if (e.getCode() != ErrorCode.SERVICE_BUSY || submitted.isEmpty()) {
+                    return new PendingDocument(document.getId(), CompletableFuture.failedFuture(e), cancellationToken);
+                }
+                // The workers are busy - wait for one of our own documents to finish before trying again.
+                awaitCompletion(submitted.removeFirst());
+            }
+        }
+    }
+
+    private void queue(PendingDocument document) {
+        pending.add(document);
+        if (writeFailed) {
+            // The writer may have given up before this was queued.
+            cancel(document);
+        }
+    }
+
+    private void queueFailure(Exception e) {
+        queue(new PendingDocument(null, CompletableFuture.failedFuture(e), new NerCancellationToken(params.getTimeout())));
+    }
+
+    private PendingDocument takeNextDocument() throws IOException {
+        try {
+            return pending.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the next document");
+        }
+    }
+
+    private void writeResult(OutputStream output, PendingDocument pendingDocument) throws IOException {
+        NerDocumentResult documentResult;
+        try {
+            documentResult = new NerDocumentResult(pendingDocument.id,
+                    requestExecutor.getResult(pendingDocument.result, pendingDocument.cancellationToken));
+        } catch (Exception e) {
+            documentResult = new NerDocumentResult(pendingDocument.id, ResourceExceptionMapper.toErrorResponse(e));
+        }
+        output.write(resultWriter.writeValueAsBytes(documentResult));
+        output.write(NEWLINE);
+        output.flush();
+    }
+
+    private static void awaitCompletion(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            // Only the waiting matters here - the writer reports the outcome.
+        }
+    }
+
+    private static void cancel(PendingDocument document) {
+        if (document.cancellationToken != null) {
+            document.cancellationToken.cancel(NerCancellationToken.Reason.REQUEST_FAILED);
+        }
+    }
+
+    private static class PendingDocument {
+        final String id;
+        final Future<Map<NlpTagType, NlpTagSet>> result;
+        final NerCancellationToken cancellationToken;
+
+        PendingDocument(String id, Future<Map<NlpTagType, NlpTagSet>> result,
+                        NerCancellationToken cancellationToken) {
+            this.id = id;
+            this.result = result;
+            this.cancellationToken = cancellationToken;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.veritas.nlp.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.veritas.nlp.models.NerResultFragment;
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.ner.NerCancellationToken;
+import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerMatchListener;
+import com.veritas.nlp.ner.NerRequestExecutor;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams content matches to the client as newline delimited JSON while a document is still being processed,
+ * followed by a final line holding the de-duplicated tag sets and match totals (or an error).
+ * <p>
+ * Entity extraction runs on a NER worker and hands matches over through a small bounded queue; the response is
+ * written by the request thread.  If the client reads slowly the queue fills and the worker waits, so matches
+ * don't pile up in memory.
+ */
+class NerMatchStreamWriter implements StreamingOutput, NerMatchListener {
+    private static final int MAX_QUEUED_FRAGMENTS = 16;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final byte NEWLINE = '\n';
+    private final BlockingQueue<NerResultFragment> fragments = new ArrayBlockingQueue<>(MAX_QUEUED_FRAGMENTS);
+    private final NerRequestExecutor requestExecutor;
+    private final NerCancellationToken cancellationToken;
+    private final ObjectWriter fragmentWriter;
+    private Future<Map<NlpTagType, NlpTagSet>> result;
+
+    NerMatchStreamWriter(NerRequestExecutor requestExecutor, NerCancellationToken cancellationToken,
+                         ObjectMapper objectMapper) {
+        this.requestExecutor = requestExecutor;
+        this.cancellationToken = cancellationToken;
+        this.fragmentWriter = objectMapper.writerFor(NerResultFragment.class);
+    }
+
+    /**
+     * Submit the entity extraction, which should pass this writer as its match listener.
+     *
+     * @throws NerException with {@link ErrorCode#SERVICE_BUSY} if the request cannot be started in time.
+     */
+    void start(Callable<Map<NlpTagType, NlpTagSet>> task) throws NerException {
+        result = requestExecutor.submit(task, cancellationToken);
+    }
+
+    @Override
+    public void onMatches(NlpTagType type, List<NlpMatch> matches) throws Exception {
+        NerResultFragment fragment = new NerResultFragment(type, new ArrayList<>(matches));
+        while (!fragments.offer(fragment, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            cancellationToken.throwIfCancelled();
+        }
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try {
+            writeMatches(output);
+
+            NerResultFragment lastFragment;
+            try {
+                lastFragment = new NerResultFragment(requestExecutor.getResult(result, cancellationToken));
+            } catch (Exception e) {
+                lastFragment = new NerResultFragment(ResourceExceptionMapper.toErrorResponse(e));
+            }
+            writeFragment(output, lastFragment);
+        } catch (IOException | RuntimeException e) {
+            // Most likely the client has gone away, so stop processing.
+            cancellationToken.cancel(NerCancellationToken.Reason.REQUEST_FAILED);
+            throw e;
+        }
+    }
+
+    private void writeMatches(OutputStream output) throws IOException {
+        try {
+            while (true) {
+                NerResultFragment fragment = fragments.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (fragment != null) {
+                    writeFragment(output, fragment);
+                } else if ((result.isDone() && fragments.isEmpty()) || cancellationToken.getRemainingTime().isZero()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancellationToken.cancel(NerCancellationToken.Reason.REQUEST_FAILED);
+        }
+    }
+
+    private void writeFragment(OutputStream output, NerResultFragment fragment) throws IOException {
+        output.write(fragmentWriter.writeValueAsBytes(fragment));
+        output.write(NEWLINE);
+        output.flush();
+    }
+}
@@ -1,42 +1,120 @@
 package com.veritas.nlp.resources;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.jakarta.rs.annotation.JacksonFeatures;
 import com.veritas.nlp.models.ErrorResponse;
+import com.veritas.nlp.models.MalformedInputPolicy;
+import com.veritas.nlp.models.NerBatchDocument;
+import com.veritas.nlp.models.NerBatchRequest;
+import com.veritas.nlp.models.NerBatchResult;
+import com.veritas.nlp.models.NerDocumentResult;
 import com.veritas.nlp.models.NerResult;
+import com.veritas.nlp.models.NerResultFragment;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.ner.NerBatchRecognizer;
+import com.veritas.nlp.ner.NerCancellationToken;
+import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerModelRegistry;
+import com.veritas.nlp.ner.NerRequestExecutor;
+import com.veritas.nlp.ner.NerRequestStats;
+import com.veritas.nlp.ner.NerRuntime;
 import com.veritas.nlp.ner.StreamingNerRecognizer;
 import com.veritas.nlp.service.NlpServiceSettings;
+import com.veritas.nlp.service.NlpThreadFactory;
+import io.dropwizard.jackson.Jackson;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.NotSupportedException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpConnection;
+import org.eclipse.jetty.server.Request;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.function.BooleanSupplier;
 
 @Path("/v1")
 @Tag(name = "Named Entity Recognition")
 public class NerResource {
-    private final NlpServiceSettings settings;
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+    private static final int DECOMPRESSION_BUFFER_SIZE = 64 * 1024;
+    private final NerRuntime nerRuntime;
+    private final NerRequestExecutor requestExecutor;
+    private final int maxBatchDocuments;
+    private final int maxStreamInFlightDocuments;
+    private final int maxBatchSizeBytes;
+    private final ObjectReader batchRequestReader;
+    private final ExecutorService streamReaderExecutor;
+    private final ObjectMapper objectMapper;
 
     public NerResource(NlpServiceSettings settings) {
-        this.settings = settings;
+        this(settings, new MetricRegistry());
+    }
+
+    public NerResource(NlpServiceSettings settings, MetricRegistry metrics) {
+        this(settings, metrics, Jackson.newObjectMapper());
+    }
+
+    /**
+     * @param objectMapper The service's object mapper, so that streamed results are serialized (and streamed
+     *                     documents read) the same way as the JSON requests and responses.
+     */
+    public NerResource(NlpServiceSettings settings, MetricRegistry metrics, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.nerRuntime = new NerRuntime(settings.getNerSettings(), metrics);
+        this.requestExecutor = new NerRequestExecutor(settings.getNerSettings(), metrics);
+        this.maxBatchDocuments = settings.getNerSettings().getNerMaxBatchDocuments();
+        this.maxStreamInFlightDocuments = settings.getNerSettings().getNerStreamMaxInFlightDocuments();
+        this.maxBatchSizeBytes = settings.getNerSettings().getNerMaxBatchSizeBytes();
+        this.batchRequestReader = createBatchRequestReader(objectMapper, maxBatchSizeBytes);
+        this.streamReaderExecutor = createStreamReaderExecutor(settings.getNerSettings().getNerMaxOpenStreams());
     }
 
     @POST
@@ -77,25 +155,431 @@ public class NerResource {
             @Parameter(description = ResourceStrings.ENTITIES_DOCUMENT) @FormDataParam("file") InputStream documentStream,
             @FormDataParam("file") FormDataContentDisposition fileMetaData,
             @Parameter(description = ResourceStrings.ENTITIES_TYPES) @QueryParam("type") Set<NlpTagType> types,
+            @Parameter(description = ResourceStrings.ENTITIES_MODEL) @QueryParam("model") String model,
+            @Parameter(description = ResourceStrings.ENTITIES_MALFORMED_INPUT) @DefaultValue("REPLACE") @QueryParam("malformedInput") MalformedInputPolicy malformedInput,
             @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
             @Parameter(description = ResourceStrings.ENTITIES_MIN_CONFIDENCE_PERCENTAGE) @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
             @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_MATCHES) @QueryParam("includeMatches") boolean includeMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_MAX_CONTENT_MATCHES) @QueryParam("maxContentMatches") Integer maxContentMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_TIMINGS) @QueryParam("includeTimings") boolean includeTimings
+    ) throws Exception {
+
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, includeMatches, maxContentMatches)
+                .setMalformedInputPolicy(malformedInput);
+        return extractEntities(documentStream, getContentLengthHint(fileMetaData), params, includeTimings);
+    }
+
+    /**
+     * The same as {@link #extractEntities(InputStream, FormDataContentDisposition, Set, String, MalformedInputPolicy,
+     * int, int, boolean, Integer, boolean)}, but with the document as the whole request body, which is streamed
+     * straight to the recognizer rather than being parsed as (and, if large, spooled to disk as) multipart form
+     * data.  A deflated body is inflated here.  A gzipped body is only accepted if server.gzip is enabled in the
+     * configuration (as it is by default): the server's gzip handler then inflates it before it gets here, so the
+     * request no longer has a Content-Encoding (or a Content-Length) by then.  Otherwise it is refused like any other
+     * unsupported encoding.
+     */
+    @POST
+    @Path("names")
+    @Consumes({MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(MediaType.APPLICATION_JSON)
+    // OpenAPI can't describe two operations on one path, so this is documented along with the multipart form.
+    @Operation(hidden = true)
+    @JacksonFeatures(serializationEnable = {SerializationFeature.INDENT_OUTPUT})
+    public Response extractEntitiesFromBody(
+            InputStream body,
+            @HeaderParam(HttpHeaders.CONTENT_ENCODING) String contentEncoding,
+            @QueryParam("type") Set<NlpTagType> types,
+            @QueryParam("model") String model,
+            @DefaultValue("REPLACE") @QueryParam("malformedInput") MalformedInputPolicy malformedInput,
+            @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
+            @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
+            @QueryParam("includeMatches") boolean includeMatches,
+            @QueryParam("maxContentMatches") Integer maxContentMatches,
+            @QueryParam("includeTimings") boolean includeTimings
+    ) throws Exception {
+
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, includeMatches, maxContentMatches)
+                .setMalformedInputPolicy(malformedInput);
+        try (InputStream documentStream = decodeContent(body, contentEncoding)) {
+            // The length of a compressed body says nothing useful about the length of the document.
+            long contentLengthHint = documentStream == body ? getContentLengthHint(null) : -1;
+            return extractEntities(documentStream, contentLengthHint, params, includeTimings);
+        }
+    }
+
+    private Response extractEntities(InputStream documentStream, long contentLengthHint, NlpRequestParams params,
+                                     boolean includeTimings) throws Exception {
+        // Run on a NER worker rather than the request thread, so a burst of requests queues (or is turned away)
+        // instead of saturating every core.
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout(), getClientConnectedProbe());
+        Map<NlpTagType, NlpTagSet> tagSets = requestExecutor.execute(() -> {
+            StreamingNerRecognizer nerRecognizer = new StreamingNerRecognizer(nerRuntime);
+            nerRecognizer.setContentLengthHint(contentLengthHint);
+            return nerRecognizer.extractEntities(documentStream, params, cancellationToken);
+        }, cancellationToken);
+
+        return withTimings(Response.ok(new NerResult(tagSets)), includeTimings, cancellationToken)
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @POST
+    @Path("names/incremental")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(APPLICATION_NDJSON)
+    @Operation(
+            summary = "Extract named entities from the supplied text, streaming matches as they are found",
+            description = ResourceStrings.ENTITIES_INCREMENTAL_OPERATION_NOTES,
+            responses = {
+                    @ApiResponse(responseCode = "200",
+                            description = "Success",
+                            content = @Content(schema = @Schema(implementation = NerResultFragment.class))),
+                    @ApiResponse(responseCode = "400",
+                            description = "Bad request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "500",
+                            description = "Internal server error",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "503",
+                            description = "Service unavailable",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            })
+    public Response extractEntitiesIncremental(
+            @Parameter(description = ResourceStrings.ENTITIES_DOCUMENT) @FormDataParam("file") InputStream documentStream,
+            @FormDataParam("file") FormDataContentDisposition fileMetaData,
+            @Parameter(description = ResourceStrings.ENTITIES_TYPES) @QueryParam("type") Set<NlpTagType> types,
+            @Parameter(description = ResourceStrings.ENTITIES_MODEL) @QueryParam("model") String model,
+            @Parameter(description = ResourceStrings.ENTITIES_MALFORMED_INPUT) @DefaultValue("REPLACE") @QueryParam("malformedInput") MalformedInputPolicy malformedInput,
+            @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
+            @Parameter(description = ResourceStrings.ENTITIES_MIN_CONFIDENCE_PERCENTAGE) @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
             @Parameter(description = ResourceStrings.ENTITIES_MAX_CONTENT_MATCHES) @QueryParam("maxContentMatches") Integer maxContentMatches
     ) throws Exception {
 
-        NlpRequestParams params = new NlpRequestParams()
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, true, maxContentMatches)
+                .setMalformedInputPolicy(malformedInput);
+
+        // The request is admitted (or rejected) before the response starts, so a busy service still returns a 503.
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout(), getClientConnectedProbe());
+        NerMatchStreamWriter output = new NerMatchStreamWriter(requestExecutor, cancellationToken, objectMapper);
+        long contentLengthHint = getContentLengthHint(fileMetaData);
+        output.start(() -> {
+            StreamingNerRecognizer nerRecognizer = new StreamingNerRecognizer(nerRuntime);
+            nerRecognizer.setContentLengthHint(contentLengthHint);
+            return nerRecognizer.extractEntities(documentStream, params, cancellationToken, output);
+        });
+
+        return Response.ok(output)
+                .type(APPLICATION_NDJSON)
+                .build();
+    }
+
+    @POST
+    @Path("names/file")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            summary = "Extract named entities from a file on the service's host",
+            description = ResourceStrings.ENTITIES_FILE_OPERATION_NOTES,
+            responses = {
+                    @ApiResponse(responseCode = "200",
+                            description = "Success",
+                            content = @Content(schema = @Schema(implementation = NerResult.class))),
+                    @ApiResponse(responseCode = "400",
+                            description = "Bad request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "403",
+                            description = "Forbidden",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "500",
+                            description = "Internal server error",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "503",
+                            description = "Service unavailable",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            })
+    @JacksonFeatures(serializationEnable = {SerializationFeature.INDENT_OUTPUT})
+    public Response extractEntitiesFromFile(
+            @Parameter(description = ResourceStrings.ENTITIES_FILE_PATH) @QueryParam("path") String path,
+            @Parameter(description = ResourceStrings.ENTITIES_TYPES) @QueryParam("type") Set<NlpTagType> types,
+            @Parameter(description = ResourceStrings.ENTITIES_MODEL) @QueryParam("model") String model,
+            @Parameter(description = ResourceStrings.ENTITIES_MALFORMED_INPUT) @DefaultValue("REPLACE") @QueryParam("malformedInput") MalformedInputPolicy malformedInput,
+            @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
+            @Parameter(description = ResourceStrings.ENTITIES_MIN_CONFIDENCE_PERCENTAGE) @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_MATCHES) @QueryParam("includeMatches") boolean includeMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_MAX_CONTENT_MATCHES) @QueryParam("maxContentMatches") Integer maxContentMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_TIMINGS) @QueryParam("includeTimings") boolean includeTimings
+    ) throws Exception {
+
+        if (StringUtils.isBlank(path)) {
+            throw new NerException(ErrorCode.CLIENT_ERROR, "A file path is required");
+        }
+        java.nio.file.Path file = Paths.get(path);
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, includeMatches, maxContentMatches)
+                .setMalformedInputPolicy(malformedInput);
+
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout(), getClientConnectedProbe());
+        Map<NlpTagType, NlpTagSet> tagSets = requestExecutor.execute(
+                () -> new StreamingNerRecognizer(nerRuntime).extractEntities(file, params, cancellationToken),
+                cancellationToken);
+
+        return withTimings(Response.ok(new NerResult(tagSets)), includeTimings, cancellationToken)
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @POST
+    @Path("names/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            summary = "Extract named entities from a batch of documents",
+            description = ResourceStrings.ENTITIES_BATCH_OPERATION_NOTES,
+            responses = {
+                    @ApiResponse(responseCode = "200",
+                            description = "Success",
+                            content = @Content(schema = @Schema(implementation = NerBatchResult.class))),
+                    @ApiResponse(responseCode = "400",
+                            description = "Bad request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "500",
+                            description = "Internal server error",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "503",
+                            description = "Service unavailable",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            })
+    public Response extractEntitiesBatch(
+            @RequestBody(description = ResourceStrings.ENTITIES_BATCH_DOCUMENTS,
+                    content = @Content(schema = @Schema(implementation = NerBatchRequest.class))) InputStream body,
+            @Parameter(description = ResourceStrings.ENTITIES_TYPES) @QueryParam("type") Set<NlpTagType> types,
+            @Parameter(description = ResourceStrings.ENTITIES_MODEL) @QueryParam("model") String model,
+            @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
+            @Parameter(description = ResourceStrings.ENTITIES_MIN_CONFIDENCE_PERCENTAGE) @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_MATCHES) @QueryParam("includeMatches") boolean includeMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_MAX_CONTENT_MATCHES) @QueryParam("maxContentMatches") Integer maxContentMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_TIMINGS) @QueryParam("includeTimings") boolean includeTimings
+    ) throws Exception {
+
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, includeMatches, maxContentMatches);
+        NerBatchRequest batchRequest = readBatchRequest(body);
+        List<NerBatchDocument> documents = batchRequest != null && batchRequest.getDocuments() != null
+                ? batchRequest.getDocuments()
+                : Collections.emptyList();
+        if (documents.size() > maxBatchDocuments) {
+            throw new NerException(ErrorCode.CLIENT_ERROR,
+                    "Batch contains " + documents.size() + " documents, but the maximum is " + maxBatchDocuments);
+        }
+        List<String> texts = documents.stream().map(NerBatchDocument::getText).collect(Collectors.toList());
+
+        // The batch is admitted as a single request, however many documents it contains.
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout(), getClientConnectedProbe());
+        List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = requestExecutor.execute(
+                () -> new NerBatchRecognizer(nerRuntime).extractEntities(texts, params, cancellationToken),
+                cancellationToken);
+
+        List<NerDocumentResult> documentResults = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            documentResults.add(createDocumentResult(documents.get(i).getId(), results.get(i)));
+        }
+
+        return withTimings(Response.ok(new NerBatchResult(documentResults)), includeTimings, cancellationToken)
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @POST
+    @Path("names/stream")
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(APPLICATION_NDJSON)
+    @Operation(
+            summary = "Extract named entities from a stream of documents",
+            description = ResourceStrings.ENTITIES_STREAM_OPERATION_NOTES,
+            responses = {
+                    @ApiResponse(responseCode = "200",
+                            description = "Success",
+                            content = @Content(schema = @Schema(implementation = NerDocumentResult.class))),
+                    @ApiResponse(responseCode = "400",
+                            description = "Bad request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "500",
+                            description = "Internal server error",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "503",
+                            description = "Service unavailable",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            })
+    public Response extractEntitiesStream(
+            @Parameter(description = ResourceStrings.ENTITIES_STREAM_DOCUMENTS) InputStream documentStream,
+            @Parameter(description = ResourceStrings.ENTITIES_TYPES) @QueryParam("type") Set<NlpTagType> types,
+            @Parameter(description = ResourceStrings.ENTITIES_MODEL) @QueryParam("model") String model,
+            @DefaultValue("300") @QueryParam("timeoutSeconds") int timeoutSeconds,
+            @Parameter(description = ResourceStrings.ENTITIES_MIN_CONFIDENCE_PERCENTAGE) @DefaultValue("90") @QueryParam("minConfidencePercentage") int minConfidencePercentage,
+            @Parameter(description = ResourceStrings.ENTITIES_INCLUDE_MATCHES) @QueryParam("includeMatches") boolean includeMatches,
+            @Parameter(description = ResourceStrings.ENTITIES_MAX_CONTENT_MATCHES) @QueryParam("maxContentMatches") Integer maxContentMatches
+    ) throws NerException {
+
+        NlpRequestParams params = createParams(types, model, timeoutSeconds, minConfidencePercentage, includeMatches, maxContentMatches);
+
+        // Each document is admitted as a request in its own right, as it arrives.  The stream itself is admitted (or
+        // rejected) before the response starts, so a busy service still returns a 503.
+        NerDocumentStreamWriter output = new NerDocumentStreamWriter(documentStream, requestExecutor, new NerBatchRecognizer(nerRuntime),
+                params, getClientConnectedProbe(), maxStreamInFlightDocuments, maxBatchSizeBytes, objectMapper);
+        output.start(streamReaderExecutor);
+
+        return Response.ok(output)
+                .type(APPLICATION_NDJSON)
+                .build();
+    }
+
+    /**
+     * The NER pipeline behind this resource, for work that isn't a client request, such as warming up.
+     */
+    public NerRuntime getNerRuntime() {
+        return nerRuntime;
+    }
+
+    public void stop() {
+        streamReaderExecutor.shutdownNow();
+        requestExecutor.shutdown();
+        nerRuntime.shutdown();
+    }
+
+    private static NlpRequestParams createParams(Set<NlpTagType> types, String model, int timeoutSeconds, int minConfidencePercentage,
+                                                 boolean includeMatches, Integer maxContentMatches) throws NerException {
+        // Reject an unknown model up front, rather than part way through the request.
+        NerModelRegistry.getInstance().checkModel(model);
+        return new NlpRequestParams()
+            .setModel(model)
             .setIncludeMatches(includeMatches)
             .setMaxContentMatches(maxContentMatches)
             .setMinConfidencePercentage(minConfidencePercentage)
             .setTagTypes(types)
             .setTimeout(Duration.ofSeconds(timeoutSeconds));
+    }
+
+    /**
+     * Add a Server-Timing header with the time spent in each stage of the request, in milliseconds.
+     */
+    private static Response.ResponseBuilder withTimings(Response.ResponseBuilder response, boolean includeTimings,
+                                                        NerCancellationToken cancellationToken) {
+        if (!includeTimings) {
+            return response;
+        }
+        NerRequestStats stats = cancellationToken.getStats();
+        String timings = Arrays.stream(NerRequestStats.Stage.values())
+                .map(stage -> String.format(Locale.ROOT, "%s;dur=%.1f",
+                        stage.name().toLowerCase(Locale.ROOT), stats.getStageNanos(stage) / 1e6))
+                .collect(Collectors.joining(", "));
+        return response.header(SERVER_TIMING_HEADER, timings);
+    }
 
-        StreamingNerRecognizer nerRecognizer = new StreamingNerRecognizer(settings.getNerSettings());
-        Map<NlpTagType, NlpTagSet> tagSets = nerRecognizer.extractEntities(documentStream, params);
+    private static NerDocumentResult createDocumentResult(String id, CompletableFuture<Map<NlpTagType, NlpTagSet>> result) {
+        try {
+            return new NerDocumentResult(id, result.join());
+        } catch (CompletionException e) {
+            Exception cause = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+            return new NerDocumentResult(id, ResourceExceptionMapper.toErrorResponse(cause));
+        }
+    }
 
-        return Response.ok(new NerResult(tagSets))
-                .type(MediaType.APPLICATION_JSON)
+    /**
+     * Reads the batch here, rather than leaving it to the JSON provider, so that its size is checked as it's read
+     * (after any gzip has been inflated) and a batch that's too large is never built in memory.
+     */
+    private NerBatchRequest readBatchRequest(InputStream body) throws IOException, NerException {
+        try (JsonParser parser = batchRequestReader.createParser(body)) {
+            // An empty body is an empty batch.
+            return parser.nextToken() == null ? null : batchRequestReader.readValue(parser);
+        } catch (JsonProcessingException e) {
+            if (ExceptionUtils.indexOfType(e, StreamConstraintsException.class) >= 0) {
+                throw new NerException(ErrorCode.CONTENT_TOO_LARGE,
+                        "Batch is larger than the maximum of " + maxBatchSizeBytes + " bytes");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Document streams each read their feed on a thread from this pool.  There's no queue: a stream is only
+     * accepted if a thread is free.
+     */
+    private static ExecutorService createStreamReaderExecutor(int maxOpenStreams) {
+        int threads = Math.max(1, maxOpenStreams);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                new NlpThreadFactory("NER Document Stream Reader"));
+    }
+
+    private static ObjectReader createBatchRequestReader(ObjectMapper objectMapper, long maxBatchSizeBytes) {
+        JsonFactory jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxDocumentLength(maxBatchSizeBytes).build())
                 .build();
+        return objectMapper.copyWith(jsonFactory).readerFor(NerBatchRequest.class);
     }
 
+    /**
+     * Inflate a deflated body.  Gzip never gets this far, as the server's gzip handler has already inflated it, and
+     * any other encoding is refused.  That includes zstd, as the JDK has no zstd decoder and this build doesn't
+     * include a zstd library.  A pure-Java decoder (such as aircompressor's) could be added as another case here,
+     * since the recognizer's size limit applies to whatever stream is returned.
+     *
+     * @throws NotSupportedException if the encoding isn't supported.
+     */
+    private static InputStream decodeContent(InputStream body, String contentEncoding) throws IOException {
+        if (StringUtils.isBlank(contentEncoding)) {
+            return body;
+        }
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity":
+                return body;
+            case "deflate":
+                return new InflaterInputStream(body, new Inflater(), DECOMPRESSION_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inf.end();
+                    }
+                };
+            default:
+                throw new NotSupportedException("Unsupported Content-Encoding " + contentEncoding);
+        }
+    }
+
+    /**
+     * An upper bound on the length of the document, so that small documents aren't read into a full size buffer.
+     * The size of the file part is used if the client gave it, otherwise the length of the whole request.  Resolved
+     * on the request thread, like {@link #getClientConnectedProbe()}.
+     *
+     * @return The length in bytes, or -1 if unknown.
+     */
+    private long getContentLengthHint(FormDataContentDisposition fileMetaData) {
+        if (fileMetaData != null && fileMetaData.getSize() > 0) {
+            return fileMetaData.getSize();
+        }
+        Request request = getCurrentRequest();
+        return request != null ? request.getContentLengthLong() : -1;
+    }
+
+    /**
+     * Best effort detection of the client going away.  The connection is resolved here, on the request thread,
+     * because the NER work (and therefore the polling) happens on a different thread.  Jetty only notices a closed
+     * connection when it next reads or writes, so this catches disconnects during upload more reliably than those
+     * during classification.
+     */
+    private BooleanSupplier getClientConnectedProbe() {
+        Request request = getCurrentRequest();
+        if (request == null || request.getHttpChannel() == null) {
+            return () -> true;
+        }
+        EndPoint endPoint = request.getHttpChannel().getEndPoint();
+        return endPoint::isOpen;
+    }
+
+    /**
+     * The request being handled on this thread, or null if there isn't one (e.g. for the health check).  Jersey
+     * doesn't inject request objects into the fields of a resource that is registered as an instance, so we ask
+     * Jetty for the request on the current connection instead.
+     */
+    private static Request getCurrentRequest() {
+        HttpConnection connection = HttpConnection.getCurrentConnection();
+        return connection != null ? connection.getHttpChannel().getRequest() : null;
+    }
 }
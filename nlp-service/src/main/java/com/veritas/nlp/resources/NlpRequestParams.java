@@ -1,7 +1,9 @@
 package com.veritas.nlp.resources;
 
+import com.veritas.nlp.models.MalformedInputPolicy;
 import com.veritas.nlp.models.NlpTagType;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import java.time.Duration;
 import java.util.EnumSet;
@@ -13,6 +15,8 @@ public class NlpRequestParams {
     private boolean includeMatches;
     private Integer maxContentMatches = 100;
     private EnumSet<NlpTagType> tagTypes = EnumSet.allOf(NlpTagType.class);
+    private String model;
+    private MalformedInputPolicy malformedInputPolicy = MalformedInputPolicy.REPLACE;
 
     public Duration getTimeout() {
         return timeout;
@@ -62,4 +66,27 @@ public class NlpRequestParams {
         }
         return this;
     }
+
+    /**
+     * @return The name of the NER model to use, or null for the default model.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    public NlpRequestParams setModel(String model) {
+        this.model = StringUtils.isNotBlank(model) ? model : null;
+        return this;
+    }
+
+    public MalformedInputPolicy getMalformedInputPolicy() {
+        return malformedInputPolicy;
+    }
+
+    public NlpRequestParams setMalformedInputPolicy(MalformedInputPolicy malformedInputPolicy) {
+        if (malformedInputPolicy != null) {
+            this.malformedInputPolicy = malformedInputPolicy;
+        }
+        return this;
+    }
 }
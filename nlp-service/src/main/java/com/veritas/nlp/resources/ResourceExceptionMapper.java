@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipException;
 
 public class ResourceExceptionMapper implements ExceptionMapper<Exception> {
     private static final Logger LOG = LoggerFactory.getLogger(ResourceExceptionMapper.class);
@@ -39,6 +40,13 @@ public class ResourceExceptionMapper implements ExceptionMapper<Exception> {
         return response;
     }
 
+    /**
+     * Map an exception to an error response body, e.g. to report a failure of part of a request.
+     */
+    static ErrorResponse toErrorResponse(Exception exception) {
+        return (ErrorResponse)new ResourceExceptionMapper().toResponse(exception).getEntity();
+    }
+
     private static Response mapResponse(Throwable throwable) {
         if (throwable instanceof ExceptionContext && throwable.getCause() != null) {
             throwable = throwable.getCause();
@@ -51,6 +59,10 @@ public class ResourceExceptionMapper implements ExceptionMapper<Exception> {
             // know that the problem is with the json.
             return buildResponse(Status.BAD_REQUEST, "Invalid json");
         }
+        else if (throwable instanceof ZipException) {
+            // A compressed request body that can't be decompressed.
+            return buildResponse(Status.BAD_REQUEST, "Invalid compressed content");
+        }
         else if (throwable instanceof NotFoundException) {
             return buildResponse(Status.NOT_FOUND);
         }
@@ -111,6 +123,11 @@ public class ResourceExceptionMapper implements ExceptionMapper<Exception> {
             case CLIENT_ERROR:
             case CONTENT_TOO_LARGE:
                 return Status.BAD_REQUEST;
+            case FORBIDDEN:
+                return Status.FORBIDDEN;
+            case SERVICE_BUSY:
+            case CANCELLED:
+                return Status.SERVICE_UNAVAILABLE;
             default:
                 return Status.INTERNAL_SERVER_ERROR;
         }
@@ -2,12 +2,28 @@ package com.veritas.nlp.resources;
 
 interface ResourceStrings {
     String ENTITIES_OPERATION_NOTES =
-            "Extract named entities from the specified text.  Currently supports people, locations and organizations.";
+            "Extract named entities from the specified text.  The default model finds people, locations and organizations; " +
+            "other models can find more.\n\n" +
+            "Instead of a multipart form, the document can be sent as the whole request body, with a Content-Type of " +
+            "text/plain or application/octet-stream.  This is faster for large documents.  The encoding rules are " +
+            "the same (any charset parameter is ignored), and the body can be compressed with a Content-Encoding of " +
+            "deflate.  A Content-Encoding of gzip is also accepted if the service has gzip enabled (server.gzip in its " +
+            "configuration, which it is by default); otherwise gzip bodies are rejected with a 415 response.  The size " +
+            "limit applies to the decompressed text.\n\n" +
+            "Responses are compressed for clients that send an Accept-Encoding of gzip.";
     String ENTITIES_DOCUMENT =
             "The text document to extract entities from.  Must be UTF-8, UTF-16LE, UTF-16BE, UTF-32LE or UTF-32BE.\n\n" +
             "If the text is anything other than UTF-8, a byte order mark MUST be used.";
     String ENTITIES_TYPES =
-            "Entities to extract.  Can be one or more of PERSON, LOCATION and ORGANIZATION.  If not specified, all entities are returned.";
+            "Entities to extract.  Can be one or more of PERSON, LOCATION, ORGANIZATION, MISC, MONEY, PERCENT, DATE and TIME, " +
+            "though each model only finds some of these.  If not specified, all entities are returned.";
+    String ENTITIES_MODEL =
+            "The NER model to use, as configured on the service.  The bundled models are english.all.3class (people, " +
+            "locations and organizations), english.conll.4class (which adds MISC) and english.muc.7class (which adds " +
+            "MONEY, PERCENT, DATE and TIME).  If not specified, the service's default model is used.";
+    String ENTITIES_MALFORMED_INPUT =
+            "What to do with bytes that aren't valid in the document's encoding: REPLACE them with U+FFFD, IGNORE " +
+            "them, or REJECT the document with a 400 response.";
     String ENTITIES_MIN_CONFIDENCE_PERCENTAGE =
             "Minimum confidence for named entities to be returned.  A higher percentage reduces the risk of false positives " +
             "(incorrect names) but increases the risk of false negatives (missed names).";
@@ -15,4 +31,35 @@ interface ResourceStrings {
             "If true, information about the location / context of the matches is included in the results.";
     String ENTITIES_MAX_CONTENT_MATCHES =
             "Maximum number of content matches to return, per tag set.  Only relevant if includeMatches=true.";
+    String ENTITIES_INCREMENTAL_OPERATION_NOTES =
+            "Extract named entities from the specified text, with match details, streaming the matches back as " +
+            "newline delimited JSON as soon as they are found.  The last line holds the de-duplicated entities and " +
+            "match totals, or an error if processing failed part way through.  Use this for very large documents, to " +
+            "get the first matches sooner.";
+    String ENTITIES_INCLUDE_TIMINGS =
+            "If true, a Server-Timing response header breaks down where the time went (queued, reading, splitting, " +
+            "tokenizing, classifying and confidence scoring).  Stage times are summed across worker threads.";
+    String ENTITIES_FILE_OPERATION_NOTES =
+            "Extract named entities from a text file on the service's host, for clients running on the same host.  " +
+            "This avoids uploading the file, and the file is read from the page cache, so it is much faster for large " +
+            "files.  Only files under the allowed roots configured on the service can be read.";
+    String ENTITIES_FILE_PATH =
+            "Absolute path of the file.  The encoding rules are the same as for an uploaded document.";
+    String ENTITIES_BATCH_OPERATION_NOTES =
+            "Extract named entities from each of a batch of documents.  This is much more efficient than making a " +
+            "request per document when there are lots of small documents.  Each document has its own result, " +
+            "identified by the id supplied with the document.  If extraction fails for a document, its result " +
+            "contains an error instead of entities; other documents are unaffected.  The size of the batch is limited " +
+            "(after any decompression), and a larger batch is rejected as it's read.";
+    String ENTITIES_BATCH_DOCUMENTS =
+            "The documents to extract entities from, each with an id.";
+    String ENTITIES_STREAM_OPERATION_NOTES =
+            "Extract named entities from a stream of documents, supplied as newline delimited JSON (one document, with " +
+            "an id and text, per line).  Results are streamed back as newline delimited JSON, one line per document, " +
+            "in the same order as the documents, as soon as each is available.  Use this for feeds of documents that " +
+            "are too large (or arrive too slowly) to send as a single batch.  The timeout applies to each document " +
+            "separately.  If extraction fails for a document, its result contains an error instead of entities.  Each " +
+            "document's line is limited to the same size as a batch; a longer line ends the stream with an error.";
+    String ENTITIES_STREAM_DOCUMENTS =
+            "Newline delimited JSON documents, each with an id and text.";
 }
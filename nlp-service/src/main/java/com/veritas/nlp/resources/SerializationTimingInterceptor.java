@@ -0,0 +1,46 @@
+package com.veritas.nlp.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.veritas.nlp.models.NerBatchResult;
+import com.veritas.nlp.models.NerResult;
+import com.veritas.nlp.ner.NerMetrics;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Times the serialization of NER results, alongside the other NER stage timers.  Other responses, including the
+ * streamed ones (writing them includes the processing itself), are left alone.
+ * <p>
+ * Results are serialized into a buffer, which is then written to the client, so that the time taken by the client
+ * (and the network) to accept the response isn't counted as serialization.
+ */
+public class SerializationTimingInterceptor implements WriterInterceptor {
+    private final Timer serializeTimer;
+
+    public SerializationTimingInterceptor(MetricRegistry metrics) {
+        this.serializeTimer = metrics.timer(MetricRegistry.name(NerMetrics.class, "stage", "serialize"));
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        if (!(context.getEntity() instanceof NerResult || context.getEntity() instanceof NerBatchResult)) {
+            context.proceed();
+            return;
+        }
+        OutputStream output = context.getOutputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        context.setOutputStream(buffer);
+        try (Timer.Context ignored = serializeTimer.time()) {
+            context.proceed();
+        } finally {
+            context.setOutputStream(output);
+        }
+        buffer.writeTo(output);
+    }
+}
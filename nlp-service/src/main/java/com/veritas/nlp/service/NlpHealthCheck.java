@@ -1,34 +1,54 @@
 package com.veritas.nlp.service;
 
 import com.codahale.metrics.health.HealthCheck;
+import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
-import com.veritas.nlp.resources.NerResource;
-import jakarta.ws.rs.core.Response;
-import org.eclipse.jetty.http.HttpStatus;
+import com.veritas.nlp.ner.NerRuntime;
+import com.veritas.nlp.ner.StreamingNerRecognizer;
+import com.veritas.nlp.resources.NlpRequestParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.EnumSet;
+import java.util.Map;
+import java.util.function.Supplier;
 
+/**
+ * Checks that named entity recognition works.  The check runs on the recognizer directly rather than through the
+ * resource, so it isn't subject to admission control: a service that is busy turning requests away is still
+ * healthy, and mustn't be restarted for it.
+ */
 class NlpHealthCheck extends HealthCheck {
     private static final Logger LOG = LoggerFactory.getLogger(NlpHealthCheck.class);
     private static final int NER_TIMEOUT_SECONDS = 300;
-    private final NerResource nerResource;
+    private static final String NAME = "Sue Smith";
+    private final Supplier<StreamingNerRecognizer> recognizerFactory;
 
-    NlpHealthCheck(NerResource nerResource) {
-        this.nerResource = nerResource;
+    NlpHealthCheck(NerRuntime runtime) {
+        // Without the caches, so that the check really is classified each time.
+        this(createRecognizerFactory(runtime.withoutCaches()));
+    }
+
+    NlpHealthCheck(Supplier<StreamingNerRecognizer> recognizerFactory) {
+        this.recognizerFactory = recognizerFactory;
     }
 
     @Override
     protected Result check() {
         try {
-            try (InputStream content = new ByteArrayInputStream("My name is Sue Smith".getBytes(StandardCharsets.UTF_8))) {
-                Response response = nerResource.extractEntities(content, null, EnumSet.of(NlpTagType.PERSON), NER_TIMEOUT_SECONDS, 90, false, 0);
-                if (response.getStatus() != HttpStatus.OK_200) {
-                    return Result.unhealthy("Named entity recognition failed with status " + response.getStatus());
+            try (InputStream content = new ByteArrayInputStream(("My name is " + NAME).getBytes(StandardCharsets.UTF_8))) {
+                NlpRequestParams params = new NlpRequestParams()
+                        .setTagTypes(EnumSet.of(NlpTagType.PERSON))
+                        .setMinConfidencePercentage(90)
+                        .setTimeout(Duration.ofSeconds(NER_TIMEOUT_SECONDS));
+                Map<NlpTagType, NlpTagSet> entities = recognizerFactory.get().extractEntities(content, params);
+                NlpTagSet names = entities.get(NlpTagType.PERSON);
+                if (names == null || !names.getTags().contains(NAME)) {
+                    return Result.unhealthy("Named entity recognition failed to find the name " + NAME);
                 }
                 LOG.info("Healthy");
                 return Result.healthy();
@@ -38,4 +58,8 @@ class NlpHealthCheck extends HealthCheck {
             return Result.unhealthy(e);
         }
     }
+
+    private static Supplier<StreamingNerRecognizer> createRecognizerFactory(NerRuntime runtime) {
+        return () -> new StreamingNerRecognizer(runtime);
+    }
 }
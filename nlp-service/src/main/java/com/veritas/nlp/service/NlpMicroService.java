@@ -1,8 +1,10 @@
 package com.veritas.nlp.service;
 
+import com.veritas.nlp.ner.StreamingNerRecognizer;
 import com.veritas.nlp.resources.ApiRoot;
 import com.veritas.nlp.resources.NerResource;
 import com.veritas.nlp.resources.ResourceExceptionMapper;
+import com.veritas.nlp.resources.SerializationTimingInterceptor;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
@@ -14,6 +16,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.NetworkConnector;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.server.ServerProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -94,12 +97,26 @@ public class NlpMicroService extends Application<NlpConfiguration> {
     }
 
     private void setupRegistrations() throws Exception {
-        NerResource nerResource = new NerResource(settings);
+        StreamingNerRecognizer.configureModels(settings.getNerSettings());
+        NerResource nerResource = new NerResource(settings, environment.metrics(), environment.getObjectMapper());
+        environment.lifecycle().manage(new Managed() {
+            @Override public void stop() {
+                nerResource.stop();
+            }
+        });
         environment.jersey().register(new ResourceExceptionMapper());
+        environment.jersey().register(new SerializationTimingInterceptor(environment.metrics()));
         environment.jersey().register(nerResource);
         environment.jersey().register(new ApiRoot());
         environment.jersey().register(MultiPartFeature.class);
-        environment.healthChecks().register("NLP health check", new NlpHealthCheck(nerResource));
+        // Jersey buffers the first 8KB of each response (to set Content-Length), ignoring flushes until it's full,
+        // which would hold back the first results of the NDJSON streams.
+        environment.jersey().property(ServerProperties.OUTBOUND_CONTENT_LENGTH_BUFFER, 0);
+        environment.healthChecks().register("NLP health check", new NlpHealthCheck(nerResource.getNerRuntime()));
+
+        NlpWarmup warmup = new NlpWarmup(nerResource.getNerRuntime(), settings.getNerSettings().getNerWarmup());
+        environment.lifecycle().manage(warmup);
+        environment.admin().addServlet("ready", new NlpReadinessServlet(warmup)).addMapping("/ready");
     }
 
     private void setupLoggingFilter() {
@@ -0,0 +1,31 @@
+package com.veritas.nlp.service;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Admin endpoint reporting whether the service is ready to take traffic, i.e. it has finished warming up.  This is
+ * separate from the health check, which reports whether the service is alive.
+ */
+class NlpReadinessServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private final transient NlpWarmup warmup;
+
+    NlpReadinessServlet(NlpWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean ready = warmup.isReady();
+        response.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType("text/plain");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        response.getWriter().println(ready ? "ready" : "warming up");
+    }
+}
@@ -0,0 +1,136 @@
+package com.veritas.nlp.service;
+
+import com.veritas.nlp.ner.NerRuntime;
+import com.veritas.nlp.ner.NerWarmupSettings;
+import com.veritas.nlp.ner.StreamingNerRecognizer;
+import com.veritas.nlp.resources.NlpRequestParams;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Gets the service up to speed before it is reported as ready.  The NER models are loaded at startup rather than
+ * on the first request, then a warm-up corpus is run through the full NER pipeline until the time taken settles
+ * down (i.e. the JIT has done its work).  The result and sentence caches are bypassed, as otherwise every iteration
+ * after the first would be served from them, and the classifier would never be warmed up.
+ * <p>
+ * This runs in the background, so the service is live (and the health check passes) while warming up.  Readiness
+ * is reported separately by {@link NlpReadinessServlet}, so that load balancers only send traffic once the service
+ * is running at full speed.
+ */
+class NlpWarmup implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(NlpWarmup.class);
+    private static final int NER_TIMEOUT_SECONDS = 300;
+    private final Supplier<StreamingNerRecognizer> recognizerFactory;
+    private final NerWarmupSettings settings;
+    private volatile boolean ready;
+    private volatile boolean stopping;
+    private volatile int completedIterations;
+    private Thread warmupThread;
+
+    NlpWarmup(NerRuntime runtime, NerWarmupSettings settings) {
+        this(createRecognizerFactory(runtime.withoutCaches()), settings);
+    }
+
+    NlpWarmup(Supplier<StreamingNerRecognizer> recognizerFactory, NerWarmupSettings settings) {
+        this.recognizerFactory = recognizerFactory;
+        this.settings = settings;
+    }
+
+    @Override
+    public void start() {
+        warmupThread = new NlpThreadFactory("NER Warm-up").newThread(() -> {
+            loadModels();
+            warmUp();
+        });
+        warmupThread.start();
+    }
+
+    @Override
+    public void stop() {
+        stopping = true;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    int getCompletedIterations() {
+        return completedIterations;
+    }
+
+    void loadModels() {
+        long start = System.nanoTime();
+        StreamingNerRecognizer.loadModels();
+        LOG.info("Loaded NER models in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Run the warm-up corpus repeatedly until the time taken is stable for a few iterations in a row.  The service
+     * is marked as ready however this ends - failing to warm up just means the first few requests are slower.
+     */
+    void warmUp() {
+        try {
+            if (settings.isEnabled()) {
+                byte[] corpus = readCorpus();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getMaxDurationSeconds());
+                long previousMillis = -1;
+                int settledCount = 0;
+
+                for (int i = 1; i <= settings.getMaxIterations() && !stopping && System.nanoTime() < deadline; i++) {
+                    long millis = runCorpus(corpus);
+                    completedIterations = i;
+                    LOG.debug("Warm-up iteration {} took {}ms", i, millis);
+
+                    settledCount = isSettled(previousMillis, millis) ? settledCount + 1 : 0;
+                    if (settledCount >= settings.getSettledIterations()) {
+                        LOG.info("NER warm-up settled after {} iterations ({}ms per iteration)", i, millis);
+                        break;
+                    }
+                    previousMillis = millis;
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("NER warm-up failed", e);
+        } finally {
+            ready = true;
+            LOG.info("Ready");
+        }
+    }
+
+    private boolean isSettled(long previousMillis, long millis) {
+        if (previousMillis < 0) {
+            return false;
+        }
+        return Math.abs(millis - previousMillis) * 100 <= previousMillis * settings.getSettledTolerancePercent();
+    }
+
+    private long runCorpus(byte[] corpus) throws Exception {
+        long start = System.nanoTime();
+        try (InputStream content = new ByteArrayInputStream(corpus)) {
+            NlpRequestParams params = new NlpRequestParams()
+                    .setIncludeMatches(true)
+                    .setMinConfidencePercentage(90)
+                    .setTimeout(Duration.ofSeconds(NER_TIMEOUT_SECONDS));
+            recognizerFactory.get().extractEntities(content, params);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static Supplier<StreamingNerRecognizer> createRecognizerFactory(NerRuntime runtime) {
+        return () -> new StreamingNerRecognizer(runtime);
+    }
+
+    private byte[] readCorpus() throws Exception {
+        try (InputStream corpus = new FileOrClassPathConfigurationSourceProvider().open(settings.getCorpusPath())) {
+            return IOUtils.toByteArray(corpus);
+        }
+    }
+}
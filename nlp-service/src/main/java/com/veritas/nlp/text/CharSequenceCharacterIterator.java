@@ -0,0 +1,100 @@
+package com.veritas.nlp.text;
+
+import java.text.CharacterIterator;
+
+/**
+ * A {@link CharacterIterator} over any {@link CharSequence}, e.g. a {@link StringBuilder}.  Unlike
+ * {@link java.text.StringCharacterIterator} the text is not copied, so it can be used to run a
+ * {@link java.text.BreakIterator} over a buffer without first converting the whole buffer to a String.
+ * <p>
+ * The underlying sequence must not be modified while the iterator is in use.
+ */
+public class CharSequenceCharacterIterator implements CharacterIterator {
+    private final CharSequence text;
+    private final int begin;
+    private final int end;
+    private int pos;
+
+    public CharSequenceCharacterIterator(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    public CharSequenceCharacterIterator(CharSequence text, int begin, int end) {
+        if (begin < 0 || begin > end || end > text.length()) {
+            throw new IllegalArgumentException("Invalid range " + begin + "-" + end + " for text of length " + text.length());
+        }
+        this.text = text;
+        this.begin = begin;
+        this.end = end;
+        this.pos = begin;
+    }
+
+    @Override
+    public char first() {
+        pos = begin;
+        return current();
+    }
+
+    @Override
+    public char last() {
+        pos = end > begin ? end - 1 : end;
+        return current();
+    }
+
+    @Override
+    public char current() {
+        return pos >= begin && pos < end ? text.charAt(pos) : DONE;
+    }
+
+    @Override
+    public char next() {
+        if (pos < end - 1) {
+            pos++;
+            return text.charAt(pos);
+        }
+        pos = end;
+        return DONE;
+    }
+
+    @Override
+    public char previous() {
+        if (pos <= begin) {
+            return DONE;
+        }
+        pos--;
+        return text.charAt(pos);
+    }
+
+    @Override
+    public char setIndex(int position) {
+        if (position < begin || position > end) {
+            throw new IllegalArgumentException("Invalid index " + position);
+        }
+        pos = position;
+        return current();
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return begin;
+    }
+
+    @Override
+    public int getEndIndex() {
+        return end;
+    }
+
+    @Override
+    public int getIndex() {
+        return pos;
+    }
+
+    @Override
+    public CharSequenceCharacterIterator clone() {
+        try {
+            return (CharSequenceCharacterIterator)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
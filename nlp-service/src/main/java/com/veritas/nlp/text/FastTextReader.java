@@ -0,0 +1,244 @@
+package com.veritas.nlp.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Decodes UTF-8 or UTF-16 text from a stream, as {@link java.io.InputStreamReader} does, but faster.
+ * <p>
+ * InputStreamReader goes through a general purpose CharsetDecoder, copying through several internal buffers on the
+ * way, which adds up to a surprising share of the CPU on large documents.  This decodes straight from a byte buffer
+ * supplied by the caller (so that it can be pooled) into the caller's char buffer, and runs of ASCII - most of a
+ * typical document - are copied with no further checks.
+ * <p>
+ * Malformed input is handled as the JDK decoders handle it: each maximal ill-formed sequence is replaced by U+FFFD,
+ * ignored, or reported with a {@link MalformedInputException}, depending on the action given.
+ * <p>
+ * Not thread safe.
+ */
+public class FastTextReader extends Reader {
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+    private static final int MAX_SEQUENCE_BYTES = 4;
+
+    private enum Encoding {
+        UTF_8,
+        UTF_16BE,
+        UTF_16LE
+    }
+
+    private final InputStream in;
+    private final Encoding encoding;
+    private final CodingErrorAction malformedInputAction;
+    private final byte[] bytes;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    // The second half of a surrogate pair that didn't fit in the caller's buffer.
+    private int pendingChar = -1;
+
+    /**
+     * @param buffer Bytes are read into this buffer, which must hold at least 4 bytes.
+     */
+    public FastTextReader(InputStream in, Charset charset, byte[] buffer, CodingErrorAction malformedInputAction) {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Unsupported charset " + charset);
+        }
+        if (buffer.length < MAX_SEQUENCE_BYTES) {
+            throw new IllegalArgumentException("Buffer must hold at least " + MAX_SEQUENCE_BYTES + " bytes");
+        }
+        this.in = in;
+        this.encoding = charset.equals(StandardCharsets.UTF_8) ? Encoding.UTF_8
+                : charset.equals(StandardCharsets.UTF_16BE) ? Encoding.UTF_16BE
+                : Encoding.UTF_16LE;
+        this.bytes = buffer;
+        this.malformedInputAction = malformedInputAction;
+    }
+
+    public static boolean isSupported(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.UTF_16BE)
+                || charset.equals(StandardCharsets.UTF_16LE);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cbuf.length);
+        if (len == 0) {
+            return 0;
+        }
+        int end = off + len;
+        int o = off;
+        if (pendingChar >= 0) {
+            cbuf[o++] = (char)pendingChar;
+            pendingChar = -1;
+        }
+        while (true) {
+            o = encoding == Encoding.UTF_8 ? decodeUtf8(cbuf, o, end) : decodeUtf16(cbuf, o, end);
+            if (o == end || endOfInput) {
+                break;
+            }
+            // Like InputStreamReader, only wait for more input if we have nothing to return yet.
+            if (o > off && in.available() <= 0) {
+                break;
+            }
+            fill();
+        }
+        return o == off ? -1 : o - off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Read more bytes, keeping any left over from an incomplete sequence at the end of the buffer.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        System.arraycopy(bytes, position, bytes, 0, remaining);
+        position = 0;
+        limit = remaining;
+        int read = in.read(bytes, limit, bytes.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private int decodeUtf8(char[] out, int o, int end) throws MalformedInputException {
+        byte[] b = bytes;
+        int p = position;
+        while (o < end && p < limit) {
+            // Runs of ASCII are by far the commonest case.
+            int asciiEnd = Math.min(limit, p + (end - o));
+            while (p < asciiEnd && b[p] >= 0) {
+                out[o++] = (char)b[p++];
+            }
+            if (p == asciiEnd) {
+                continue;
+            }
+
+            int b0 = b[p] & 0xFF;
+            int length = b0 >= 0xC2 && b0 <= 0xDF ? 2 : b0 >= 0xE0 && b0 <= 0xEF ? 3 : b0 >= 0xF0 && b0 <= 0xF4 ? 4 : 1;
+            int valid = 1;
+            while (valid < length && p + valid < limit && isValidContinuation(b0, valid, b[p + valid])) {
+                valid++;
+            }
+            if (length == 1 || (valid < length && p + valid < limit)) {
+                // Not a lead byte, or a lead byte followed by a byte that can't continue its sequence.
+                o = malformed(out, o, valid);
+                p += valid;
+            } else if (valid < length) {
+                // So far so good, but incomplete.
+                if (!endOfInput) {
+                    break;
+                }
+                o = malformed(out, o, valid);
+                p += valid;
+            } else if (length == 2) {
+                out[o++] = (char)(((b0 & 0x1F) << 6) | (b[p + 1] & 0x3F));
+                p += 2;
+            } else if (length == 3) {
+                char c = (char)(((b0 & 0x0F) << 12) | ((b[p + 1] & 0x3F) << 6) | (b[p + 2] & 0x3F));
+                if (Character.isSurrogate(c)) {
+                    o = malformed(out, o, 3);
+                } else {
+                    out[o++] = c;
+                }
+                p += 3;
+            } else {
+                int codePoint = ((b0 & 0x07) << 18) | ((b[p + 1] & 0x3F) << 12) | ((b[p + 2] & 0x3F) << 6) | (b[p + 3] & 0x3F);
+                o = putSurrogatePair(out, o, end, Character.highSurrogate(codePoint), Character.lowSurrogate(codePoint));
+                p += 4;
+            }
+        }
+        position = p;
+        return o;
+    }
+
+    /**
+     * @param index The position of the byte in the sequence, from 1 (the byte after the lead byte).
+     */
+    private static boolean isValidContinuation(int leadByte, int index, byte continuation) {
+        int c = continuation & 0xFF;
+        if (index == 1) {
+            // Exclude overlong forms and code points beyond U+10FFFF.  Like the JDK decoder, encoded surrogates are
+            // only rejected once complete, as a single malformed sequence.
+            switch (leadByte) {
+                case 0xE0: return c >= 0xA0 && c <= 0xBF;
+                case 0xF0: return c >= 0x90 && c <= 0xBF;
+                case 0xF4: return c >= 0x80 && c <= 0x8F;
+                default: break;
+            }
+        }
+        return c >= 0x80 && c <= 0xBF;
+    }
+
+    private int decodeUtf16(char[] out, int o, int end) throws MalformedInputException {
+        int p = position;
+        while (o < end && p + 1 < limit) {
+            char c = getUtf16Char(p);
+            if (!Character.isSurrogate(c)) {
+                out[o++] = c;
+                p += 2;
+            } else if (Character.isLowSurrogate(c)) {
+                o = malformed(out, o, 2);
+                p += 2;
+            } else if (p + 3 >= limit) {
+                if (!endOfInput) {
+                    break;
+                }
+                o = malformed(out, o, limit - p);
+                p = limit;
+            } else if (!Character.isLowSurrogate(getUtf16Char(p + 2))) {
+                // As with the JDK decoder, the char after an unpaired high surrogate goes with it.
+                o = malformed(out, o, 4);
+                p += 4;
+            } else {
+                o = putSurrogatePair(out, o, end, c, getUtf16Char(p + 2));
+                p += 4;
+            }
+        }
+        if (endOfInput && o < end && p + 1 == limit) {
+            // An odd byte out at the end.
+            o = malformed(out, o, 1);
+            p++;
+        }
+        position = p;
+        return o;
+    }
+
+    private char getUtf16Char(int p) {
+        return encoding == Encoding.UTF_16BE
+                ? (char)((bytes[p] << 8) | (bytes[p + 1] & 0xFF))
+                : (char)((bytes[p + 1] << 8) | (bytes[p] & 0xFF));
+    }
+
+    private int putSurrogatePair(char[] out, int o, int end, char high, char low) {
+        out[o++] = high;
+        if (o < end) {
+            out[o++] = low;
+        } else {
+            pendingChar = low;
+        }
+        return o;
+    }
+
+    private int malformed(char[] out, int o, int length) throws MalformedInputException {
+        if (malformedInputAction == CodingErrorAction.REPORT) {
+            throw new MalformedInputException(length);
+        }
+        if (malformedInputAction == CodingErrorAction.REPLACE) {
+            out[o++] = REPLACEMENT_CHAR;
+        }
+        return o;
+    }
+}
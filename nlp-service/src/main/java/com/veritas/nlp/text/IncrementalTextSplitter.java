@@ -0,0 +1,106 @@
+package com.veritas.nlp.text;
+
+import java.text.BreakIterator;
+import java.util.Locale;
+
+/**
+ * Splits a stream of text into chunks in the same way as {@link SmartTextSplitter}, but incrementally.  Text is
+ * appended as it arrives and complete chunks are taken off the front as soon as they are available.
+ * <p>
+ * Only the text after the last chunk is ever searched for a boundary, and the break iterators are reused, so the
+ * cost of splitting is proportional to the total amount of text rather than to the number of chunks multiplied by the
+ * buffer size.  This matters for clients that send content in lots of small writes.
+ * <p>
+ * Not thread safe.
+ */
+public class IncrementalTextSplitter {
+    private final StringBuilder buffer = new StringBuilder();
+    private final BreakIterator sentenceIterator;
+    private final BreakIterator wordIterator;
+    private int chunkSize;
+    private final int maxChunkAdjustment;
+    private int chunkStart;
+
+    public IncrementalTextSplitter(Locale textLanguage, int chunkSize, int maxChunkAdjustment) {
+        this.sentenceIterator = BreakIterator.getSentenceInstance(textLanguage);
+        this.wordIterator = BreakIterator.getWordInstance(textLanguage);
+        this.chunkSize = chunkSize;
+        this.maxChunkAdjustment = maxChunkAdjustment;
+    }
+
+    /**
+     * Change the size of subsequent chunks.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Discard all the text, so that the splitter can be reused for another document.  The buffer keeps its capacity
+     * unless that is more than {@code maxRetainedChars}, so one very large document doesn't pin a large buffer.
+     */
+    public void reset(int maxRetainedChars) {
+        buffer.setLength(0);
+        if (buffer.capacity() > maxRetainedChars) {
+            buffer.trimToSize();
+        }
+        chunkStart = 0;
+    }
+
+    public void append(char[] text, int offset, int len) {
+        compact();
+        buffer.append(text, offset, len);
+    }
+
+    public void append(CharSequence text) {
+        compact();
+        buffer.append(text);
+    }
+
+    /**
+     * @param finalize True if no more text will be appended, in which case the remaining text is returned as the
+     *                 last chunk(s) even if it is shorter than the chunk size.
+     * @return The next chunk, or null if there isn't a complete chunk available yet.
+     */
+    public String nextChunk(boolean finalize) {
+        int pendingLength = getPendingLength();
+        if (pendingLength == 0) {
+            return null;
+        }
+
+        int chunkEnd;
+        if (pendingLength > chunkSize) {
+            sentenceIterator.setText(new CharSequenceCharacterIterator(buffer, chunkStart, buffer.length()));
+            wordIterator.setText(new CharSequenceCharacterIterator(buffer, chunkStart, buffer.length()));
+            chunkEnd = SmartTextSplitter.adjustChunkEnd(
+                    sentenceIterator, wordIterator, chunkStart, chunkStart + chunkSize, maxChunkAdjustment);
+        } else if (finalize) {
+            chunkEnd = buffer.length();
+        } else {
+            // The remaining text might not be a complete chunk - wait for more.
+            return null;
+        }
+
+        String chunk = buffer.substring(chunkStart, chunkEnd);
+        chunkStart = chunkEnd;
+        return chunk;
+    }
+
+    /**
+     * @return The length of the text that has been appended but not yet returned as a chunk.
+     */
+    public int getPendingLength() {
+        return buffer.length() - chunkStart;
+    }
+
+    /**
+     * Drop text that has already been returned as chunks.  Only done once that text makes up at least half the
+     * buffer, so each character is moved a bounded number of times however small the appends are.
+     */
+    private void compact() {
+        if (chunkStart > 0 && chunkStart >= getPendingLength()) {
+            buffer.delete(0, chunkStart);
+            chunkStart = 0;
+        }
+    }
+}
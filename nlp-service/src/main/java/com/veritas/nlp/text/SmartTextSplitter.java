@@ -25,16 +25,38 @@ public class SmartTextSplitter {
             return Collections.singletonList("");
         }
 
-        int chunkStart = 0;
         List<CharSequence> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        for (int chunkEnd : findChunkEnds(text, textLanguage, chunkSize, maxChunkAdjustment)) {
+            chunks.add(text.subSequence(chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * As {@link #splitOnSentenceBoundaries}, but returns the offset of the end of each chunk rather than the chunks
+     * themselves.  The text is scanned in place, so callers holding a large buffer can pick out just the chunks they
+     * need without copying the whole buffer.  The last offset is always the length of the text.
+     */
+    public static List<Integer> findChunkEnds(
+            CharSequence text,
+            Locale textLanguage,
+            int chunkSize,
+            int maxChunkAdjustment
+            ) {
+
+        List<Integer> chunkEnds = new ArrayList<>();
+        if (text == null || text.length() == 0) {
+            return chunkEnds;
+        }
 
-        // ISSUE: BreakIterator.setText takes a String not a CharSequence - how do we avoid string copy?
-        String textString = text.toString();
         BreakIterator sentenceIterator = BreakIterator.getSentenceInstance(textLanguage);
         BreakIterator wordIterator = BreakIterator.getWordInstance(textLanguage);
-        sentenceIterator.setText(textString);
-        wordIterator.setText(textString);
+        sentenceIterator.setText(new CharSequenceCharacterIterator(text));
+        wordIterator.setText(new CharSequenceCharacterIterator(text));
 
+        int chunkStart = 0;
         while (chunkStart < text.length()) {
             int chunkEnd = chunkStart + chunkSize;
             if (chunkEnd > text.length()) {
@@ -42,36 +64,49 @@ public class SmartTextSplitter {
             }
 
             if (chunkEnd != text.length()) {
-                // Chunk might end in the middle of a sentence - if so, go back to the start of the sentence.
-                int lastSentenceStart = sentenceIterator.preceding(chunkEnd);
-                if (lastSentenceStart == BreakIterator.DONE) {
-                    lastSentenceStart = chunkEnd;
-                }
-
-                boolean sentenceSearchWentTooFar = lastSentenceStart <= chunkStart
-                        || (chunkEnd - lastSentenceStart) > maxChunkAdjustment;
-
-                if (!sentenceSearchWentTooFar) {
-                    chunkEnd = lastSentenceStart;
-                } else {
-                    // Didn't find a sentence boundary within a reasonable range.  We'll fall back to looking for a word boundary.
-                    // TODO: Do something smarter by looking for sentence-part breaks, e.g. commas, colons and the like?
-                    int wordStart = wordIterator.preceding(chunkEnd);
-                    if (wordStart == BreakIterator.DONE) {
-                        wordStart = chunkEnd;
-                    }
-
-                    boolean wordSearchWentTooFar = wordStart <= chunkStart || (chunkEnd - wordStart) > maxChunkAdjustment;
-                    if (!wordSearchWentTooFar) {
-                        chunkEnd = wordStart;
-                    }
-                }
+                chunkEnd = adjustChunkEnd(sentenceIterator, wordIterator, chunkStart, chunkEnd, maxChunkAdjustment);
             }
 
-            chunks.add(text.subSequence(chunkStart, chunkEnd));
+            chunkEnds.add(chunkEnd);
             chunkStart = chunkEnd;
         }
 
-        return chunks;
+        return chunkEnds;
+    }
+
+    /**
+     * Move a chunk end back to the start of the sentence (or failing that, the word) it falls in, provided that is
+     * no more than {@code maxChunkAdjustment} characters away.  The iterators must already be set to the text.
+     */
+    static int adjustChunkEnd(
+            BreakIterator sentenceIterator,
+            BreakIterator wordIterator,
+            int chunkStart,
+            int chunkEnd,
+            int maxChunkAdjustment
+            ) {
+
+        // Chunk might end in the middle of a sentence - if so, go back to the start of the sentence.
+        int lastSentenceStart = sentenceIterator.preceding(chunkEnd);
+        if (lastSentenceStart == BreakIterator.DONE) {
+            lastSentenceStart = chunkEnd;
+        }
+
+        boolean sentenceSearchWentTooFar = lastSentenceStart <= chunkStart
+                || (chunkEnd - lastSentenceStart) > maxChunkAdjustment;
+
+        if (!sentenceSearchWentTooFar) {
+            return lastSentenceStart;
+        }
+
+        // Didn't find a sentence boundary within a reasonable range.  We'll fall back to looking for a word boundary.
+        // TODO: Do something smarter by looking for sentence-part breaks, e.g. commas, colons and the like?
+        int wordStart = wordIterator.preceding(chunkEnd);
+        if (wordStart == BreakIterator.DONE) {
+            wordStart = chunkEnd;
+        }
+
+        boolean wordSearchWentTooFar = wordStart <= chunkStart || (chunkEnd - wordStart) > maxChunkAdjustment;
+        return wordSearchWentTooFar ? chunkEnd : wordStart;
     }
 }
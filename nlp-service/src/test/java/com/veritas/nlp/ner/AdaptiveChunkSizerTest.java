@@ -0,0 +1,105 @@
+package com.veritas.nlp.ner;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveChunkSizerTest {
+    private static final int INITIAL_CHUNK_SIZE = 8000;
+    private NerAdaptiveChunkSizeSettings settings;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        settings = new NerAdaptiveChunkSizeSettings();
+        settings.setEnabled(true);
+        settings.setMinChunkSizeChars(1000);
+        settings.setMaxChunkSizeChars(64000);
+        settings.setMaxSentenceTokens(100);
+        settings.setCostTolerancePercent(10);
+    }
+
+    @Test
+    public void startsAtInitialChunkSize() {
+        assertThat(new AdaptiveChunkSizer(INITIAL_CHUNK_SIZE, settings).getChunkSize()).isEqualTo(INITIAL_CHUNK_SIZE);
+    }
+
+    @Test
+    public void initialChunkSizeIsKeptWithinBounds() {
+        assertThat(new AdaptiveChunkSizer(100, settings).getChunkSize()).isEqualTo(1000);
+        assertThat(new AdaptiveChunkSizer(1000000, settings).getChunkSize()).isEqualTo(64000);
+    }
+
+    @Test
+    public void chunkSizeShrinksWhenSentencesAreTooLong() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(INITIAL_CHUNK_SIZE, settings);
+
+        recordChunk(sizer, 1, 101);
+        assertThat(sizer.getChunkSize()).isEqualTo(4000);
+        recordChunk(sizer, 1, 101);
+        assertThat(sizer.getChunkSize()).isEqualTo(2000);
+        recordChunk(sizer, 1, 101);
+        recordChunk(sizer, 1, 101);
+        assertThat(sizer.getChunkSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void chunkSizeGrowsUpToMaximumWhileCostPerCharDoesNotIncrease() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(INITIAL_CHUNK_SIZE, settings);
+
+        recordChunk(sizer, 1, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(16000);
+        recordChunk(sizer, 1, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(32000);
+        recordChunk(sizer, 1, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(64000);
+        recordChunk(sizer, 1, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(64000);
+    }
+
+    @Test
+    public void chunkSizeStepsBackWhenCostPerCharIncreases() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(INITIAL_CHUNK_SIZE, settings);
+
+        recordChunk(sizer, 10, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(16000);
+        recordChunk(sizer, 10, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(32000);
+
+        // Within tolerance, so carries on growing.
+        recordChunk(sizer, 10.5, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(64000);
+
+        recordChunk(sizer, 12, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(32000);
+
+        // Stays put while it settles.
+        for (int i=0; i < 8; i++) {
+            recordChunk(sizer, 10, 20);
+            assertThat(sizer.getChunkSize()).isEqualTo(32000);
+        }
+
+        // Then probes smaller chunks.
+        recordChunk(sizer, 10, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(16000);
+    }
+
+    @Test
+    public void staleAndShortChunksAreIgnored() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(INITIAL_CHUNK_SIZE, settings);
+
+        sizer.recordChunk(4000, 4000, 4000, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(INITIAL_CHUNK_SIZE);
+        sizer.recordChunk(INITIAL_CHUNK_SIZE, 100, 100, 20);
+        assertThat(sizer.getChunkSize()).isEqualTo(INITIAL_CHUNK_SIZE);
+
+        // Long sentences shrink the chunk size whatever chunk they came from.
+        sizer.recordChunk(4000, 100, 100, 101);
+        assertThat(sizer.getChunkSize()).isEqualTo(4000);
+    }
+
+    private static void recordChunk(AdaptiveChunkSizer sizer, double nanosPerChar, int longestSentenceTokens) {
+        int chunkSize = sizer.getChunkSize();
+        sizer.recordChunk(chunkSize, chunkSize, (long)(nanosPerChar * chunkSize), longestSentenceTokens);
+    }
+}
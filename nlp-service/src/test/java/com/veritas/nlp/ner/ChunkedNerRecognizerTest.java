@@ -1,22 +1,30 @@
 package com.veritas.nlp.ner;
 
-
+import com.codahale.metrics.MetricRegistry;
 import com.veritas.nlp.models.NlpMatch;
 import com.veritas.nlp.models.NlpMatchCollection;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.ErrorCode;
 import com.veritas.nlp.resources.NlpRequestParams;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 public class ChunkedNerRecognizerTest {
     private static final int DEFAULT_CHUNK_SIZE = 32768;
@@ -166,6 +174,242 @@ public class ChunkedNerRecognizerTest {
         assertThat(entities.get(NlpTagType.PERSON).getMatchCollection().getTotal()).isEqualTo(3);
     }
 
+    @Test
+    public void parallelChunkClassificationGivesSameResultsAsSequential() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < 200; i++) {
+            sb.append("This is some text. My name is Joe Bloggs").append(i % 7).append(" and my friend is Jane Smith. ");
+            sb.append("We sometimes meet Joe bloggs").append(i % 7).append(" for lunch. ");
+        }
+        String content = sb.toString();
+        params.setIncludeMatches(true).setMaxContentMatches(50);
+        int chunkSize = 500;
+
+        ChunkedNerRecognizer sequentialRecognizer = new ChunkedNerRecognizer(chunkSize, params);
+        addContent(sequentialRecognizer, content);
+        Map<NlpTagType, NlpTagSet> sequentialEntities = sequentialRecognizer.getEntities();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ChunkedNerRecognizer parallelRecognizer = new ChunkedNerRecognizer(chunkSize, params, executor, 4);
+            addContent(parallelRecognizer, content);
+            Map<NlpTagType, NlpTagSet> parallelEntities = parallelRecognizer.getEntities();
+
+            NlpTagSet expected = sequentialEntities.get(NlpTagType.PERSON);
+            NlpTagSet actual = parallelEntities.get(NlpTagType.PERSON);
+            assertThat(actual.getTags()).containsExactlyElementsOf(expected.getTags());
+            assertThat(actual.getMatchCollection().getTotal()).isEqualTo(expected.getMatchCollection().getTotal());
+            assertThat(actual.getMatchCollection().getMatches()).hasSize(50);
+            assertThat(actual.getMatchCollection().getMatches())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expected.getMatchCollection().getMatches());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void matchListenerReceivesSameMatchesAsResult() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < 100; i++) {
+            sb.append("This is some text. My name is Joe Bloggs").append(i % 7).append(" and my friend is Jane Smith. ");
+        }
+        String content = sb.toString();
+        params.setIncludeMatches(true).setMaxContentMatches(50);
+        int chunkSize = 500;
+
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(chunkSize, params);
+        addContent(recognizer, content);
+        NlpTagSet expected = recognizer.getEntities().get(NlpTagType.PERSON);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ExecutorService chunkExecutor : Arrays.asList(null, executor)) {
+                List<NlpMatch> notifiedMatches = new ArrayList<>();
+                AtomicInteger notifications = new AtomicInteger();
+                ChunkedNerRecognizer incrementalRecognizer = new ChunkedNerRecognizer(chunkSize, params, chunkExecutor, 4);
+                incrementalRecognizer.setMatchListener((type, matches) -> {
+                    assertThat(type).isEqualTo(NlpTagType.PERSON);
+                    notifications.incrementAndGet();
+                    notifiedMatches.addAll(matches);
+                });
+                addContent(incrementalRecognizer, content);
+                NlpTagSet actual = incrementalRecognizer.getEntities().get(NlpTagType.PERSON);
+
+                assertThat(notifications.get()).isGreaterThan(1);
+                assertThat(notifiedMatches)
+                        .usingRecursiveFieldByFieldElementComparator()
+                        .containsExactlyElementsOf(expected.getMatchCollection().getMatches());
+                assertThat(actual.getTags()).containsExactlyInAnyOrderElementsOf(expected.getTags());
+                assertThat(actual.getMatchCollection().getTotal()).isEqualTo(expected.getMatchCollection().getTotal());
+                assertThat(actual.getMatchCollection().getMatches()).isEmpty();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void adaptiveChunkSizeGivesSameResultsAsFixed() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < 200; i++) {
+            sb.append("This is some text. My name is Joe Bloggs").append(i % 7).append(" and my friend is Jane Smith. ");
+        }
+        String content = sb.toString();
+        params.setIncludeMatches(true).setMaxContentMatches(50);
+
+        ChunkedNerRecognizer fixedRecognizer = new ChunkedNerRecognizer(500, params);
+        addContent(fixedRecognizer, content);
+        NlpTagSet expected = fixedRecognizer.getEntities().get(NlpTagType.PERSON);
+
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.setNerChunkSizeChars(500);
+        nerSettings.getNerAdaptiveChunkSize().setEnabled(true);
+        nerSettings.getNerAdaptiveChunkSize().setMinChunkSizeChars(250);
+        nerSettings.getNerAdaptiveChunkSize().setMaxChunkSizeChars(4000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ExecutorService chunkExecutor : Arrays.asList(null, executor)) {
+                MetricRegistry metrics = new MetricRegistry();
+                NerRuntime runtime = new NerRuntime(nerSettings, chunkExecutor, null, null, new NerMetrics(metrics));
+                NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofSeconds(60));
+                ChunkedNerRecognizer adaptiveRecognizer = new ChunkedNerRecognizer(params, runtime, cancellationToken);
+                addContent(adaptiveRecognizer, content);
+                NlpTagSet actual = adaptiveRecognizer.getEntities().get(NlpTagType.PERSON);
+
+                assertThat(actual.getTags()).containsExactlyInAnyOrderElementsOf(expected.getTags());
+                assertThat(actual.getMatchCollection().getTotal()).isEqualTo(expected.getMatchCollection().getTotal());
+                // Match context is clipped at chunk boundaries, so only the matches themselves are compared.
+                assertThat(actual.getMatchCollection().getMatches())
+                        .usingRecursiveFieldByFieldElementComparatorOnFields("offset", "length", "content")
+                        .containsExactlyElementsOf(expected.getMatchCollection().getMatches());
+                assertThat(metrics.histogram(MetricRegistry.name(NerMetrics.class, "chunk-size")).getCount())
+                        .isEqualTo(cancellationToken.getStats().getChunks());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void requestStatsAreRecorded() throws Exception {
+        params.setMinConfidencePercentage(50);
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofSeconds(60));
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(30, params, null, 0, cancellationToken);
+        addContent(recognizer, "My name is Joe Bloggs. It's a nice day today. My friend is Jane Smith.");
+        recognizer.getEntities();
+
+        NerRequestStats stats = cancellationToken.getStats();
+        assertThat(stats.getChunks()).isEqualTo(3);
+        assertThat(stats.getSentences()).isEqualTo(3);
+        assertThat(stats.getEntities()).isEqualTo(2);
+        // Confidence is assessed with the clique trees built during classification.
+        assertThat(stats.getCliqueTrees()).isZero();
+        assertThat(stats.getStageNanos(NerRequestStats.Stage.SPLIT)).isPositive();
+        assertThat(stats.getStageNanos(NerRequestStats.Stage.TOKENIZE)).isPositive();
+        assertThat(stats.getStageNanos(NerRequestStats.Stage.CLASSIFY)).isPositive();
+        assertThat(stats.getStageNanos(NerRequestStats.Stage.CONFIDENCE)).isPositive();
+    }
+
+    @Test
+    public void everyChunkIsClassifiedWithTheClassifierGiven() throws Exception {
+        // The default model doesn't label money, so any found must have come from the classifier we gave.
+        params.setTagTypes(EnumSet.of(NlpTagType.PERSON, NlpTagType.MONEY));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(100, params, executor, 4);
+            recognizer.setClassifier(NerModelRegistry.getInstance().getClassifier("english.muc.7class"));
+            for (int i = 0; i < 5; i++) {
+                addContent(recognizer, "Joe Bloggs paid $ " + (i + 1) + " million for the site. This sentence is padding. ");
+            }
+            Map<NlpTagType, NlpTagSet> entities = recognizer.getEntities();
+
+            assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactly("Joe Bloggs");
+            assertThat(entities.get(NlpTagType.MONEY).getTags()).hasSize(5);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void timeoutExceptionIfParallelRecognizerTakesTooLong() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(1000, params, executor, 4);
+            recognizer.setTimeout(Duration.ofMillis(10));
+            for (int i=0; i < 10000; i++) {
+                addContent(recognizer, "My name is Joe Bloggs ");
+            }
+
+            recognizer.getEntities();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timeoutIsSetOnTheExistingToken() throws Exception {
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofMinutes(5));
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(1000, params, null, 0, cancellationToken);
+        recognizer.setTimeout(Duration.ofMillis(10));
+
+        Throwable thrown = catchThrowable(() -> {
+            for (int i = 0; i < 10000; i++) {
+                addContent(recognizer, "My name is Joe Bloggs ");
+            }
+            recognizer.getEntities();
+        });
+
+        assertThat(thrown).isInstanceOf(TimeoutException.class);
+        assertThat(cancellationToken.getReason()).isEqualTo(NerCancellationToken.Reason.TIMEOUT);
+        assertThat(cancellationToken.getStats().getChunks()).isPositive();
+    }
+
+    @Test(timeOut = 60000)
+    public void addingContentDoesNotWaitForClassificationUntilQueueIsFull() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch workerReleased = new CountDownLatch(1);
+        try {
+            // Tie up the only worker, so no chunks can be classified until we say so.
+            executor.submit(() -> {
+                workerReleased.await();
+                return null;
+            });
+
+            ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(100, params, executor, 2);
+            addContent(recognizer, "My name is Joe Bloggs. This sentence is padding to fill out the chunk a bit more. ");
+            addContent(recognizer, "My friend is Jane Smith. This sentence is padding to fill out the chunk a bit more. ");
+
+            // Both chunks are now queued behind the blocked worker, and we were not made to wait for them.
+            workerReleased.countDown();
+            Map<NlpTagType, NlpTagSet> entities = recognizer.getEntities();
+
+            assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactlyInAnyOrder("Joe Bloggs", "Jane Smith");
+        } finally {
+            workerReleased.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void recognizerStopsPartWayThroughChunkWhenClientDisconnects() throws Exception {
+        // Client 'disconnects' after a few sentences have been classified.
+        AtomicInteger checks = new AtomicInteger();
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofMinutes(5), () -> checks.incrementAndGet() < 5);
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(DEFAULT_CHUNK_SIZE, params, null, 0, cancellationToken);
+        for (int i=0; i < 100; i++) {
+            addContent(recognizer, "My name is Joe Bloggs. ");
+        }
+
+        Throwable thrown = catchThrowable(recognizer::getEntities);
+
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CANCELLED);
+        assertThat(cancellationToken.getReason()).isEqualTo(NerCancellationToken.Reason.CLIENT_DISCONNECTED);
+        assertThat(checks.get()).isEqualTo(5);
+        assertThat(cancellationToken.getEstimatedCpuReclaimed()).isPositive();
+    }
+
     private ChunkedNerRecognizer createPersonRecognizer() {
         return createPersonRecognizer(false);
     }
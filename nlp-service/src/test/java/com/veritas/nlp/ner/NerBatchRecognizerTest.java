@@ -0,0 +1,113 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.ErrorCode;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class NerBatchRecognizerTest {
+    private NerSettings nerSettings;
+    private NlpRequestParams params;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        nerSettings = new NerSettings();
+        params = new NlpRequestParams();
+    }
+
+    @Test
+    public void resultsAreInSameOrderAsDocuments() throws Exception {
+        List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = extractEntities(new NerRuntime(nerSettings, null, null, null),
+                "My name is Joe Bloggs.", "I live in London.", "Nothing to see here.");
+
+        assertThat(results.get(0).join().get(NlpTagType.PERSON).getTags()).containsExactly("Joe Bloggs");
+        assertThat(results.get(1).join().get(NlpTagType.LOCATION).getTags()).containsExactly("London");
+        assertThat(results.get(2).join()).isEmpty();
+    }
+
+    @Test
+    public void failedDocumentDoesNotAffectOthers() throws Exception {
+        nerSettings.setMaxNerContentSizeChars(30);
+
+        List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = extractEntities(new NerRuntime(nerSettings, null, null, null),
+                "My name is Joe Bloggs.", "This document is far too long to be processed.", null, "I live in London.");
+
+        assertThat(results.get(0).join().get(NlpTagType.PERSON).getTags()).containsExactly("Joe Bloggs");
+        assertThat(getErrorCode(results.get(1))).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+        assertThat(getErrorCode(results.get(2))).isEqualTo(ErrorCode.CLIENT_ERROR);
+        assertThat(results.get(3).join().get(NlpTagType.LOCATION).getTags()).containsExactly("London");
+    }
+
+    @Test
+    public void documentsCanBeProcessedInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            String[] texts = new String[20];
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = "Document " + i + " was written by Joe Bloggs in London.";
+            }
+
+            List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = extractEntities(new NerRuntime(nerSettings, executor, null, null), texts);
+
+            assertThat(results).hasSize(texts.length);
+            assertThat(results).allSatisfy(result ->
+                    assertThat(result.join().get(NlpTagType.PERSON).getTags()).containsExactly("Joe Bloggs"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void batchQueuesNoMoreDocumentsThanAllowed() throws Exception {
+        nerSettings.setNerMaxQueuedChunks(2);
+        AtomicInteger maxQueued = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(command);
+                maxQueued.accumulateAndGet(getQueue().size(), Math::max);
+            }
+        };
+        try {
+            String[] texts = new String[20];
+            Arrays.fill(texts, "My name is Joe Bloggs.");
+
+            List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> results = extractEntities(new NerRuntime(nerSettings, executor, null, null), texts);
+
+            assertThat(results).allSatisfy(result ->
+                    assertThat(result.join().get(NlpTagType.PERSON).getTags()).containsExactly("Joe Bloggs"));
+            assertThat(maxQueued.get()).isLessThanOrEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<CompletableFuture<Map<NlpTagType, NlpTagSet>>> extractEntities(NerRuntime runtime, String... texts) throws Exception {
+        return new NerBatchRecognizer(runtime).extractEntities(
+                Arrays.asList(texts), params, new NerCancellationToken(Duration.ofMinutes(5)));
+    }
+
+    private ErrorCode getErrorCode(CompletableFuture<?> result) {
+        Throwable thrown = catchThrowable(result::join);
+        assertThat(thrown).isInstanceOf(CompletionException.class).hasCauseInstanceOf(NerException.class);
+        return ((NerException)thrown.getCause()).getCode();
+    }
+}
@@ -0,0 +1,105 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import com.veritas.nlp.text.IncrementalTextSplitter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NerBufferPoolTest {
+    private static final int MAX_BUFFER_SIZE_CHARS = 1024 * 1024;
+    private MetricRegistry metrics;
+    private NerSettings settings;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        metrics = new MetricRegistry();
+        settings = new NerSettings();
+        settings.getNerBufferPool().setMaxPooled(2);
+    }
+
+    @Test
+    public void poolIsOnlyCreatedIfEnabled() {
+        settings.getNerBufferPool().setEnabled(false);
+        assertThat(NerBufferPool.create(settings, null)).isNull();
+    }
+
+    @Test
+    public void bufferSizeFollowsContentLength() {
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, -1, 4096)).isEqualTo(MAX_BUFFER_SIZE_CHARS);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 0, 4096)).isEqualTo(4096);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 100, 4096)).isEqualTo(4096);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 8192, 4096)).isEqualTo(8192);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 8193, 4096)).isEqualTo(16384);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 900_000, 4096)).isEqualTo(MAX_BUFFER_SIZE_CHARS);
+        assertThat(NerBufferPool.getBufferSize(MAX_BUFFER_SIZE_CHARS, 5_000_000, 4096)).isEqualTo(MAX_BUFFER_SIZE_CHARS);
+        assertThat(NerBufferPool.getBufferSize(100, 50, 4096)).isEqualTo(100);
+    }
+
+    @Test
+    public void buffersAreReusedUpToTheLimit() {
+        NerBufferPool pool = new NerBufferPool(settings, new NerMetrics(metrics));
+        char[][] buffers = new char[3][];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquireBuffer(MAX_BUFFER_SIZE_CHARS, 100);
+        }
+        for (char[] buffer : buffers) {
+            pool.releaseBuffer(buffer);
+        }
+
+        assertThat(pool.acquireBuffer(MAX_BUFFER_SIZE_CHARS, 1000)).isSameAs(buffers[0]);
+        assertThat(pool.acquireBuffer(MAX_BUFFER_SIZE_CHARS, 4000)).isSameAs(buffers[1]);
+        char[] allocated = pool.acquireBuffer(MAX_BUFFER_SIZE_CHARS, 4000);
+        assertThat(allocated).isNotSameAs(buffers[0]).isNotSameAs(buffers[1]).isNotSameAs(buffers[2]);
+        assertThat(pool.acquireBuffer(MAX_BUFFER_SIZE_CHARS, -1)).hasSize(MAX_BUFFER_SIZE_CHARS);
+        assertThat(getCount("leases")).isEqualTo(7);
+        assertThat(getCount("exhausted")).isEqualTo(5);
+    }
+
+    @Test
+    public void splittersAreResetForReuse() {
+        NerBufferPool pool = new NerBufferPool(settings, null);
+        IncrementalTextSplitter splitter = pool.acquireSplitter(30);
+        splitter.append("This is sentence one. This is sentence two.");
+        pool.releaseSplitter(splitter);
+
+        IncrementalTextSplitter reused = pool.acquireSplitter(30);
+
+        assertThat(reused).isSameAs(splitter);
+        assertThat(reused.getPendingLength()).isZero();
+    }
+
+    @Test
+    public void pooledStateGivesSameResults() throws Exception {
+        String text = "My name is Sue Jones.  I work for Acme Corporation in London.";
+        NlpRequestParams params = new NlpRequestParams().setTagTypes(EnumSet.allOf(NlpTagType.class)).setIncludeMatches(true);
+        NerRuntime runtime = new NerRuntime(settings, null, null, null, new NerMetrics(metrics));
+
+        for (int i = 0; i < 3; i++) {
+            StreamingNerRecognizer recognizer = new StreamingNerRecognizer(runtime);
+            recognizer.setContentLengthHint(text.length());
+            Map<NlpTagType, NlpTagSet> entities = recognizer.extractEntities(
+                    new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), params);
+
+            assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactly("Sue Jones");
+            assertThat(entities.get(NlpTagType.ORGANIZATION).getTags()).containsExactly("Acme Corporation");
+            assertThat(entities.get(NlpTagType.LOCATION).getTags()).containsExactly("London");
+        }
+        // A char buffer, a byte buffer and a splitter per request, allocated by the first.
+        assertThat(getCount("leases")).isEqualTo(9);
+        assertThat(getCount("exhausted")).isEqualTo(3);
+    }
+
+    private long getCount(String name) {
+        return metrics.counter(MetricRegistry.name(NerMetrics.class, "buffer-pool", name)).getCount();
+    }
+}
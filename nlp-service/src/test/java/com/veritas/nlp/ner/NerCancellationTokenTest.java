@@ -0,0 +1,68 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.resources.ErrorCode;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class NerCancellationTokenTest {
+
+    @Test
+    public void tokenIsNotCancelledInitially() throws Exception {
+        NerCancellationToken token = new NerCancellationToken(Duration.ofMinutes(1));
+
+        assertThat(token.isCancelled()).isFalse();
+        assertThat(token.getReason()).isNull();
+        token.throwIfCancelled();
+    }
+
+    @Test
+    public void tokenTripsOnTimeout() throws Exception {
+        NerCancellationToken token = new NerCancellationToken(Duration.ofMillis(10));
+        Thread.sleep(50);
+
+        assertThatThrownBy(token::throwIfCancelled).isInstanceOf(TimeoutException.class);
+        assertThat(token.getReason()).isEqualTo(NerCancellationToken.Reason.TIMEOUT);
+        assertThat(token.getRemainingTime()).isZero();
+    }
+
+    @Test
+    public void tokenTripsWhenClientDisconnects() {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        NerCancellationToken token = new NerCancellationToken(Duration.ofMinutes(1), connected::get);
+        assertThat(token.isCancelled()).isFalse();
+
+        connected.set(false);
+
+        Throwable thrown = catchThrowable(token::throwIfCancelled);
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CANCELLED);
+        assertThat(token.getReason()).isEqualTo(NerCancellationToken.Reason.CLIENT_DISCONNECTED);
+    }
+
+    @Test
+    public void firstCancellationReasonIsKept() {
+        NerCancellationToken token = new NerCancellationToken(Duration.ofMinutes(1));
+        token.cancel(NerCancellationToken.Reason.SHUTDOWN);
+        token.cancel(NerCancellationToken.Reason.TIMEOUT);
+
+        assertThat(token.getReason()).isEqualTo(NerCancellationToken.Reason.SHUTDOWN);
+    }
+
+    @Test
+    public void reclaimedCpuIsEstimatedFromCostOfProcessedText() {
+        NerCancellationToken token = new NerCancellationToken(Duration.ofMinutes(1));
+        assertThat(token.getEstimatedCpuReclaimed()).isZero();
+
+        token.recordProcessed(1000, Duration.ofMillis(20).toNanos());
+        token.recordAbandoned(5000);
+
+        assertThat(token.getEstimatedCpuReclaimed()).isEqualTo(Duration.ofMillis(100));
+    }
+}
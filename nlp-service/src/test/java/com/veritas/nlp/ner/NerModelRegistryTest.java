@@ -0,0 +1,126 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.ErrorCode;
+import com.veritas.nlp.resources.NlpRequestParams;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+
+public class NerModelRegistryTest {
+    private static final long MODEL_BYTES = 100;
+    private NerSettings settings;
+    private List<String> loadedModels;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        settings = new NerSettings();
+        settings.getNerModels().setDefaultModel("a");
+        settings.getNerModels().setModels(new ArrayList<>(Arrays.asList(
+                new NerModelSettings("a", "a.ser.gz", true, MODEL_BYTES),
+                new NerModelSettings("b", "b.ser.gz", false, MODEL_BYTES),
+                new NerModelSettings("c", "c.ser.gz", false, MODEL_BYTES),
+                new NerModelSettings("d", "d.ser.gz", false, MODEL_BYTES))));
+        loadedModels = new ArrayList<>();
+    }
+
+    @Test
+    public void modelsAreLoadedOnFirstUse() throws Exception {
+        NerModelRegistry registry = createRegistry();
+        assertThat(registry.isLoaded("b")).isFalse();
+
+        CRFClassifier<CoreLabel> classifier = registry.getClassifier("b");
+
+        assertThat(registry.getClassifier("b")).isSameAs(classifier);
+        assertThat(registry.getClassifier(null)).isNotSameAs(classifier);
+        assertThat(loadedModels).containsExactly("b", "a");
+    }
+
+    @Test
+    public void startupModelsAreLoadedUpFront() {
+        NerModelRegistry registry = createRegistry();
+
+        registry.loadStartupModels();
+
+        assertThat(loadedModels).containsExactly("a");
+    }
+
+    @Test
+    public void unknownModelIsRejected() throws Exception {
+        NerModelRegistry registry = createRegistry();
+
+        Throwable thrown = catchThrowable(() -> registry.checkModel("e"));
+
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CLIENT_ERROR);
+        assertThat(loadedModels).isEmpty();
+    }
+
+    @Test
+    public void leastRecentlyUsedModelsAreUnloadedToStayWithinBudget() throws Exception {
+        settings.getNerModels().setMemoryBudgetBytes(3 * MODEL_BYTES);
+        NerModelRegistry registry = createRegistry();
+        registry.loadStartupModels();
+        registry.getClassifier("b");
+        registry.getClassifier("c");
+        registry.getClassifier("a");
+        registry.getClassifier("b");
+
+        registry.getClassifier("d");
+
+        // "a" is the least recently used, but was loaded at startup so is kept.
+        assertThat(registry.isLoaded("a")).isTrue();
+        assertThat(registry.isLoaded("b")).isTrue();
+        assertThat(registry.isLoaded("c")).isFalse();
+        assertThat(registry.isLoaded("d")).isTrue();
+
+        registry.getClassifier("c");
+        assertThat(loadedModels).containsExactly("a", "b", "c", "d", "c");
+    }
+
+    @Test
+    public void defaultModelMustBeConfigured() {
+        settings.getNerModels().setDefaultModel("e");
+
+        assertThat(catchThrowable(this::createRegistry)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void modelCanBeChosenPerRequest() throws Exception {
+        String text = "On Monday, John Smith of Acme Corp. paid $ 25 million for the London site.";
+        NlpRequestParams params = new NlpRequestParams().setModel("english.muc.7class");
+        StreamingNerRecognizer recognizer = new StreamingNerRecognizer(new NerSettings());
+
+        Map<NlpTagType, NlpTagSet> entities = recognizer.extractEntities(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), params);
+        Map<NlpTagType, NlpTagSet> defaultModelEntities = recognizer.extractEntities(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), params.setModel(null));
+
+        assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactly("John Smith");
+        assertThat(entities.get(NlpTagType.DATE).getTags()).containsExactly("Monday");
+        assertThat(entities).containsKey(NlpTagType.MONEY);
+        assertThat(defaultModelEntities.keySet()).doesNotContain(NlpTagType.DATE, NlpTagType.MONEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private NerModelRegistry createRegistry() {
+        return new NerModelRegistry(settings, model -> {
+            loadedModels.add(model.getName());
+            return mock(CRFClassifier.class);
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.veritas.nlp.ner;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NerModelSnapshotTest {
+
+    @Test
+    public void snapshotClassifiesSameAsBundledModel() throws Exception {
+        String text = "My name is Joe Bloggs and I work for Acme Corporation in London.";
+        CRFClassifier<CoreLabel> bundled = StanfordEntityRecogniser.loadBundledClassifier();
+        Path snapshotPath = Files.createTempFile("ner-model", ".ser");
+        try {
+            NerModelSnapshot.write(bundled, snapshotPath);
+
+            CRFClassifier<CoreLabel> snapshot = NerModelSnapshot.read(snapshotPath);
+
+            assertThat(snapshot.classifyToString(text)).isEqualTo(bundled.classifyToString(text));
+        } finally {
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+}
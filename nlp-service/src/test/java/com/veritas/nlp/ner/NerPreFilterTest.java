@@ -0,0 +1,219 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NerPreFilterTest {
+    private static final int CHUNK_SIZE = 2000;
+    private NlpRequestParams params;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        params = new NlpRequestParams()
+                .setTagTypes(EnumSet.of(NlpTagType.PERSON, NlpTagType.LOCATION, NlpTagType.ORGANIZATION))
+                .setIncludeMatches(true)
+                .setMaxContentMatches(1000);
+    }
+
+    @Test
+    public void nothingIsSkippedWhenOff() {
+        NerPreFilter preFilter = new NerPreFilter(NerPreFilter.Mode.OFF);
+        assertThat(preFilter.canSkip("12345 678.90")).isFalse();
+        assertThat(preFilter.canSkip(tokens("12345", "678.90"))).isFalse();
+    }
+
+    @Test
+    public void strictModeOnlySkipsTextWithNoLetters() {
+        NerPreFilter preFilter = new NerPreFilter(NerPreFilter.Mode.STRICT);
+        assertThat(preFilter.canSkip("12345\t678.90 | -42%\n")).isTrue();
+        assertThat(preFilter.canSkip("12345 london")).isFalse();
+        assertThat(preFilter.canSkip(tokens("12345", "678.90", "|", "-42", "%"))).isTrue();
+        assertThat(preFilter.canSkip(tokens("0x7ffe", "12"))).isFalse();
+        assertThat(preFilter.canSkip(tokens("met", "john", "smith"))).isFalse();
+    }
+
+    @Test
+    public void aggressiveModeSkipsTextWithNoCapitalizedWords() {
+        NerPreFilter preFilter = new NerPreFilter(NerPreFilter.Mode.AGGRESSIVE);
+        assertThat(preFilter.canSkip("connection reset by peer at 0x7ffe3f2a")).isTrue();
+        assertThat(preFilter.canSkip("met John at 10:00")).isFalse();
+        assertThat(preFilter.canSkip(tokens("met", "john", "smith"))).isTrue();
+        assertThat(preFilter.canSkip(tokens("0X7FFE", "12"))).isTrue();
+        assertThat(preFilter.canSkip(tokens("Met", "Sarah", "O'Connor", "at", "AT&T"))).isFalse();
+    }
+
+    @Test
+    public void aggressiveModeIgnoresCapitalizedWordsAmongMachineTokens() {
+        NerPreFilter preFilter = new NerPreFilter(NerPreFilter.Mode.AGGRESSIVE);
+        assertThat(preFilter.canSkip(tokens("QWN3b", "/", "PZ", "+", "x9Lk2", "Tm0a", "Xy7"))).isTrue();
+        assertThat(preFilter.canSkip(tokens("Order", "A12", "shipped", "to", "London"))).isFalse();
+        assertThat(preFilter.canSkip(tokens("0x7ffe", "0x3f2a", "0x11ab", "12", "ms", "Dear", "Ms.", "Patel", ","))).isFalse();
+        assertThat(preFilter.canSkip(tokens("Paris"))).isFalse();
+    }
+
+    @Test
+    public void aggressiveModeBlanksLinesOfMachineText() {
+        String text = "Dear Ms. Patel,\n"
+                + "12345\t678.90\t-4%\n"
+                + "2024-03-01 12:00:00.123 info [worker-3] 0x7ffe3f2a retry 120ms\n"
+                + "QWN3bT0xMjM0NTY3ODkw+YWJjZGVm/Z2hpams=\n"
+                + "--\n"
+                + "we met at the usual place, said hello\n"
+                + "123,John Smith,London,Acme Corporation,123.45,7f3a9c2e\n"
+                + "From: John Smith <john.smith@example.com>";
+        NerRequestStats stats = new NerRequestStats();
+
+        String blanked = new NerPreFilter(NerPreFilter.Mode.AGGRESSIVE).blankMachineLines(text, stats);
+
+        assertThat(blanked).hasSameSizeAs(text);
+        assertThat(blanked.split("\n", -1)).containsExactly(
+                "Dear Ms. Patel,",
+                " ".repeat(16),
+                " ".repeat(62),
+                " ".repeat(38),
+                "--",
+                "we met at the usual place, said hello",
+                "123,John Smith,London,Acme Corporation,123.45,7f3a9c2e",
+                "From: John Smith <john.smith@example.com>");
+        assertThat(stats.getSkippedRegions()).isEqualTo(3);
+        assertThat(stats.getSkippedChars()).isEqualTo(16 + 62 + 38);
+        assertThat(new NerPreFilter(NerPreFilter.Mode.STRICT).blankMachineLines(text, stats)).isSameAs(text);
+    }
+
+    @Test
+    public void strictModeGivesSameResultsAsNoFilterOnValidationCorpus() throws Exception {
+        String content = createValidationCorpus();
+
+        NerCancellationToken unfilteredToken = new NerCancellationToken(Duration.ofSeconds(60));
+        Map<NlpTagType, NlpTagSet> expected = extractEntities(content, null, unfilteredToken);
+        NerCancellationToken strictToken = new NerCancellationToken(Duration.ofSeconds(60));
+        Map<NlpTagType, NlpTagSet> actual = extractEntities(content, new NerPreFilter(NerPreFilter.Mode.STRICT), strictToken);
+
+        assertThat(actual.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+        for (NlpTagType type : expected.keySet()) {
+            assertThat(actual.get(type).getTags()).containsExactlyInAnyOrderElementsOf(expected.get(type).getTags());
+            assertThat(actual.get(type).getMatchCollection().getMatches())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expected.get(type).getMatchCollection().getMatches());
+        }
+        assertThat(unfilteredToken.getStats().getSkippedRegions()).isZero();
+        assertThat(strictToken.getStats().getSkippedRegions()).isPositive();
+        assertThat(strictToken.getStats().getSkippedChars()).isPositive();
+        assertThat(strictToken.getStats().getSentences()).isLessThan(unfilteredToken.getStats().getSentences());
+    }
+
+    @Test
+    public void aggressiveModeSkipsMachineTextButStillFindsNames() throws Exception {
+        String content = createValidationCorpus();
+
+        NerCancellationToken strictToken = new NerCancellationToken(Duration.ofSeconds(60));
+        extractEntities(content, new NerPreFilter(NerPreFilter.Mode.STRICT), strictToken);
+        NerCancellationToken aggressiveToken = new NerCancellationToken(Duration.ofSeconds(60));
+        Map<NlpTagType, NlpTagSet> entities = extractEntities(content, new NerPreFilter(NerPreFilter.Mode.AGGRESSIVE), aggressiveToken);
+
+        assertThat(entities.get(NlpTagType.PERSON).getTags()).contains("John Smith", "Maria Garcia");
+        assertThat(entities.get(NlpTagType.LOCATION).getTags()).contains("London", "Rotterdam");
+        assertThat(aggressiveToken.getStats().getSkippedChars()).isGreaterThan(strictToken.getStats().getSkippedChars());
+        assertThat(aggressiveToken.getStats().getEstimatedSkippedNanos()).isPositive();
+    }
+
+    @Test
+    public void filterIsNotUsedWithModelsThatLabelNumericEntities() throws Exception {
+        NerPreFilter preFilter = new NerPreFilter(NerPreFilter.Mode.STRICT);
+        NerModelRegistry models = NerModelRegistry.getInstance();
+
+        assertThat(preFilter.forClassifier(models.getClassifier(null))).isSameAs(preFilter);
+        assertThat(preFilter.forClassifier(models.getClassifier("english.conll.4class"))).isSameAs(preFilter);
+        assertThat(preFilter.forClassifier(models.getClassifier("english.muc.7class"))).isNull();
+    }
+
+    @Test
+    public void numericEntitiesAreStillFoundWithSevenClassModel() throws Exception {
+        String content = "The deal is worth $1,000,000 to Acme Corp.\n"
+                + "$1,000,000\n"
+                + "50%\n"
+                + "12:30\n"
+                + "2024-01-01\n"
+                + createValidationCorpus();
+        params.setModel("english.muc.7class").setTagTypes(EnumSet.allOf(NlpTagType.class));
+
+        Map<NlpTagType, NlpTagSet> expected = extractEntities(content, null, new NerCancellationToken(Duration.ofSeconds(60)));
+        for (NerPreFilter.Mode mode : EnumSet.of(NerPreFilter.Mode.STRICT, NerPreFilter.Mode.AGGRESSIVE)) {
+            NerCancellationToken token = new NerCancellationToken(Duration.ofSeconds(60));
+            Map<NlpTagType, NlpTagSet> actual = extractEntities(content, new NerPreFilter(mode), token);
+
+            assertThat(actual.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+            for (NlpTagType type : expected.keySet()) {
+                assertThat(actual.get(type).getTags()).containsExactlyInAnyOrderElementsOf(expected.get(type).getTags());
+            }
+            assertThat(token.getStats().getSkippedRegions()).isZero();
+        }
+        assertThat(expected.get(NlpTagType.MONEY).getTags()).contains("$1,000,000");
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(String content, NerPreFilter preFilter,
+                                                       NerCancellationToken cancellationToken) throws Exception {
+        ChunkedNerRecognizer recognizer = new ChunkedNerRecognizer(CHUNK_SIZE, params, null, 0, cancellationToken);
+        recognizer.setPreFilter(preFilter);
+        recognizer.addContent(content);
+        return recognizer.getEntities();
+    }
+
+    /**
+     * Prose interleaved with the kinds of content the pre-filter is meant for: numeric tables, base64 and hex dumps.
+     */
+    private static String createValidationCorpus() throws Exception {
+        String prose;
+        try (InputStream corpus = NerPreFilterTest.class.getResourceAsStream("/nlp-warmup-corpus.txt")) {
+            prose = IOUtils.toString(corpus, StandardCharsets.UTF_8);
+        }
+
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (String paragraph : prose.split("\n\n")) {
+            sb.append(paragraph).append("\n\n");
+            for (int i = 0; i < 300; i++) {
+                sb.append(random.nextInt(100000)).append('\t').append(random.nextInt(1000)).append('.')
+                        .append(random.nextInt(100)).append("\t-").append(random.nextInt(50)).append("%\n");
+            }
+            sb.append('\n');
+            for (int i = 0; i < 10; i++) {
+                byte[] bytes = new byte[57];
+                random.nextBytes(bytes);
+                sb.append(Base64.getEncoder().encodeToString(bytes)).append('\n');
+            }
+            sb.append('\n');
+            for (int i = 0; i < 10; i++) {
+                sb.append(String.format("0x%08x 0x%04x %d ms%n", random.nextInt(), random.nextInt(65536), random.nextInt(1000)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<CoreLabel> tokens(String... words) {
+        return Arrays.stream(words).map(word -> {
+            CoreLabel token = new CoreLabel();
+            token.setWord(word);
+            return token;
+        }).collect(Collectors.toList());
+    }
+}
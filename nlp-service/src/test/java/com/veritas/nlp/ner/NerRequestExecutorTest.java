@@ -0,0 +1,169 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.resources.ErrorCode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class NerRequestExecutorTest {
+    private static final Duration LONG_TIMEOUT = Duration.ofSeconds(60);
+    private MetricRegistry metrics;
+    private NerRequestExecutor executor;
+    private CountDownLatch workersReleased;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.setNerMaxConcurrentRequests(1);
+        nerSettings.setNerMaxQueuedRequests(1);
+        metrics = new MetricRegistry();
+        executor = new NerRequestExecutor(nerSettings, metrics);
+        workersReleased = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        workersReleased.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void canRunTask() throws Exception {
+        assertThat(executor.execute(() -> "done", new NerCancellationToken(LONG_TIMEOUT))).isEqualTo("done");
+        assertThat(metrics.timer(MetricRegistry.name(NerRequestExecutor.class, "queue-time")).getCount()).isEqualTo(1);
+        assertThat(metrics.timer(MetricRegistry.name(NerRequestExecutor.class, "run-time")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void taskExceptionIsPropagated() {
+        NerCancellationToken cancellationToken = new NerCancellationToken(LONG_TIMEOUT);
+        assertThatThrownBy(() -> executor.execute(() -> { throw new NerException(ErrorCode.CONTENT_TOO_LARGE); }, cancellationToken))
+                .isInstanceOf(NerException.class)
+                .extracting(e -> ((NerException)e).getCode()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+    }
+
+    @Test(timeOut = 60000)
+    public void requestIsRejectedIfQueueIsFull() throws Exception {
+        submitBlockingTask();
+        submitBlockingTask();
+        waitForQueuedRequests(1);
+
+        Throwable thrown = catchThrowable(() -> executor.execute(() -> "too many", new NerCancellationToken(LONG_TIMEOUT)));
+
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.SERVICE_BUSY);
+        assertThat(metrics.meter(MetricRegistry.name(NerRequestExecutor.class, "rejected")).getCount()).isEqualTo(1);
+    }
+
+    @Test(timeOut = 60000)
+    public void requestIsRejectedIfEstimatedWaitExceedsTimeout() throws Exception {
+        // Establish a typical run time, then occupy the only worker.
+        executor.execute(() -> {
+            Thread.sleep(300);
+            return null;
+        }, new NerCancellationToken(LONG_TIMEOUT));
+        submitBlockingTask();
+        waitForActiveRequests(1);
+
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofMillis(50));
+        Throwable thrown = catchThrowable(() -> executor.execute(() -> "too slow", cancellationToken));
+
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.SERVICE_BUSY);
+    }
+
+    @Test(timeOut = 60000)
+    public void requestTimesOutIfQueuedTooLong() throws Exception {
+        submitBlockingTask();
+        waitForActiveRequests(1);
+
+        // No run time history yet, so the request is accepted, but it can't start before the timeout.
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofMillis(200));
+        assertThatThrownBy(() -> executor.execute(() -> "never runs", cancellationToken))
+                .isInstanceOf(TimeoutException.class);
+        assertThat(cancellationToken.getReason()).isEqualTo(NerCancellationToken.Reason.TIMEOUT);
+    }
+
+    @Test(timeOut = 60000)
+    public void timedOutRequestHasStoppedBeforeTimeoutIsReported() throws Exception {
+        NerCancellationToken cancellationToken = new NerCancellationToken(Duration.ofMillis(200));
+        CountDownLatch stopped = new CountDownLatch(1);
+
+        Throwable thrown = catchThrowable(() -> executor.execute(() -> {
+            while (!cancellationToken.isCancelled()) {
+                Thread.onSpinWait();
+            }
+            // Still finishing with the request (reading the rest of the body, say) after seeing the token tripped.
+            Thread.sleep(300);
+            stopped.countDown();
+            return null;
+        }, cancellationToken));
+
+        assertThat(thrown).isInstanceOf(TimeoutException.class);
+        assertThat(stopped.getCount()).isZero();
+    }
+
+    @Test(timeOut = 60000)
+    public void runningRequestsAreCancelledOnShutdown() throws Exception {
+        NerCancellationToken cancellationToken = new NerCancellationToken(LONG_TIMEOUT);
+        CompletableFuture<Void> request = CompletableFuture.runAsync(() -> {
+            try {
+                // Busy loop, like classification, so the task only stops when it sees the token tripped.
+                executor.execute(() -> {
+                    while (!cancellationToken.isCancelled()) {
+                        Thread.onSpinWait();
+                    }
+                    return null;
+                }, cancellationToken);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waitForActiveRequests(1);
+
+        executor.shutdown();
+        request.join();
+
+        assertThat(cancellationToken.getReason()).isEqualTo(NerCancellationToken.Reason.SHUTDOWN);
+        assertThat(metrics.meter(MetricRegistry.name(NerRequestExecutor.class, "cancelled", "shutdown")).getCount()).isEqualTo(1);
+    }
+
+    private void submitBlockingTask() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                executor.execute(() -> {
+                    workersReleased.await();
+                    return null;
+                }, new NerCancellationToken(LONG_TIMEOUT));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private void waitForActiveRequests(int count) throws InterruptedException {
+        while (getGaugeValue("active") < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForQueuedRequests(int count) throws InterruptedException {
+        while (getGaugeValue("queued") < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private int getGaugeValue(String name) {
+        return (Integer)metrics.getGauges().get(MetricRegistry.name(NerRequestExecutor.class, name)).getValue();
+    }
+}
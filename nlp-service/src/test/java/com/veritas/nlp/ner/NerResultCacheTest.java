@@ -0,0 +1,99 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NerResultCacheTest {
+    private static final String TEXT = "My name is Sue Jones.";
+    private MetricRegistry metrics;
+    private NerResultCacheSettings cacheSettings;
+    private NlpRequestParams params;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        metrics = new MetricRegistry();
+        cacheSettings = new NerResultCacheSettings();
+        cacheSettings.setEnabled(true);
+        params = new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.PERSON)).setIncludeMatches(true);
+    }
+
+    @Test
+    public void cacheIsOnlyCreatedIfEnabled() {
+        cacheSettings.setEnabled(false);
+        assertThat(NerResultCache.create(cacheSettings, metrics)).isNull();
+    }
+
+    @Test
+    public void repeatedDocumentIsServedFromCache() throws Exception {
+        StreamingNerRecognizer recognizer = createRecognizer();
+
+        Map<NlpTagType, NlpTagSet> first = extractEntities(recognizer, TEXT, params);
+        Map<NlpTagType, NlpTagSet> second = extractEntities(recognizer, TEXT, params);
+
+        assertThat(second.get(NlpTagType.PERSON).getTags()).containsExactly("Sue Jones");
+        assertThat(second.get(NlpTagType.PERSON).getMatchCollection().getMatches()).hasSize(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(getGaugeValue("hits")).isEqualTo(1L);
+        assertThat(getGaugeValue("misses")).isEqualTo(1L);
+    }
+
+    @Test
+    public void differentParamsOrContentAreNotServedFromCache() throws Exception {
+        StreamingNerRecognizer recognizer = createRecognizer();
+
+        extractEntities(recognizer, TEXT, params);
+        extractEntities(recognizer, TEXT, new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.PERSON)));
+        extractEntities(recognizer, TEXT, new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.LOCATION)));
+        extractEntities(recognizer, "My name is Joe Bloggs.", params);
+        extractEntities(recognizer, TEXT, new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.PERSON))
+                .setIncludeMatches(true).setModel("english.conll.4class"));
+
+        assertThat(getGaugeValue("hits")).isEqualTo(0L);
+        assertThat(getGaugeValue("misses")).isEqualTo(5L);
+    }
+
+    @Test
+    public void largeDocumentIsNotCached() throws Exception {
+        cacheSettings.setMaxDocumentSizeChars(10);
+        StreamingNerRecognizer recognizer = createRecognizer();
+
+        Map<NlpTagType, NlpTagSet> entities = extractEntities(recognizer, TEXT, params);
+        extractEntities(recognizer, TEXT, params);
+
+        assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactly("Sue Jones");
+        assertThat(getGaugeValue("hits")).isEqualTo(0L);
+        assertThat(getGaugeValue("size")).isEqualTo(0L);
+    }
+
+    @Test
+    public void modifyingResultDoesNotAffectCache() throws Exception {
+        StreamingNerRecognizer recognizer = createRecognizer();
+
+        extractEntities(recognizer, TEXT, params).get(NlpTagType.PERSON).getTags().add("Someone Else");
+
+        assertThat(extractEntities(recognizer, TEXT, params).get(NlpTagType.PERSON).getTags()).containsExactly("Sue Jones");
+    }
+
+    private StreamingNerRecognizer createRecognizer() {
+        return new StreamingNerRecognizer(100, new NerRuntime(new NerSettings(), null, NerResultCache.create(cacheSettings, metrics), null));
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(StreamingNerRecognizer recognizer, String text, NlpRequestParams params) throws Exception {
+        return recognizer.extractEntities(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), params);
+    }
+
+    private Object getGaugeValue(String name) {
+        return metrics.getGauges().get(MetricRegistry.name(NerResultCache.class, name)).getValue();
+    }
+}
@@ -0,0 +1,98 @@
+package com.veritas.nlp.ner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NerSentenceCacheTest {
+    private static final String TEXT =
+            "My name is Joe Bloggs and I live in London.  Regards, Sue Jones, Acme Corporation.\n" +
+            "Thanks Joe.  Regards,   Sue   Jones,\nAcme Corporation.";
+    private MetricRegistry metrics;
+    private NerSentenceCache sentenceCache;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        NerSentenceCacheSettings settings = new NerSentenceCacheSettings();
+        settings.setEnabled(true);
+        metrics = new MetricRegistry();
+        sentenceCache = NerSentenceCache.create(settings, metrics);
+    }
+
+    @Test
+    public void cachedResultsAreSameAsUncachedResults() throws Exception {
+        for (int minConfidencePercentage : new int[] { 0, 90 }) {
+            NlpRequestParams params = new NlpRequestParams()
+                    .setIncludeMatches(true)
+                    .setMinConfidencePercentage(minConfidencePercentage);
+
+            Map<NlpTagType, NlpTagSet> expected = extractEntities(TEXT, params, null);
+            Map<NlpTagType, NlpTagSet> firstPass = extractEntities(TEXT, params, sentenceCache);
+            Map<NlpTagType, NlpTagSet> secondPass = extractEntities(TEXT, params, sentenceCache);
+
+            assertSameEntities(firstPass, expected);
+            assertSameEntities(secondPass, expected);
+        }
+    }
+
+    @Test
+    public void repeatedSentenceIsServedFromCacheWithMatchOffsetsForThisOccurrence() throws Exception {
+        NlpRequestParams params = new NlpRequestParams()
+                .setIncludeMatches(true)
+                .setTagTypes(EnumSet.of(NlpTagType.PERSON));
+
+        Map<NlpTagType, NlpTagSet> entities = extractEntities(TEXT, params, sentenceCache);
+
+        // The "Regards, Sue Jones..." sentence appears twice, with different whitespace.
+        assertThat(getGaugeValue("hits")).isEqualTo(1L);
+        List<NlpMatch> matches = entities.get(NlpTagType.PERSON).getMatchCollection().getMatches();
+        assertThat(matches).extracting(NlpMatch::getOffset)
+                .containsExactly(11L, (long)TEXT.indexOf("Sue Jones"), (long)TEXT.indexOf("Joe."), (long)TEXT.indexOf("Sue   Jones"));
+        assertThat(matches).extracting(NlpMatch::getContent)
+                .containsExactly("Joe Bloggs", "Sue Jones", "Joe", "Sue   Jones");
+    }
+
+    @Test
+    public void cachedSentenceCanBeReusedForDifferentTagTypes() throws Exception {
+        extractEntities(TEXT, new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.PERSON)), sentenceCache);
+
+        Map<NlpTagType, NlpTagSet> entities = extractEntities(
+                TEXT, new NlpRequestParams().setTagTypes(EnumSet.of(NlpTagType.LOCATION)), sentenceCache);
+
+        assertThat(entities.get(NlpTagType.LOCATION).getTags()).containsExactly("London");
+        assertThat(entities).doesNotContainKey(NlpTagType.PERSON);
+        assertThat((Long)getGaugeValue("hits")).isGreaterThanOrEqualTo(3L);
+    }
+
+    private Map<NlpTagType, NlpTagSet> extractEntities(String text, NlpRequestParams params, NerSentenceCache cache) throws Exception {
+        Map<NlpTagType, NlpTagSet> entities = new HashMap<>();
+        new StanfordEntityRecogniser(entities, text, params, 0, new NerCancellationToken(Duration.ofMinutes(5)), cache)
+                .extractEntities();
+        return entities;
+    }
+
+    private void assertSameEntities(Map<NlpTagType, NlpTagSet> actual, Map<NlpTagType, NlpTagSet> expected) {
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        for (NlpTagType tagType : expected.keySet()) {
+            assertThat(actual.get(tagType).getTags()).isEqualTo(expected.get(tagType).getTags());
+            assertThat(actual.get(tagType).getMatchCollection()).usingRecursiveComparison()
+                    .isEqualTo(expected.get(tagType).getMatchCollection());
+        }
+    }
+
+    private Object getGaugeValue(String name) {
+        return metrics.getGauges().get(MetricRegistry.name(NerSentenceCache.class, name)).getValue();
+    }
+}
@@ -0,0 +1,63 @@
+package com.veritas.nlp.ner;
+
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.NlpRequestParams;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StanfordEntityRecogniserTest {
+    @Test
+    public void bundledModelCanReuseCliqueTree() {
+        assertThat(StanfordEntityRecogniser.canReuseCliqueTree(StanfordEntityRecogniser.loadClassifier().flags)).isTrue();
+    }
+
+    @Test
+    public void reusingCliqueTreeGivesSameResultsAsClassifyingAndBuildingTreeSeparately() throws Exception {
+        String text;
+        try (InputStream corpus = StanfordEntityRecogniserTest.class.getResourceAsStream("/nlp-warmup-corpus.txt")) {
+            text = IOUtils.toString(corpus, StandardCharsets.UTF_8);
+        }
+        NlpRequestParams params = new NlpRequestParams()
+                .setTagTypes(EnumSet.allOf(NlpTagType.class))
+                .setMinConfidencePercentage(90)
+                .setIncludeMatches(true)
+                .setMaxContentMatches(1000);
+
+        // What we used to do: classify, then build another clique tree to assess confidence.
+        Map<NlpTagType, NlpTagSet> expected = new HashMap<>();
+        NerCancellationToken expectedToken = new NerCancellationToken(Duration.ofSeconds(60));
+        StanfordEntityRecogniser expectedRecogniser = new StanfordEntityRecogniser(expected, text, params, 0, expectedToken);
+        CRFClassifier<CoreLabel> crf = StanfordEntityRecogniser.loadClassifier();
+        for (List<CoreLabel> sentence : crf.makeObjectBankFromString(text, crf.plainTextReaderAndWriter())) {
+            crf.classify(sentence);
+            expectedRecogniser.getEntitiesForSentence(sentence);
+        }
+
+        Map<NlpTagType, NlpTagSet> actual = new HashMap<>();
+        NerCancellationToken actualToken = new NerCancellationToken(Duration.ofSeconds(60));
+        new StanfordEntityRecogniser(actual, text, params, 0, actualToken).extractEntities();
+
+        assertThat(actual.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+        for (NlpTagType type : expected.keySet()) {
+            assertThat(actual.get(type).getTags()).containsExactlyElementsOf(expected.get(type).getTags());
+            assertThat(actual.get(type).getMatchCollection().getMatches())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expected.get(type).getMatchCollection().getMatches());
+        }
+        assertThat(expectedToken.getStats().getCliqueTrees()).isPositive();
+        assertThat(actualToken.getStats().getCliqueTrees()).isZero();
+    }
+}
@@ -1,24 +1,35 @@
 package com.veritas.nlp.ner;
 
+import com.veritas.nlp.models.MalformedInputPolicy;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
 import com.veritas.nlp.resources.ErrorCode;
 import com.veritas.nlp.resources.NlpRequestParams;
 import com.veritas.nlp.utils.ThrowingRunnable;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,11 +40,18 @@ public class StreamingNerRecognizerTest {
     private static final NerSettings DEFAULT_NER_SETTINGS = new NerSettings();
 
     private NlpRequestParams params;
+    private Path localFileRoot;
 
     @BeforeMethod
-    public void beforeMethod() {
+    public void beforeMethod() throws Exception {
         this.params = new NlpRequestParams();
         params.setTagTypes(EnumSet.of(NlpTagType.PERSON));
+        localFileRoot = Files.createTempDirectory("ner-local-files");
+    }
+
+    @AfterMethod
+    public void afterMethod() throws Exception {
+        FileUtils.deleteDirectory(localFileRoot.toFile());
     }
 
     @Test
@@ -49,6 +67,25 @@ public class StreamingNerRecognizerTest {
         }
     }
 
+    @Test
+    public void malformedInputIsHandledAsRequested() throws Exception {
+        byte[] content = "My name is Sue Jones.\u0000".getBytes(StandardCharsets.UTF_8);
+        content[content.length - 1] = (byte)0xC3;
+        StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, DEFAULT_NER_SETTINGS);
+
+        Map<NlpTagType, NlpTagSet> entities = recognizer.extractEntities(new ByteArrayInputStream(content), params);
+        Throwable thrown = catchThrowable(() -> recognizer.extractEntities(new ByteArrayInputStream(content),
+                params.setMalformedInputPolicy(MalformedInputPolicy.REJECT)));
+        Throwable thrownForUtf32 = catchThrowable(() -> recognizer.extractEntities(
+                new ByteArrayInputStream(Arrays.copyOf("Sue Jones".getBytes("UTF_32BE_BOM"), 42)), params));
+
+        assertThat(entities.get(NlpTagType.PERSON).getTags()).containsExactly("Sue Jones");
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CLIENT_ERROR);
+        assertThat(thrownForUtf32).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrownForUtf32).getCode()).isEqualTo(ErrorCode.CLIENT_ERROR);
+    }
+
     @Test
     public void canExtractEntitiesFromSlowlyPopulatedStream() throws Exception {
         StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, DEFAULT_NER_SETTINGS);
@@ -114,6 +151,91 @@ public class StreamingNerRecognizerTest {
         assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
     }
 
+    @Test
+    public void ignoredMalformedInputCountsTowardsSizeLimit() throws Exception {
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.setMaxNerContentSizeChars(100);
+        StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, nerSettings);
+        // A megabyte of bytes that are never valid UTF-8, compressed to a kilobyte or so.
+        byte[] invalid = new byte[1024 * 1024];
+        Arrays.fill(invalid, (byte)0xFF);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(invalid);
+        }
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout());
+
+        assertThat(getErrorCode(() -> recognizer.extractEntities(
+                new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())),
+                params.setMalformedInputPolicy(MalformedInputPolicy.IGNORE), cancellationToken)))
+                .isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+        assertThat(cancellationToken.getStats().getChars()).isZero();
+    }
+
+    @Test
+    public void canExtractEntitiesFromLocalFile() throws Exception {
+        Path file = localFileRoot.resolve("document.txt");
+        Files.write(file, "Zo\u00eb said that Sue Jones moved to Z\u00fcrich.".getBytes(StandardCharsets.UTF_8));
+        NerSettings nerSettings = createLocalFileSettings();
+        // Tiny windows, so that chars are split across them.
+        nerSettings.getNerLocalFiles().setWindowSizeBytes(5);
+        StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, nerSettings);
+
+        Map<NlpTagType, NlpTagSet> entities = recognizer.extractEntities(
+                localFileRoot.resolve("sub/../document.txt"), params, new NerCancellationToken(params.getTimeout()));
+
+        assertThat(entities.get(NlpTagType.PERSON).getTags()).contains("Zo\u00eb", "Sue Jones");
+    }
+
+    @Test
+    public void localFileMustBeUnderAllowedRoot() throws Exception {
+        Path outside = Files.createTempFile("outside", ".txt");
+        try {
+            Path link = Files.createSymbolicLink(localFileRoot.resolve("link.txt"), outside);
+            StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, createLocalFileSettings());
+            StreamingNerRecognizer disabledRecognizer = new StreamingNerRecognizer(100, new NerSettings());
+
+            assertThat(getErrorCode(() -> recognizer.extractEntities(outside, params, new NerCancellationToken(params.getTimeout()))))
+                    .isEqualTo(ErrorCode.FORBIDDEN);
+            assertThat(getErrorCode(() -> recognizer.extractEntities(localFileRoot.resolve("../" + outside.getFileName()),
+                    params, new NerCancellationToken(params.getTimeout())))).isEqualTo(ErrorCode.FORBIDDEN);
+            assertThat(getErrorCode(() -> recognizer.extractEntities(link, params, new NerCancellationToken(params.getTimeout()))))
+                    .isEqualTo(ErrorCode.FORBIDDEN);
+            assertThat(getErrorCode(() -> recognizer.extractEntities(localFileRoot.resolve("missing.txt"), params,
+                    new NerCancellationToken(params.getTimeout())))).isEqualTo(ErrorCode.CLIENT_ERROR);
+            assertThat(getErrorCode(() -> disabledRecognizer.extractEntities(localFileRoot.resolve("missing.txt"), params,
+                    new NerCancellationToken(params.getTimeout())))).isEqualTo(ErrorCode.FORBIDDEN);
+        } finally {
+            Files.delete(outside);
+        }
+    }
+
+    @Test
+    public void localFileThatIsTooLargeIsRejectedBeforeReading() throws Exception {
+        Path file = localFileRoot.resolve("document.txt");
+        Files.write(file, "This is some text that is more than 10 chars long.".getBytes(StandardCharsets.UTF_8));
+        NerSettings nerSettings = createLocalFileSettings();
+        nerSettings.setMaxNerContentSizeChars(10);
+        StreamingNerRecognizer recognizer = new StreamingNerRecognizer(100, nerSettings);
+        NerCancellationToken cancellationToken = new NerCancellationToken(params.getTimeout());
+
+        assertThat(getErrorCode(() -> recognizer.extractEntities(file, params, cancellationToken)))
+                .isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+        assertThat(cancellationToken.getStats().getChars()).isZero();
+    }
+
+    private NerSettings createLocalFileSettings() {
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.getNerLocalFiles().setAllowedRoots(Collections.singletonList(localFileRoot.toString()));
+        return nerSettings;
+    }
+
+    private static ErrorCode getErrorCode(ThrowingCallable callable) {
+        Throwable thrown = catchThrowable(callable);
+        assertThat(thrown).isInstanceOf(NerException.class);
+        return ((NerException)thrown).getCode();
+    }
+
     private void runOnNewThread(ThrowingRunnable runnable) {
         new Thread(() -> {
             try {
@@ -0,0 +1,491 @@
+package com.veritas.nlp.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.veritas.nlp.models.ErrorResponse;
+import com.veritas.nlp.models.NerBatchDocument;
+import com.veritas.nlp.models.NerBatchRequest;
+import com.veritas.nlp.models.NerBatchResult;
+import com.veritas.nlp.models.NerDocumentResult;
+import com.veritas.nlp.models.NerResult;
+import com.veritas.nlp.models.NerResultFragment;
+import com.veritas.nlp.models.NlpMatch;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerMetrics;
+import com.veritas.nlp.ner.NerSettings;
+import com.veritas.nlp.service.NlpServiceSettings;
+import jakarta.ws.rs.NotSupportedException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class NerResourceTest {
+    private NerSettings nerSettings;
+    private NerResource nerResource;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        nerSettings = new NerSettings();
+        nerSettings.setMaxNerContentSizeChars(100);
+        nerSettings.setNerMaxBatchDocuments(3);
+        nerSettings.setNerMaxBatchSizeBytes(1000);
+        NlpServiceSettings settings = new NlpServiceSettings();
+        settings.setNerSettings(nerSettings);
+        nerResource = new NerResource(settings);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        nerResource.stop();
+    }
+
+    @Test
+    public void batchReturnsResultPerDocument() throws Exception {
+        NerBatchRequest batch = new NerBatchRequest(Arrays.asList(
+                new NerBatchDocument("a", "My name is Joe Bloggs."),
+                new NerBatchDocument("b", String.join(" ", Collections.nCopies(50, "Too long."))),
+                new NerBatchDocument("c", "My name is Sue Jones.")));
+
+        Response response = nerResource.extractEntitiesBatch(toJson(batch), EnumSet.of(NlpTagType.PERSON), null, 300, 0, false, null, false);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        NerBatchResult result = (NerBatchResult)response.getEntity();
+        assertThat(result.getDocuments()).extracting(NerDocumentResult::getId).containsExactly("a", "b", "c");
+
+        assertThat(result.getDocuments().get(0).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(result.getDocuments().get(0).getError()).isNull();
+
+        assertThat(result.getDocuments().get(1).getNlpTagSets()).isNull();
+        assertThat(result.getDocuments().get(1).getError().getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+        assertThat(result.getDocuments().get(1).getError().getStatusCode()).isEqualTo(400);
+
+        assertThat(result.getDocuments().get(2).getNlpTagSets().get(0).getTags()).containsExactly("Sue Jones");
+    }
+
+    @Test
+    public void entitiesCanBeExtractedFromRequestBody() throws Exception {
+        byte[] text = "My name is Joe Bloggs.".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(deflated)) {
+            out.write(text);
+        }
+
+        for (Map.Entry<String, byte[]> body : Map.of("identity", text, "deflate", deflated.toByteArray()).entrySet()) {
+            Response response = nerResource.extractEntitiesFromBody(new ByteArrayInputStream(body.getValue()), body.getKey(),
+                    EnumSet.of(NlpTagType.PERSON), null, null, 300, 0, false, null, false);
+
+            assertThat(((NerResult)response.getEntity()).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        }
+        // Gzip is inflated by the server before it gets to the resource - see NlpServiceIT.
+        for (String encoding : Arrays.asList("gzip", "br", "zstd")) {
+            assertThat(catchThrowable(() -> nerResource.extractEntitiesFromBody(new ByteArrayInputStream(text), encoding,
+                    null, null, null, 300, 0, false, null, false))).isInstanceOf(NotSupportedException.class);
+        }
+    }
+
+    @Test
+    public void entitiesCanBeExtractedFromLocalFile() throws Exception {
+        Path root = Files.createTempDirectory("ner-local-files");
+        try {
+            Path file = Files.write(root.resolve("document.txt"), "My name is Joe Bloggs.".getBytes(StandardCharsets.UTF_8));
+            nerSettings.getNerLocalFiles().setAllowedRoots(Collections.singletonList(root.toString()));
+
+            Response response = nerResource.extractEntitiesFromFile(file.toString(), EnumSet.of(NlpTagType.PERSON), null, null, 300, 0, false, null, false);
+            Throwable thrown = catchThrowable(() -> nerResource.extractEntitiesFromFile(" ", null, null, null, 300, 0, false, null, false));
+
+            assertThat(((NerResult)response.getEntity()).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+            assertThat(thrown).isInstanceOf(NerException.class);
+            assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CLIENT_ERROR);
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    @Test
+    public void timingsAreReturnedOnRequestAndRecordedInMetrics() throws Exception {
+        MetricRegistry metrics = new MetricRegistry();
+        NlpServiceSettings settings = new NlpServiceSettings();
+        settings.setNerSettings(nerSettings);
+        NerResource resource = new NerResource(settings, metrics);
+        try {
+            Response withTimings = resource.extractEntities(
+                    new ByteArrayInputStream("My name is Joe Bloggs.".getBytes(StandardCharsets.UTF_8)), null, null, null, null, 300, 0, false, null, true);
+            Response withoutTimings = resource.extractEntities(
+                    new ByteArrayInputStream("My name is Joe Bloggs.".getBytes(StandardCharsets.UTF_8)), null, null, null, null, 300, 0, false, null, false);
+
+            assertThat(withTimings.getHeaderString(NerResource.SERVER_TIMING_HEADER))
+                    .contains("queue;dur=", "read;dur=", "split;dur=", "tokenize;dur=", "classify;dur=", "confidence;dur=");
+            assertThat(withoutTimings.getHeaderString(NerResource.SERVER_TIMING_HEADER)).isNull();
+            assertThat(metrics.timer(MetricRegistry.name(NerMetrics.class, "stage", "classify")).getCount()).isEqualTo(2);
+            assertThat(metrics.counter(MetricRegistry.name(NerMetrics.class, "chars")).getCount()).isEqualTo(44);
+            assertThat(metrics.counter(MetricRegistry.name(NerMetrics.class, "entities")).getCount()).isEqualTo(2);
+        } finally {
+            resource.stop();
+        }
+    }
+
+    @Test
+    public void batchWithTooManyDocumentsIsRejected() {
+        NerBatchRequest batch = new NerBatchRequest(Arrays.asList(
+                new NerBatchDocument("a", "a"), new NerBatchDocument("b", "b"),
+                new NerBatchDocument("c", "c"), new NerBatchDocument("d", "d")));
+
+        Throwable thrown = catchThrowable(() -> nerResource.extractEntitiesBatch(toJson(batch), null, null, 300, 0, false, null, false));
+
+        assertThat(thrown).isInstanceOf(NerException.class);
+        assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.CLIENT_ERROR);
+    }
+
+    @Test
+    public void batchLargerThanSizeLimitIsRejected() {
+        NerBatchRequest batch = new NerBatchRequest(Arrays.asList(
+                new NerBatchDocument("a", StringUtils.repeat('a', 4000)),
+                new NerBatchDocument("b", StringUtils.repeat('b', 4000)),
+                new NerBatchDocument("c", StringUtils.repeat('c', 4000))));
+
+        Throwable thrown = catchThrowable(() -> nerResource.extractEntitiesBatch(toJson(batch), null, null, 300, 0, false, null, false));
+
+        assertThat(thrown).isNotNull();
+        ErrorResponse error = ResourceExceptionMapper.toErrorResponse((Exception)thrown);
+        assertThat(error.getStatusCode()).isEqualTo(400);
+        assertThat(error.getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+    }
+
+    @Test
+    public void emptyBatchReturnsNoResults() throws Exception {
+        Response response = nerResource.extractEntitiesBatch(toJson(new NerBatchRequest()), null, null, 300, 0, false, null, false);
+        Response emptyBodyResponse = nerResource.extractEntitiesBatch(new ByteArrayInputStream(new byte[0]), null, null, 300, 0, false, null, false);
+
+        assertThat(((NerBatchResult)response.getEntity()).getDocuments()).isEmpty();
+        assertThat(((NerBatchResult)emptyBodyResponse.getEntity()).getDocuments()).isEmpty();
+    }
+
+    @Test
+    public void streamReturnsResultPerDocumentInOrder() throws Exception {
+        String documents =
+                "{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n" +
+                "{\"id\":\"b\",\"text\":\"" + String.join(" ", Collections.nCopies(50, "Too long.")) + "\"}\n" +
+                "{\"id\":\"c\",\"text\":\"I live in London.\"}\n" +
+                "{\"id\":\"d\",\"text\":\"My name is Sue Jones.\"}\n" +
+                "{\"id\":\"e\",\"text\":\"Nothing to see here.\"}\n";
+
+        List<NerDocumentResult> results = extractEntitiesStream(documents);
+
+        assertThat(results).extracting(NerDocumentResult::getId).containsExactly("a", "b", "c", "d", "e");
+        assertThat(results.get(0).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(results.get(1).getError().getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+        assertThat(results.get(2).getNlpTagSets().get(0).getTags()).containsExactly("London");
+        assertThat(results.get(3).getNlpTagSets().get(0).getTags()).containsExactly("Sue Jones");
+        assertThat(results.get(4).getNlpTagSets()).isEmpty();
+    }
+
+    @Test
+    public void streamWritesEachResultWithoutWaitingForTheNextDocument() throws Exception {
+        PipedOutputStream feed = new PipedOutputStream();
+        PipedInputStream documents = new PipedInputStream(feed);
+        LineQueueOutputStream output = new LineQueueOutputStream();
+        Response response = nerResource.extractEntitiesStream(documents, null, null, 300, 0, false, null);
+        Thread writer = new Thread(() -> {
+            try {
+                ((StreamingOutput)response.getEntity()).write(output);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        ObjectMapper mapper = new ObjectMapper();
+
+        // Like a client that waits for each result before sending its next document, with the feed left open.
+        feed.write("{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n".getBytes(StandardCharsets.UTF_8));
+        feed.flush();
+        String first = output.lines.poll(30, TimeUnit.SECONDS);
+        feed.write("{\"id\":\"b\",\"text\":\"My name is Sue Jones.\"}\n".getBytes(StandardCharsets.UTF_8));
+        feed.flush();
+        String second = output.lines.poll(30, TimeUnit.SECONDS);
+        feed.close();
+        writer.join(30_000);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        NerDocumentResult firstResult = mapper.readValue(first, NerDocumentResult.class);
+        NerDocumentResult secondResult = mapper.readValue(second, NerDocumentResult.class);
+        assertThat(firstResult.getId()).isEqualTo("a");
+        assertThat(firstResult.getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(secondResult.getId()).isEqualTo("b");
+        assertThat(secondResult.getNlpTagSets().get(0).getTags()).containsExactly("Sue Jones");
+        assertThat(writer.isAlive()).isFalse();
+        assertThat(output.lines).isEmpty();
+    }
+
+    @Test(timeOut = 60000)
+    public void streamIsRejectedIfTooManyAreOpen() throws Exception {
+        nerSettings.setNerMaxOpenStreams(1);
+        restartResource();
+        OpenFeedInputStream documents = new OpenFeedInputStream();
+        try {
+            nerResource.extractEntitiesStream(documents, null, null, 300, 0, false, null);
+
+            Throwable thrown = catchThrowable(() -> nerResource.extractEntitiesStream(
+                    new ByteArrayInputStream(new byte[0]), null, null, 300, 0, false, null));
+
+            assertThat(thrown).isInstanceOf(NerException.class);
+            assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.SERVICE_BUSY);
+        } finally {
+            documents.close();
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void feedIsClosedIfResultsCantBeWritten() throws Exception {
+        nerSettings.setNerMaxOpenStreams(1);
+        restartResource();
+        OpenFeedInputStream documents = new OpenFeedInputStream("{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n");
+        Response response = nerResource.extractEntitiesStream(documents, null, null, 300, 0, false, null);
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Client disconnected");
+            }
+        };
+
+        assertThat(catchThrowable(() -> ((StreamingOutput)response.getEntity()).write(disconnected))).isInstanceOf(IOException.class);
+
+        // The reader was waiting for the next document, and is freed by the feed being closed.
+        assertThat(documents.closed.await(30, TimeUnit.SECONDS)).isTrue();
+        while (true) {
+            try {
+                readLines(nerResource.extractEntitiesStream(
+                        new ByteArrayInputStream(new byte[0]), null, null, 300, 0, false, null), NerDocumentResult.class);
+                break;
+            } catch (NerException e) {
+                assertThat(e.getCode()).isEqualTo(ErrorCode.SERVICE_BUSY);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void streamedResultsAreWrittenWithTheServiceObjectMapper() throws Exception {
+        nerResource.stop();
+        NlpServiceSettings settings = new NlpServiceSettings();
+        settings.setNerSettings(nerSettings);
+        ObjectMapper objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        nerResource = new NerResource(settings, new MetricRegistry(), objectMapper);
+        byte[] document = "My name is Joe Bloggs.".getBytes(StandardCharsets.UTF_8);
+
+        String streamOutput = write(nerResource.extractEntitiesStream(new ByteArrayInputStream(
+                ("{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n").getBytes(StandardCharsets.UTF_8)),
+                null, null, 300, 0, false, null));
+        String incrementalOutput = write(nerResource.extractEntitiesIncremental(
+                new ByteArrayInputStream(document), null, null, null, null, 300, 0, null));
+
+        assertThat(streamOutput).contains("\"nlp_tag_sets\"");
+        assertThat(incrementalOutput).contains("\"nlp_tag_sets\"");
+    }
+
+    @Test
+    public void malformedStreamEndsWithError() throws Exception {
+        String documents =
+                "{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n" +
+                "{\"id\":\"b\",\"text\":\n";
+
+        List<NerDocumentResult> results = extractEntitiesStream(documents);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(1).getError().getStatusCode()).isEqualTo(400);
+    }
+
+    @Test
+    public void streamDocumentLongerThanLimitEndsWithError() throws Exception {
+        String documents =
+                "{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n" +
+                "{\"id\":\"b\",\"text\":\"" + StringUtils.repeat('x', 1000) + "\"}\n" +
+                "{\"id\":\"c\",\"text\":\"My name is Sue Jones.\"}\n";
+
+        List<NerDocumentResult> results = extractEntitiesStream(documents);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(1).getError().getStatusCode()).isEqualTo(400);
+        assertThat(results.get(1).getError().getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+    }
+
+    @Test
+    public void streamSizeLimitAppliesToEachDocumentRatherThanTheWholeStream() throws Exception {
+        String document = "{\"id\":\"a\",\"text\":\"My name is Joe Bloggs.\"}\n";
+
+        List<NerDocumentResult> results = extractEntitiesStream(StringUtils.repeat(document, 40));
+
+        assertThat(results).hasSize(40);
+        assertThat(results).allSatisfy(result -> assertThat(result.getError()).isNull());
+    }
+
+    @Test
+    public void emptyStreamReturnsNoResults() throws Exception {
+        assertThat(extractEntitiesStream("")).isEmpty();
+    }
+
+    @Test
+    public void incrementalResultHasMatchesThenTagSets() throws Exception {
+        String text = "My name is Joe Bloggs. I live in London. My friend is called Joe Bloggs.";
+
+        Response response = nerResource.extractEntitiesIncremental(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), null, EnumSet.of(NlpTagType.PERSON), null, null, 300, 0, null);
+        List<NerResultFragment> fragments = readLines(response, NerResultFragment.class);
+
+        NerResultFragment lastFragment = fragments.get(fragments.size() - 1);
+        assertThat(lastFragment.getError()).isNull();
+        assertThat(lastFragment.getNlpTagSets()).hasSize(1);
+        assertThat(lastFragment.getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+        assertThat(lastFragment.getNlpTagSets().get(0).getMatchCollection().getTotal()).isEqualTo(2);
+
+        List<NerResultFragment> matchFragments = fragments.subList(0, fragments.size() - 1);
+        assertThat(matchFragments).extracting(NerResultFragment::getType).containsOnly(NlpTagType.PERSON);
+        assertThat(matchFragments).flatExtracting(NerResultFragment::getMatches)
+                .extracting(NlpMatch::getOffset).containsExactly(11L, 61L);
+    }
+
+    @Test
+    public void incrementalResultEndsWithErrorIfProcessingFails() throws Exception {
+        String text = String.join(" ", Collections.nCopies(50, "Too long."));
+
+        Response response = nerResource.extractEntitiesIncremental(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), null, null, null, null, 300, 0, null);
+        List<NerResultFragment> fragments = readLines(response, NerResultFragment.class);
+
+        assertThat(fragments).hasSize(1);
+        assertThat(fragments.get(0).getError().getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+    }
+
+    private static InputStream toJson(NerBatchRequest batch) throws Exception {
+        return new ByteArrayInputStream(new ObjectMapper().writeValueAsBytes(batch));
+    }
+
+    private List<NerDocumentResult> extractEntitiesStream(String documents) throws Exception {
+        Response response = nerResource.extractEntitiesStream(
+                new ByteArrayInputStream(documents.getBytes(StandardCharsets.UTF_8)), null, null, 300, 0, false, null);
+        return readLines(response, NerDocumentResult.class);
+    }
+
+    private static String write(Response response) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput)response.getEntity()).write(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static <T> List<T> readLines(Response response, Class<T> lineType) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput)response.getEntity()).write(output);
+
+        List<T> lines = new ArrayList<>();
+        try (MappingIterator<T> iterator = new ObjectMapper().readerFor(lineType).readValues(output.toByteArray())) {
+            iterator.forEachRemaining(lines::add);
+        }
+        return lines;
+    }
+
+    private void restartResource() {
+        nerResource.stop();
+        NlpServiceSettings settings = new NlpServiceSettings();
+        settings.setNerSettings(nerSettings);
+        nerResource = new NerResource(settings);
+    }
+
+    /**
+     * A feed that the client keeps open after sending its documents.  Reads wait for more until it's closed, which
+     * (like closing a request's input) makes them fail.
+     */
+    private static class OpenFeedInputStream extends InputStream {
+        final CountDownLatch closed = new CountDownLatch(1);
+        private final InputStream documents;
+
+        OpenFeedInputStream(String documents) {
+            this.documents = new ByteArrayInputStream(documents.getBytes(StandardCharsets.UTF_8));
+        }
+
+        OpenFeedInputStream() {
+            this("");
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = documents.read();
+            if (b >= 0) {
+                return b;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int available = documents.available();
+            if (available > 0) {
+                return documents.read(b, off, Math.min(len, available));
+            }
+            return super.read(b, off, Math.min(len, 1));
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Collects the lines written to it, so that they can be read as each one is written.
+     */
+    private static class LineQueueOutputStream extends OutputStream {
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines.add(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                line.reset();
+            } else {
+                line.write(b);
+            }
+        }
+    }
+}
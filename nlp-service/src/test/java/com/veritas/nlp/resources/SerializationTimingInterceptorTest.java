@@ -0,0 +1,100 @@
+package com.veritas.nlp.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.veritas.nlp.models.NerResult;
+import com.veritas.nlp.ner.NerMetrics;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SerializationTimingInterceptorTest {
+    private static final byte[] BODY = "{\"nlpTagSets\":[]}".getBytes(StandardCharsets.UTF_8);
+    private MetricRegistry metrics;
+    private SerializationTimingInterceptor interceptor;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        metrics = new MetricRegistry();
+        interceptor = new SerializationTimingInterceptor(metrics);
+    }
+
+    @Test
+    public void resultIsTimedWithoutWaitingForTheClient() throws Exception {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[] {(byte)b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                sleep(200);
+                received.write(b, off, len);
+            }
+        };
+
+        interceptor.aroundWriteTo(createContext(new NerResult(Collections.emptyMap()), slowClient));
+
+        Timer timer = getSerializeTimer();
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getSnapshot().getMax()).isLessThan(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(received.toByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void otherResponsesAreNotTimed() throws Exception {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        interceptor.aroundWriteTo(createContext("Not a NER result", received));
+
+        assertThat(getSerializeTimer().getCount()).isZero();
+        assertThat(received.toByteArray()).isEqualTo(BODY);
+    }
+
+    private Timer getSerializeTimer() {
+        return metrics.timer(MetricRegistry.name(NerMetrics.class, "stage", "serialize"));
+    }
+
+    /**
+     * A context whose entity is serialized (as {@link #BODY}) to whatever output stream it has when it proceeds.
+     */
+    private static WriterInterceptorContext createContext(Object entity, OutputStream output) throws IOException {
+        WriterInterceptorContext context = mock(WriterInterceptorContext.class);
+        AtomicReference<OutputStream> outputStream = new AtomicReference<>(output);
+        when(context.getEntity()).thenReturn(entity);
+        when(context.getOutputStream()).thenAnswer(invocation -> outputStream.get());
+        doAnswer(invocation -> {
+            outputStream.set(invocation.getArgument(0));
+            return null;
+        }).when(context).setOutputStream(any(OutputStream.class));
+        doAnswer(invocation -> {
+            outputStream.get().write(BODY);
+            return null;
+        }).when(context).proceed();
+        return context;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -14,7 +14,7 @@ public class NlpHealthCheckIT {
         NlpServiceSettings nlpServiceSettings = new NlpServiceSettings();
         nlpServiceSettings.setNerSettings(new NerSettings());
 
-        NlpHealthCheck check = new NlpHealthCheck(new NerResource(nlpServiceSettings));
+        NlpHealthCheck check = new NlpHealthCheck(new NerResource(nlpServiceSettings).getNerRuntime());
 
         assertThat(check.check().isHealthy()).isTrue();
     }
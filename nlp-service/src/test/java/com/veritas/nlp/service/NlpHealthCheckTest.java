@@ -1,12 +1,17 @@
 package com.veritas.nlp.service;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheck;
+import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
 import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerRequestExecutor;
+import com.veritas.nlp.ner.NerSettings;
+import com.veritas.nlp.ner.StreamingNerRecognizer;
+import com.veritas.nlp.resources.ErrorCode;
 import com.veritas.nlp.resources.NerResource;
-import jakarta.ws.rs.core.Response;
-import org.eclipse.jetty.http.HttpStatus;
-import org.mockito.InjectMocks;
+import com.veritas.nlp.resources.NlpRequestParams;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
 import org.testng.annotations.AfterMethod;
@@ -14,28 +19,32 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @Listeners(MockitoTestNGListener.class)
 public class NlpHealthCheckTest {
     @Mock
-    NerResource nerResource;
+    StreamingNerRecognizer recognizer;
 
-    @Mock
-    Response response;
-
-    @InjectMocks
     NlpHealthCheck nlpHealthCheck;
 
     @BeforeMethod
     public void beforeMethod() {
+        nlpHealthCheck = new NlpHealthCheck(() -> recognizer);
     }
 
     @AfterMethod
@@ -45,31 +54,26 @@ public class NlpHealthCheckTest {
 
     @Test
     public void checkSucceeds() throws Exception {
-        when(nerResource.extractEntities(any(InputStream.class), isNull(), eq(EnumSet.of(NlpTagType.PERSON)),
-                eq(300), eq(90), eq(false), eq(0)))
-                .thenReturn(response);
-        when(response.getStatus()).thenReturn(HttpStatus.OK_200);
+        when(recognizer.extractEntities(any(InputStream.class), any(NlpRequestParams.class)))
+                .thenReturn(Map.of(NlpTagType.PERSON, new NlpTagSet(NlpTagType.PERSON, new TreeSet<>(Set.of("Sue Smith")))));
 
         assertThat(nlpHealthCheck.check().isHealthy()).isTrue();
     }
 
     @Test
     public void checkFails() throws Exception {
-        when(nerResource.extractEntities(any(InputStream.class), isNull(), eq(EnumSet.of(NlpTagType.PERSON)),
-                eq(300), eq(90), eq(false), eq(0)))
-                .thenReturn(response);
-        when(response.getStatus()).thenReturn(HttpStatus.NOT_FOUND_404).thenReturn(HttpStatus.NOT_FOUND_404);
+        when(recognizer.extractEntities(any(InputStream.class), any(NlpRequestParams.class)))
+                .thenReturn(Map.of());
 
         HealthCheck.Result result = nlpHealthCheck.check();
 
         assertThat(result.isHealthy()).isFalse();
-        assertThat(result.getMessage()).isEqualTo("Named entity recognition failed with status 404");
+        assertThat(result.getMessage()).isEqualTo("Named entity recognition failed to find the name Sue Smith");
     }
 
     @Test
     public void checkFailsWithException() throws Exception {
-        when(nerResource.extractEntities(any(InputStream.class), isNull(), eq(EnumSet.of(NlpTagType.PERSON)),
-                eq(300), eq(90), eq(false), eq(0)))
+        when(recognizer.extractEntities(any(InputStream.class), any(NlpRequestParams.class)))
                 .thenThrow(new NerException("Extract entities failed."));
 
         HealthCheck.Result result = nlpHealthCheck.check();
@@ -78,4 +82,57 @@ public class NlpHealthCheckTest {
         assertThat(result.getError()).isInstanceOf(NerException.class).hasMessageContaining("Extract entities failed.");
         assertThat(result.getMessage()).contains("Extract entities failed.");
     }
+
+    @Test(timeOut = 120000)
+    public void checkSucceedsWhileRequestsAreBeingTurnedAway() throws Exception {
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.setNerMaxConcurrentRequests(1);
+        nerSettings.setNerMaxQueuedRequests(1);
+        NlpServiceSettings settings = new NlpServiceSettings();
+        settings.setNerSettings(nerSettings);
+        MetricRegistry metrics = new MetricRegistry();
+        NerResource nerResource = new NerResource(settings, metrics);
+        CountDownLatch bodiesReleased = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            // One request holds the only worker while it waits for the rest of its body, and another is queued.
+            for (int i = 0; i < 2; i++) {
+                clients.submit(() -> extractEntities(nerResource, new InputStream() {
+                    @Override
+                    public int read() {
+                        try {
+                            bodiesReleased.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return -1;
+                    }
+                }));
+            }
+            while (getGauge(metrics, "active") + getGauge(metrics, "queued") < 2) {
+                Thread.sleep(10);
+            }
+            Throwable thrown = catchThrowable(() -> extractEntities(nerResource,
+                    new ByteArrayInputStream("My name is Sue Smith".getBytes(StandardCharsets.UTF_8))));
+            assertThat(thrown).isInstanceOf(NerException.class);
+            assertThat(((NerException)thrown).getCode()).isEqualTo(ErrorCode.SERVICE_BUSY);
+
+            HealthCheck.Result result = new NlpHealthCheck(nerResource.getNerRuntime()).check();
+
+            assertThat(result.isHealthy()).isTrue();
+        } finally {
+            bodiesReleased.countDown();
+            clients.shutdownNow();
+            nerResource.stop();
+        }
+    }
+
+    private static Object extractEntities(NerResource nerResource, InputStream content) throws Exception {
+        return nerResource.extractEntities(content, null, EnumSet.of(NlpTagType.PERSON), null, null, 300, 90, false, 0, false);
+    }
+
+    private static int getGauge(MetricRegistry metrics, String name) {
+        Gauge<?> gauge = metrics.getGauges().get(MetricRegistry.name(NerRequestExecutor.class, name));
+        return (Integer)gauge.getValue();
+    }
 }
\ No newline at end of file
@@ -1,13 +1,20 @@
 package com.veritas.nlp.service;
 
+import com.veritas.nlp.models.ErrorResponse;
+import com.veritas.nlp.models.NerBatchDocument;
+import com.veritas.nlp.models.NerBatchRequest;
+import com.veritas.nlp.models.NerBatchResult;
 import com.veritas.nlp.models.NerResult;
 import com.veritas.nlp.models.NlpTagSet;
 import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.resources.ErrorCode;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.Variant;
+import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.media.multipart.Boundary;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.file.StreamDataBodyPart;
@@ -16,21 +23,27 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class NlpServiceIT {
     private static final String API_URL = TestNlpService.API_URL;
     private static final String ADMIN_URL = TestNlpService.ADMIN_URL;
+    private static final int MAX_BATCH_SIZE_BYTES = 65536;
     private TestNlpService testService;
 
     @BeforeClass
@@ -39,6 +52,7 @@ public class NlpServiceIT {
 
         testService = new TestNlpService();
         testService.configOverride("swagger.enabled", "true");
+        testService.configOverride("nlpService.nerSettings.nerMaxBatchSizeBytes", String.valueOf(MAX_BATCH_SIZE_BYTES));
         testService.start();
     }
 
@@ -147,6 +161,73 @@ public class NlpServiceIT {
         return extractNames(content, charset, entityTypes, null);
     }
 
+    @Test
+    public void canRecognizeNamesInCompressedRequestBody() throws Exception {
+        byte[] text = "My name is Joe Bloggs, and my sister is Jane Bloggs.".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(text);
+        }
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(deflated)) {
+            out.write(text);
+        }
+        UriBuilder uriBuilder = UriBuilder.fromUri(API_URL)
+                .path("v1/names")
+                .port(testService.getAppPort());
+
+        for (Map.Entry<String, byte[]> body : Map.of("gzip", gzipped.toByteArray(), "deflate", deflated.toByteArray()).entrySet()) {
+            NerResult result = testService.getClient().target(uriBuilder)
+                    .queryParam("type", NlpTagType.PERSON)
+                    .request()
+                    .accept(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(body.getValue(), new Variant(MediaType.TEXT_PLAIN_TYPE, (String)null, body.getKey())),
+                            NerResult.class);
+
+            assertThat(result.getNlpTagSets().get(0).getTags()).containsExactlyInAnyOrder("Joe Bloggs", "Jane Bloggs");
+        }
+    }
+
+    @Test
+    public void canRecognizeNamesInBatch() throws Exception {
+        NerBatchRequest batch = new NerBatchRequest(Collections.singletonList(
+                new NerBatchDocument("a", "My name is Joe Bloggs.")));
+
+        NerBatchResult result = postBatch(Entity.json(batch)).readEntity(NerBatchResult.class);
+
+        assertThat(result.getDocuments()).hasSize(1);
+        assertThat(result.getDocuments().get(0).getId()).isEqualTo("a");
+        assertThat(result.getDocuments().get(0).getNlpTagSets().get(0).getTags()).containsExactly("Joe Bloggs");
+    }
+
+    @Test
+    public void batchThatInflatesBeyondSizeLimitIsRejected() throws Exception {
+        // Compresses to a small fraction of the limit, but inflates to many times it.
+        String json = "{\"documents\":[{\"id\":\"a\",\"text\":\"" + StringUtils.repeat('x', MAX_BATCH_SIZE_BYTES * 16) + "\"}]}";
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(gzipped.size()).isLessThan(MAX_BATCH_SIZE_BYTES);
+
+        Response response = postBatch(Entity.entity(gzipped.toByteArray(),
+                new Variant(MediaType.APPLICATION_JSON_TYPE, (String)null, "gzip")));
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(ErrorResponse.class).getError()).isEqualTo(ErrorCode.CONTENT_TOO_LARGE);
+    }
+
+    private Response postBatch(Entity<?> entity) {
+        UriBuilder uriBuilder = UriBuilder.fromUri(API_URL)
+                .path("v1/names/batch")
+                .port(testService.getAppPort());
+
+        return testService.getClient().target(uriBuilder)
+                .request()
+                .accept(MediaType.APPLICATION_JSON)
+                .post(entity);
+    }
+
     private Map<NlpTagType, NlpTagSet> extractNames(String content, Charset charset, EnumSet<NlpTagType> entityTypes, Integer minConfidencePercentage) throws Exception {
         NerResult result = extractNames(content, charset, entityTypes, minConfidencePercentage, false, 100);
         return result.getNlpTagSets().stream().collect(Collectors.toMap(NlpTagSet::getType, Function.identity()));
@@ -0,0 +1,136 @@
+package com.veritas.nlp.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.veritas.nlp.models.NlpTagSet;
+import com.veritas.nlp.models.NlpTagType;
+import com.veritas.nlp.ner.NerException;
+import com.veritas.nlp.ner.NerResultCache;
+import com.veritas.nlp.ner.NerRuntime;
+import com.veritas.nlp.ner.NerSentenceCache;
+import com.veritas.nlp.ner.NerSettings;
+import com.veritas.nlp.ner.NerWarmupSettings;
+import com.veritas.nlp.ner.StreamingNerRecognizer;
+import com.veritas.nlp.resources.NlpRequestParams;
+import org.mockito.Mock;
+import org.mockito.stubbing.OngoingStubbing;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Listeners(MockitoTestNGListener.class)
+public class NlpWarmupTest {
+    @Mock
+    StreamingNerRecognizer recognizer;
+
+    private final Map<NlpTagType, NlpTagSet> entities = Collections.emptyMap();
+    private NerWarmupSettings settings;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        settings = new NerWarmupSettings();
+        settings.setSettledTolerancePercent(100);
+    }
+
+    @Test
+    public void warmUpRunsUntilTimingSettles() throws Exception {
+        whenExtractEntities().thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return entities;
+        });
+        NlpWarmup warmup = new NlpWarmup(() -> recognizer, settings);
+        assertThat(warmup.isReady()).isFalse();
+
+        warmup.warmUp();
+
+        assertThat(warmup.isReady()).isTrue();
+        verifyExtractEntities(1 + settings.getSettledIterations());
+    }
+
+    @Test
+    public void warmUpStopsAfterMaxIterations() throws Exception {
+        whenExtractEntities().thenReturn(entities);
+        settings.setSettledIterations(1000);
+        settings.setMaxIterations(5);
+        NlpWarmup warmup = new NlpWarmup(() -> recognizer, settings);
+
+        warmup.warmUp();
+
+        assertThat(warmup.isReady()).isTrue();
+        verifyExtractEntities(5);
+    }
+
+    @Test
+    public void serviceIsReadyEvenIfWarmUpFails() throws Exception {
+        whenExtractEntities().thenThrow(new NerException("Extract entities failed."));
+        NlpWarmup warmup = new NlpWarmup(() -> recognizer, settings);
+
+        warmup.warmUp();
+
+        assertThat(warmup.isReady()).isTrue();
+        verifyExtractEntities(1);
+    }
+
+    @Test
+    public void serviceIsReadyWithoutWarmUpIfDisabled() throws Exception {
+        settings.setEnabled(false);
+        NlpWarmup warmup = new NlpWarmup(() -> recognizer, settings);
+
+        warmup.warmUp();
+
+        assertThat(warmup.isReady()).isTrue();
+        verify(recognizer, never()).extractEntities(any(InputStream.class), any(NlpRequestParams.class));
+    }
+
+    @Test
+    public void warmUpBypassesCaches() throws Exception {
+        // The warm-up corpus is small enough for both caches, which would otherwise answer every iteration after the
+        // first without classifying anything.
+        MetricRegistry metrics = new MetricRegistry();
+        NerSettings nerSettings = new NerSettings();
+        nerSettings.getNerResultCache().setEnabled(true);
+        nerSettings.getNerSentenceCache().setEnabled(true);
+        NerRuntime runtime = new NerRuntime(nerSettings, metrics);
+        settings.setSettledIterations(1000);
+        settings.setMaxIterations(3);
+        NlpWarmup warmup = new NlpWarmup(runtime, settings);
+
+        try {
+            warmup.warmUp();
+        } finally {
+            runtime.shutdown();
+        }
+
+        assertThat(warmup.getCompletedIterations()).isEqualTo(3);
+        assertThat(getGauge(metrics, NerResultCache.class, "size")).isEqualTo(0L);
+        assertThat(getGauge(metrics, NerResultCache.class, "hits")).isEqualTo(0L);
+        assertThat(getGauge(metrics, NerSentenceCache.class, "size")).isEqualTo(0L);
+        assertThat(getGauge(metrics, NerSentenceCache.class, "hits")).isEqualTo(0L);
+    }
+
+    private static Object getGauge(MetricRegistry metrics, Class<?> owner, String name) {
+        Gauge<?> gauge = metrics.getGauges().get(MetricRegistry.name(owner, name));
+        assertThat(gauge).isNotNull();
+        return gauge.getValue();
+    }
+
+    private OngoingStubbing<Map<NlpTagType, NlpTagSet>> whenExtractEntities() throws Exception {
+        return when(recognizer.extractEntities(any(InputStream.class), any(NlpRequestParams.class)));
+    }
+
+    private void verifyExtractEntities(int count) throws Exception {
+        verify(recognizer, times(count)).extractEntities(any(InputStream.class), any(NlpRequestParams.class));
+    }
+}
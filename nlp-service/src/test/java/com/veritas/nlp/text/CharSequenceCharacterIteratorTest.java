@@ -0,0 +1,61 @@
+package com.veritas.nlp.text;
+
+import org.testng.annotations.Test;
+
+import java.text.BreakIterator;
+import java.text.CharacterIterator;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CharSequenceCharacterIteratorTest {
+
+    @Test
+    public void canIterateForwardsAndBackwards() {
+        CharacterIterator iterator = new CharSequenceCharacterIterator(new StringBuilder("abc"));
+
+        assertThat(iterator.first()).isEqualTo('a');
+        assertThat(iterator.next()).isEqualTo('b');
+        assertThat(iterator.next()).isEqualTo('c');
+        assertThat(iterator.next()).isEqualTo(CharacterIterator.DONE);
+        assertThat(iterator.getIndex()).isEqualTo(3);
+        assertThat(iterator.previous()).isEqualTo('c');
+        assertThat(iterator.last()).isEqualTo('c');
+        assertThat(iterator.setIndex(1)).isEqualTo('b');
+        assertThat(iterator.first()).isEqualTo('a');
+        assertThat(iterator.previous()).isEqualTo(CharacterIterator.DONE);
+    }
+
+    @Test
+    public void emptyTextIsDone() {
+        CharacterIterator iterator = new CharSequenceCharacterIterator("");
+
+        assertThat(iterator.first()).isEqualTo(CharacterIterator.DONE);
+        assertThat(iterator.last()).isEqualTo(CharacterIterator.DONE);
+        assertThat(iterator.getEndIndex()).isZero();
+    }
+
+    @Test
+    public void cloneHasIndependentPosition() {
+        CharacterIterator iterator = new CharSequenceCharacterIterator("abc");
+        iterator.setIndex(1);
+        CharacterIterator clone = (CharacterIterator)iterator.clone();
+        clone.next();
+
+        assertThat(iterator.current()).isEqualTo('b');
+        assertThat(clone.current()).isEqualTo('c');
+    }
+
+    @Test
+    public void breakIteratorFindsSameBoundariesAsForString() {
+        String text = "This is sentence one. This is sentence two! And three?";
+        BreakIterator expected = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        expected.setText(text);
+        BreakIterator actual = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        actual.setText(new CharSequenceCharacterIterator(new StringBuilder(text)));
+
+        for (int i = 1; i < text.length(); i++) {
+            assertThat(actual.preceding(i)).isEqualTo(expected.preceding(i));
+        }
+    }
+}
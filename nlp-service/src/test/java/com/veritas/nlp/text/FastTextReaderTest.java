@@ -0,0 +1,132 @@
+package com.veritas.nlp.text;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class FastTextReaderTest {
+
+    @DataProvider
+    public Object[][] charsets() {
+        return new Object[][] {
+                { StandardCharsets.UTF_8 },
+                { StandardCharsets.UTF_16BE },
+                { StandardCharsets.UTF_16LE }
+        };
+    }
+
+    @Test(dataProvider = "charsets")
+    public void decodesLikeInputStreamReader(Charset charset) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(500); j > 0; j--) {
+                int kind = random.nextInt(10);
+                sb.appendCodePoint(kind < 6 ? 0x20 + random.nextInt(0x5F)
+                        : kind < 8 ? 0x80 + random.nextInt(0x800)
+                        : kind < 9 ? 0xE000 + random.nextInt(0x2000)
+                        : 0x10000 + random.nextInt(0x100000 - 0x10000));
+            }
+            assertDecodesLikeInputStreamReader(sb.toString().getBytes(charset), charset, random);
+        }
+    }
+
+    @Test(dataProvider = "charsets")
+    public void replacesMalformedInputLikeInputStreamReader(Charset charset) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // Mostly bytes from the top of the range, so there are plenty of nearly valid sequences.
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte)(random.nextBoolean() ? 0x80 + random.nextInt(0x80) : random.nextInt(0x100));
+                if (charset != StandardCharsets.UTF_8 && random.nextInt(3) == 0) {
+                    bytes[j] = (byte)(0xD8 + random.nextInt(8));
+                }
+            }
+            assertDecodesLikeInputStreamReader(bytes, charset, random);
+        }
+    }
+
+    @Test
+    public void malformedInputCanBeIgnored() throws Exception {
+        byte[] bytes = { 'a', (byte)0xC3, 'b', (byte)0xE2, (byte)0x82, 'c', (byte)0xF0 };
+
+        String text = IOUtils.toString(new FastTextReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, new byte[16], CodingErrorAction.IGNORE));
+
+        assertThat(text).isEqualTo("abc");
+    }
+
+    @Test
+    public void malformedInputCanBeReported() {
+        byte[] bytes = { 'a', 'b', (byte)0xE2, (byte)0x82, 'c' };
+        Reader reader = new FastTextReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, new byte[16], CodingErrorAction.REPORT);
+
+        Throwable thrown = catchThrowable(() -> IOUtils.toString(reader));
+
+        assertThat(thrown).isInstanceOf(MalformedInputException.class);
+        assertThat(((MalformedInputException)thrown).getInputLength()).isEqualTo(2);
+    }
+
+    @Test
+    public void surrogatePairCanBeSplitAcrossReads() throws Exception {
+        String text = "a\uD83D\uDE00b";
+        Reader reader = new FastTextReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, new byte[16], CodingErrorAction.REPORT);
+        char[] chars = new char[2];
+
+        assertThat(reader.read(chars, 0, 2)).isEqualTo(2);
+        assertThat(reader.read(chars, 0, 1)).isEqualTo(1);
+        assertThat(chars[0]).isEqualTo('\uDE00');
+        assertThat(reader.read(chars, 0, 2)).isEqualTo(1);
+        assertThat(chars[0]).isEqualTo('b');
+        assertThat(reader.read(chars, 0, 2)).isEqualTo(-1);
+    }
+
+    private static void assertDecodesLikeInputStreamReader(byte[] bytes, Charset charset, Random random) throws IOException {
+        String expected = IOUtils.toString(new InputStreamReader(new ByteArrayInputStream(bytes), charset));
+
+        // Small buffers and short reads, so that sequences are split between reads.
+        int bufferSize = 4 + random.nextInt(16);
+        InputStream in = new ShortReadInputStream(new ByteArrayInputStream(bytes), random);
+        Reader reader = new FastTextReader(in, charset, new byte[bufferSize], CodingErrorAction.REPLACE);
+        StringBuilder actual = new StringBuilder();
+        char[] chars = new char[1 + random.nextInt(8)];
+        int read;
+        while ((read = reader.read(chars, 0, chars.length)) >= 0) {
+            actual.append(chars, 0, read);
+        }
+
+        assertThat(actual.toString()).isEqualTo(expected);
+    }
+
+    private static class ShortReadInputStream extends FilterInputStream {
+        private final Random random;
+
+        ShortReadInputStream(InputStream in, Random random) {
+            super(in);
+            this.random = random;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(5)));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.veritas.nlp.text;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalTextSplitterTest {
+
+    @Test
+    public void chunkIsNotReturnedUntilItIsComplete() {
+        IncrementalTextSplitter splitter = new IncrementalTextSplitter(Locale.ENGLISH, 30, 20);
+
+        splitter.append("This is sentence one. This is");
+        assertThat(splitter.nextChunk(false)).isNull();
+
+        splitter.append(" sentence two.");
+        assertThat(splitter.nextChunk(false)).isEqualTo("This is sentence one. ");
+        assertThat(splitter.nextChunk(false)).isNull();
+        assertThat(splitter.getPendingLength()).isEqualTo("This is sentence two.".length());
+
+        assertThat(splitter.nextChunk(true)).isEqualTo("This is sentence two.");
+        assertThat(splitter.nextChunk(true)).isNull();
+    }
+
+    @Test
+    public void resetDiscardsAllText() {
+        IncrementalTextSplitter splitter = new IncrementalTextSplitter(Locale.ENGLISH, 30, 20);
+        splitter.append("This is sentence one. This is sentence two.");
+        splitter.nextChunk(false);
+
+        splitter.reset(1000);
+
+        assertThat(splitter.getPendingLength()).isZero();
+        splitter.append("This is sentence three.");
+        assertThat(splitter.nextChunk(true)).isEqualTo("This is sentence three.");
+    }
+
+    @Test
+    public void textAppendedInSmallPiecesIsSplitOnSentenceBoundaries() {
+        assertThat(splitOneCharAtATime("This is sentence one. This is sentence two. This is sentence three.", 30, 20))
+                .containsExactly("This is sentence one. ", "This is sentence two. ", "This is sentence three.");
+    }
+
+    @Test
+    public void textAppendedInSmallPiecesIsSplitOnWordBoundaries() {
+        assertThat(splitOneCharAtATime("This is sentence one, this is sentence two, this is sentence three.", 30, 20))
+                .containsExactly("This is sentence one, this is", " sentence two, this is ", "sentence three.");
+    }
+
+    @Test
+    public void textAppendedInSmallPiecesWithNoWhitespaceIsSplitOnChunkBoundary() {
+        assertThat(splitOneCharAtATime("This_is_sentence_one_this_is_sentence_two.", 10, 5))
+                .containsExactly("This_is_se", "ntence_one", "_this_is_s", "entence_tw", "o.");
+    }
+
+    @Test
+    public void longTextIsSplitIntoChunksCoveringAllText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("Sentence number ").append(i).append(" is here. ");
+        }
+
+        List<String> chunks = splitOneCharAtATime(text.toString(), 500, 200);
+
+        assertThat(String.join("", chunks)).isEqualTo(text.toString());
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(500));
+        assertThat(chunks.subList(0, chunks.size() - 1)).allSatisfy(chunk -> assertThat(chunk).endsWith(". "));
+    }
+
+    private List<String> splitOneCharAtATime(String text, int chunkSize, int maxChunkAdjustment) {
+        IncrementalTextSplitter splitter = new IncrementalTextSplitter(Locale.ENGLISH, chunkSize, maxChunkAdjustment);
+        List<String> chunks = new ArrayList<>();
+        for (char c : text.toCharArray()) {
+            splitter.append(new char[] { c }, 0, 1);
+            String chunk;
+            while ((chunk = splitter.nextChunk(false)) != null) {
+                chunks.add(chunk);
+            }
+        }
+        String chunk;
+        while ((chunk = splitter.nextChunk(true)) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
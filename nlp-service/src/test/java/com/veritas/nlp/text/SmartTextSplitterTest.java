@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
+import static com.veritas.nlp.text.SmartTextSplitter.findChunkEnds;
 import static com.veritas.nlp.text.SmartTextSplitter.splitOnSentenceBoundaries;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -88,4 +89,45 @@ public class SmartTextSplitterTest {
                 .containsExactly("This_is_se", "ntence_one", "_this_is_s", "entence_tw", "o.");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void chunkEndsAreFoundWithoutCopyingBuffer() {
+        int chunkSize = 30;
+        int maxChunkAdjustment = 20;
+        CharSequence text = new UncopyableText("This is sentence one. This is sentence two. This is sentence three.");
+
+        assertThat(findChunkEnds(text, Locale.ENGLISH, chunkSize, maxChunkAdjustment)).containsExactly(22, 44, text.length());
+        assertThat(findChunkEnds(new UncopyableText(""), Locale.ENGLISH, chunkSize, maxChunkAdjustment)).isEmpty();
+    }
+
+    /**
+     * Text that can only be read a character at a time, so any attempt to copy it fails.
+     */
+    private static class UncopyableText implements CharSequence {
+        private final String text;
+
+        UncopyableText(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new UnsupportedOperationException("Text was copied");
+        }
+
+        @Override
+        public String toString() {
+            throw new UnsupportedOperationException("Text was copied");
+        }
+    }
+
+}